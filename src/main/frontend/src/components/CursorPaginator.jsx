@@ -0,0 +1,39 @@
+/**
+ * Component for going through the pages of a listing loaded page by page.
+ * @author Lukas Petr
+ */
+import { Pagination } from 'react-bootstrap';
+
+/**
+ * Component for going to the first, previous or next page. The pages are read
+ * by cursors, so only the next page and the already visited ones can be reached.
+ * @param props Component props.
+ * @param {number} props.page Number of current page (from 1).
+ * @param {boolean} props.hasNext If there is a next page.
+ * @param {Function} props.onFirst Called to go to the first page.
+ * @param {Function} props.onPrev Called to go to the previous page.
+ * @param {Function} props.onNext Called to go to the next page.
+ * @returns {JSX.Element} - CursorPaginator component
+ * @constructor CursorPaginator
+ */
+export default function CursorPaginator ({
+  page,
+  hasNext,
+  onFirst,
+  onPrev,
+  onNext,
+}) {
+  return (
+    <Pagination className='justify-content-center'>
+      <Pagination.First onClick={onFirst}
+                        disabled={ page === 1 }/>
+      <Pagination.Prev onClick={onPrev}
+                       disabled={ page === 1 }/>
+      <Pagination.Item active>
+        {page}
+      </Pagination.Item>
+      <Pagination.Next onClick={onNext}
+                       disabled={ !hasNext }/>
+    </Pagination>
+  )
+}
@@ -6,6 +6,7 @@ import { Button, Stack, Table } from 'react-bootstrap';
 import { orderStateToString } from '../../utils/orders';
 import { useNavigate } from 'react-router-dom';
 import Paginator from '../Paginator';
+import CursorPaginator from '../CursorPaginator';
 import { useMemo, useState } from 'react';
 import SorterButtons from '../SorterButton';
 
@@ -19,28 +20,36 @@ const AMOUNT_OF_ORDERS_ON_PAGE = 15;
  * total price, for employee is shown email of the person who created the order.
  * @param props.defaultFromOldest True to sort by default orders from oldest
  * otherwise there will be sort from newest to oldest.
+ * @param props.paging Set when the orders are one page read from the server
+ * (newest first), then they are neither sorted nor paged here
+ * ({page, hasNext, onFirst, onPrev, onNext}, see CursorPaginator).
  * @returns {JSX.Element} - OrdersTable component
  * @constructor OrdersTable
  */
 export default function OrdersTable({
   orders,
   type='user',
-  defaultFromOldest=false
+  defaultFromOldest=false,
+  paging=null,
 }) {
   const [fromOldest, setFromOldest] = useState(defaultFromOldest)
   const [currentPage, setCurrentPage] = useState(1);
   const amountOfPages = Math.ceil(orders.length / AMOUNT_OF_ORDERS_ON_PAGE);
   
   const sortedOrders = useMemo(() => {
+    if (paging) {
+      return orders;
+    }
     if (fromOldest) {
       return orders.toSorted((o1, o2) => (o1.creationDate - o2.creationDate))
     } else {
       return orders.toSorted((o1, o2) => (o2.creationDate - o1.creationDate))
     }
-  }, [fromOldest, orders])
+  }, [fromOldest, orders, paging])
   
-  const ordersOnPage = sortedOrders.slice((currentPage-1) * AMOUNT_OF_ORDERS_ON_PAGE,
-                                        currentPage * AMOUNT_OF_ORDERS_ON_PAGE);
+  const ordersOnPage = paging ? sortedOrders
+                              : sortedOrders.slice((currentPage-1) * AMOUNT_OF_ORDERS_ON_PAGE,
+                                                   currentPage * AMOUNT_OF_ORDERS_ON_PAGE);
   const navigate = useNavigate();
   return (
     <>
@@ -51,7 +60,7 @@ export default function OrdersTable({
             <th>
               <Stack direction='horizontal' gap={2}>
                 Date of order
-                <SorterButtons onSortChange={setFromOldest}/>
+                {!paging && <SorterButtons onSortChange={setFromOldest}/>}
               </Stack>
             </th>
             {type === 'employee' && (
@@ -86,9 +95,11 @@ export default function OrdersTable({
           ))}
         </tbody>
       </Table>
-      <Paginator pages={amountOfPages}
-                 activePage={currentPage}
-                 setActivePage={setCurrentPage}/>
+      {paging
+        ? <CursorPaginator {...paging}/>
+        : <Paginator pages={amountOfPages}
+                     activePage={currentPage}
+                     setActivePage={setCurrentPage}/>}
     </>
   );
 }
\ No newline at end of file
@@ -5,85 +5,70 @@
 import {Button, Col, InputGroup, Row, Stack} from "react-bootstrap";
 import Container from "react-bootstrap/Container";
 import Book from "./Book";
-import {useMemo, useState} from "react";
-import Paginator from "../../components/Paginator";
+import CursorPaginator from "../../components/CursorPaginator";
 
-const AMOUNT_OF_BOOKS_ON_PAGE = 10;
+export const AMOUNT_OF_BOOKS_ON_PAGE = 10;
 
-// Options how books can be sorted
+// Options how books can be sorted, the books are sorted by the server
 // From the cheapest to the most expensive
-const SORT_BY_PRICE_ASC = 0;
+export const SORT_BY_PRICE_ASC = 0;
 // From the most expensive to cheapest
 const SORT_BY_PRICE_DES = 1;
-// From without discount to the biggest discount
-const SORT_BY_DISCOUNT_ASC = 2;
-// From the biggest discount to without discount
-const SORT_BY_DISCOUNT_DES = 3;
+// By name from A to Z
+const SORT_BY_NAME_ASC = 2;
+// By name from Z to A
+const SORT_BY_NAME_DES = 3;
 
 /**
- * Component for listing of books.
+ * Returns sort params of the paginated listing for the choice.
+ * @param sortBy One of the SORT_BY_ choices.
+ * @returns {{sort: string, order: string}}
+ */
+export function sortParams(sortBy) {
+  switch (sortBy) {
+    case SORT_BY_PRICE_DES: return {sort: 'price', order: 'desc'};
+    case SORT_BY_NAME_ASC: return {sort: 'name', order: 'asc'};
+    case SORT_BY_NAME_DES: return {sort: 'name', order: 'desc'};
+    default: return {sort: 'price', order: 'asc'};
+  }
+}
+
+/**
+ * Component for listing of one page of books.
  * @param props Component props.
- * @param {Object} props.products List of product descriptions.
+ * @param {Object} props.products Product descriptions on the page.
+ * @param {number} props.sortBy Current sort choice.
+ * @param {Function} props.onSortChange Called with new sort choice.
+ * @param {number} props.page Number of current page.
+ * @param {boolean} props.hasNext If there is a next page.
+ * @param {Function} props.onFirst Called to go to the first page.
+ * @param {Function} props.onPrev Called to go to the previous page.
+ * @param {Function} props.onNext Called to go to the next page.
  * @returns {JSX.Element} - BookListing component
  * @constructor BookListing
  */
-export default function BookListing({products}) {
-  const [currentPage, setCurrentPage] = useState(1);
-  const [sortBy, setSortBy] = useState(SORT_BY_PRICE_ASC);
-  const amountOfPages = Math.ceil(products.length / AMOUNT_OF_BOOKS_ON_PAGE);
-
-  // Sorted product by choice set in sortBy
-  const sortedProducts = useMemo(() => {
-    switch (sortBy) {
-      case SORT_BY_PRICE_DES:
-        return products.toSorted((book1, book2) => book2.currentPrice - book1.currentPrice);
-      case SORT_BY_PRICE_ASC:
-        return products.toSorted((book1, book2) => book1.currentPrice - book2.currentPrice);
-      case SORT_BY_DISCOUNT_ASC:
-        return products.toSorted((book1, book2) => {
-          // returning negative means book1 should be before book2
-          // if both books do not have discount returns the more expensive
-          if (! book1.discount && ! book2.discount) {
-            return book2.price - book1.price;
-          }
-          // if book2 has discount but book 1 not return book1 (without discount)
-          if (! book1.discount) return -1;
-          // if book1 has discount but book 2 not return book2 (without discount)
-          if (! book2.discount) return 1;
-          // otherwise put first the one with lower discount
-          return book1?.discount?.discount - book2?.discount?.discount;
-        });
-      case SORT_BY_DISCOUNT_DES:
-        return products.toSorted((book1, book2) => {
-          // if both books do not have discount returns the cheapest
-          if (! book1.discount && ! book2.discount) {
-            return book1.price - book2.price;
-          }
-          // book 1 has discount should be before book 2
-          if (book1.discount && ! book2.discount) return -1;
-          // book 2 has discount should be before book 1
-          if (!book1.discount && book2.discount) return 1;
-          // if book 1 has bigger discount should be before book 2
-          return book2?.discount?.discount - book1?.discount?.discount;
-        });
-      default : return products;
-    }
-  }, [sortBy, products]);
-
-  const productsOnPage = sortedProducts.slice((currentPage-1) * AMOUNT_OF_BOOKS_ON_PAGE,
-                                        currentPage * AMOUNT_OF_BOOKS_ON_PAGE);
+export default function BookListing({
+  products,
+  sortBy,
+  onSortChange,
+  page,
+  hasNext,
+  onFirst,
+  onPrev,
+  onNext,
+}) {
   let content = (
     <div className='display-5 text-center text-muted mt-5'>
       No books were found
     </div>
   );
-  if (products.length > 0) {
+  if (products.length > 0 || page > 1) {
     content = (
       <>
-        <SortChoice sortBy={sortBy} onChange={(choice) => setSortBy(choice)} />
+        <SortChoice sortBy={sortBy} onChange={onSortChange} />
         <Stack className="h-100">
           <Row md={5}>
-            {productsOnPage.map(book =>
+            {products.map(book =>
               <Col key={book.id} className="p-2">
                 <Book id={book.id}
                       name={book.name}
@@ -96,9 +81,11 @@ export default function BookListing({products}) {
             )}
           </Row>
         </Stack>
-        <Paginator activePage={currentPage}
-                   pages={amountOfPages}
-                   setActivePage={setCurrentPage}/>
+        <CursorPaginator page={page}
+                         hasNext={hasNext}
+                         onFirst={onFirst}
+                         onPrev={onPrev}
+                         onNext={onNext}/>
       </>
     );
   }
@@ -129,15 +116,15 @@ function SortChoice({
               variant='outline-primary'>
         Price (high to low)
       </Button>
-      <Button onClick={() => onChange(SORT_BY_DISCOUNT_ASC)}
-              active={sortBy === SORT_BY_DISCOUNT_ASC}
+      <Button onClick={() => onChange(SORT_BY_NAME_ASC)}
+              active={sortBy === SORT_BY_NAME_ASC}
               variant='outline-primary'>
-        Discount (low to high)
+        Name (A to Z)
       </Button>
-      <Button onClick={() => onChange(SORT_BY_DISCOUNT_DES)}
-              active={sortBy === SORT_BY_DISCOUNT_DES}
+      <Button onClick={() => onChange(SORT_BY_NAME_DES)}
+              active={sortBy === SORT_BY_NAME_DES}
               variant='outline-primary'>
-        Discount (high to low)
+        Name (Z to A)
       </Button>
     </InputGroup>
   );
@@ -5,23 +5,22 @@
 import {useCallback, useEffect, useState} from "react";
 import {Button, Form, ListGroup, Stack} from "react-bootstrap";
 import {useSearchParams} from "react-router-dom";
-import {api} from "../../api";
 import NumberInput from "./NumberInput";
 import { X } from "react-bootstrap-icons";
 
 /**
  * Component for filtering of books.
+ * @param props.facets Counts of the results by categories, languages and authors
+ *                     ({id, name, count}), null while loading.
  * @returns {JSX.Element} - Filter component
  * @constructor Filter
  */
-export default function Filter() {
+export default function Filter({facets}) {
   const [searchParams, setSearchParams] = useSearchParams();
-  // List of all categories
-  const [categories, setCategories] = useState([]);
-  // List of all languages
-  const [languages, setLanguages] = useState([]);
-  // List of all authors
-  const [authors, setAuthors] = useState([]);
+  // Options with the number of books each would give
+  const categories = facets?.categories ?? [];
+  const languages = facets?.languages ?? [];
+  const authors = facets?.authors ?? [];
   // IDs of selected categories.
   const [selectedCatID, setSelectedCatID] = useState(new Set());
   // IDs of selected language ids.
@@ -44,19 +43,6 @@ export default function Filter() {
     setPriceTo(searchParams.get('priceTo') || '');
   }, [searchParams]);
 
-  // Fetches list of categories for filtering.
-  useEffect(() => {
-    Promise.all([
-      api.get("/category"),
-      api.get("/language"),
-      api.get("/bookauthor")
-    ]).then(([categoryResponse, languageResponse, authorResponse]) => {
-        setCategories(categoryResponse.data);
-        setLanguages(languageResponse.data);
-        setAuthors(authorResponse.data);
-    });
-  }, []);
-
   /**
    * Filters books.
    */
@@ -120,18 +106,17 @@ export default function Filter() {
                     items={categories}
                     getLabel={category => category.name}
                     onItemClick={(id) => handleChange(setSelectedCatID, id)}
-                    showTitle={(item) => item.description}
                     selectedIds={selectedCatID}
                     onClear={() => setSelectedCatID(new Set())}/>
         <FilterList name="Languages"
                     items={languages}
-                    getLabel={language => language.language}
+                    getLabel={language => language.name}
                     onItemClick={(id) => handleChange(setSelectedLangID, id)}
                     selectedIds={selectedLangID}
                     onClear={() => setSelectedLangID(new Set())}/>
         <FilterList name="Authors"
                     items={authors}
-                    getLabel={author => `${author.firstName} ${author.lastName}`}
+                    getLabel={author => author.name}
                     onItemClick={(id) => handleChange(setSelectedAuthorID, id)}
                     selectedIds={selectedAuthorID}
                     onClear={() => setSelectedAuthorID(new Set())}/>
@@ -152,7 +137,6 @@ export default function Filter() {
  * @param props.onItemsClick Handler called with item id.
  * @param props.getLabel Function which returns label for given item.
  * @param props.selectedIds Set of selected ids.
- * @param props.showTitle Function which returns title for a book or undefined.
  * @param props.onClear Called when the filter want to be cleared.
  */
 function FilterList({
@@ -161,7 +145,6 @@ function FilterList({
   onItemClick,
   getLabel,
   selectedIds,
-  showTitle,
   onClear,
 }) {
   return (
@@ -173,13 +156,14 @@ function FilterList({
       <ListGroup className="overflow-auto"
                  style={{maxHeight: "140px"}}>
         {items.map(item => (
-            <label className="list-group-item" key={`label-${name}-${item.id}`}
-                   title={showTitle?.(item)}>
+            <label className={`list-group-item${item.count === 0 ? ' text-muted' : ''}`}
+                   key={`label-${name}-${item.id}`}>
               <input className="form-check-input me-1"
                      type="checkbox"
                      checked={selectedIds.has(item.id)}
                      onChange={() => onItemClick(item.id)}/>
               {getLabel(item)}
+              <span className="badge bg-secondary float-end">{item.count}</span>
             </label>
         ))}
       </ListGroup>
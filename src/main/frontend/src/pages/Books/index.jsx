@@ -9,7 +9,8 @@ import {useSearchParams} from "react-router-dom";
 import Container from "react-bootstrap/Container";
 import {api} from "../../api";
 import Filter from "./Filter";
-import BookListing from "./BookListing";
+import BookListing, {AMOUNT_OF_BOOKS_ON_PAGE, SORT_BY_PRICE_ASC, sortParams} from "./BookListing";
+import {useCursorPages} from "../../utils/useCursorPages";
 
 /**
  * Page for listing of books.
@@ -17,67 +18,97 @@ import BookListing from "./BookListing";
  * @constructor BooksPage
  */
 export default function BooksPage() {
+  // Books on the current page
   const [products, setProducts] = useState(null);
+  // Counts of the results by categories, languages and authors
+  const [facets, setFacets] = useState(null);
   const [searchParams] = useSearchParams();
+  const [sortBy, setSortBy] = useState(SORT_BY_PRICE_ASC);
+  // Cursor of the next page, null if this is the last page
+  const [nextCursor, setNextCursor] = useState(null);
+  // New search, filter or sort starts from the first page
+  const paging = useCursorPages(`${searchParams.toString()}|${sortBy}`);
+  const cursor = paging.cursor;
 
   useEffect(() => {
-    // Searching for books?
     const query = searchParams.get('query');
-    // Or filtering books?
-    const categoryIds = searchParams.getAll('categoryIds');
-    const authorIds = searchParams.getAll('authorIds');
-    const languageIds = searchParams.getAll('languageIds');
-    const priceFrom = searchParams.get('priceFrom');
-    const priceTo = searchParams.get('priceTo');
+    const body = filterBody(searchParams);
+    const params = {...sortParams(sortBy), limit: AMOUNT_OF_BOOKS_ON_PAGE};
+    // Facets of all results come with the first page, the next pages keep them
+    if (cursor) params.cursor = cursor;
+    else params.facets = true;
+    let request;
     if (query && query !== '') {
       // User is searching for book.
-      api.post('/productdescription/search', {query})
-        .then(response => {
-          if (response.status === 200) {
-            setProducts(response.data);
-          }
-        })
-    } else if (categoryIds.length > 0 || languageIds.length > 0 || authorIds.length > 0
-               || priceFrom || priceTo ) {
-      let body = {};
-      if (categoryIds.length > 0) body.categoryIds = categoryIds;
-      if (authorIds.length > 0) body.authorIds = authorIds;
-      if (languageIds.length > 0) body.languageIds = languageIds;
-      if (priceFrom) body.priceFrom = Number(priceFrom);
-      if (priceTo) body.priceTo = Number(priceTo);
-      // User is filtering by category
-      api.post('/productdescription/filter', body)
-        .then(response => {
-          if (response.status === 200) {
-            setProducts(response.data);
-          }
-        });
+      request = api.post('/productdescription/search/page', {query}, {params});
+    } else if (body) {
+      // User is filtering books
+      request = api.post('/productdescription/filter/page', body, {params});
     } else {
       // Not searching, not filtering, get all products
-      api.get('/productdescription/')
-        .then(response => {
-          if (response.status === 200) {
-            setProducts(response.data);
-          }
-        });
+      request = api.get('/productdescription/page', {params});
     }
-  }, [searchParams]);
+    request
+      .then(response => {
+        if (response.status === 200) {
+          setProducts(response.data.items);
+          setNextCursor(response.data.nextCursor ?? null);
+          if (!cursor) setFacets(response.data.facets ?? null);
+        }
+      })
+      // Invalid query gives just an empty list
+      .catch(() => {
+        setProducts([]);
+        setNextCursor(null);
+      });
+  }, [searchParams, sortBy, cursor]);
 
   return (
     <Container>
       <Row className='vh-75'>
         <Col md={3}>
-          <Filter />
+          <Filter facets={facets} />
         </Col>
         <Col md={9}>
           {products === null
             ? (<Spinner animation="border" role="status">
                 <span className="visually-hidden">Loading...</span>
               </Spinner>)
-            : <BookListing products={products} />
+            : <BookListing products={products}
+                           sortBy={sortBy}
+                           onSortChange={setSortBy}
+                           page={paging.page}
+                           hasNext={nextCursor !== null}
+                           onFirst={paging.first}
+                           onPrev={paging.prev}
+                           onNext={() => paging.next(nextCursor)} />
           }
         </Col>
       </Row>
     </Container>
   );
-}
\ No newline at end of file
+}
+
+/**
+ * Returns body of the filter request from the url params, null if the books are not filtered.
+ * @param searchParams Url params.
+ * @returns {Object|null} Filter query.
+ */
+function filterBody(searchParams) {
+  const categoryIds = searchParams.getAll('categoryIds');
+  const authorIds = searchParams.getAll('authorIds');
+  const languageIds = searchParams.getAll('languageIds');
+  const priceFrom = searchParams.get('priceFrom');
+  const priceTo = searchParams.get('priceTo');
+  if (categoryIds.length === 0 && languageIds.length === 0 && authorIds.length === 0
+      && !priceFrom && !priceTo) {
+    return null;
+  }
+  let body = {};
+  if (categoryIds.length > 0) body.categoryIds = categoryIds;
+  if (authorIds.length > 0) body.authorIds = authorIds;
+  if (languageIds.length > 0) body.languageIds = languageIds;
+  if (priceFrom) body.priceFrom = Number(priceFrom);
+  if (priceTo) body.priceTo = Number(priceTo);
+  return body;
+}
@@ -11,6 +11,9 @@ import { useSearchParams } from 'react-router-dom';
 import ShowOrderWithId from './ShowOrderWithId';
 import SearchByEmail from './SearchByEmail';
 import OrdersFilter from '../../components/Orders/OrdersFilter';
+import { useCursorPages } from '../../utils/useCursorPages';
+
+const AMOUNT_OF_ORDERS_ON_PAGE = 15;
 
 /** For all orders by default showing orders from today. */
 const DEFAULT_FROM_DATE = new Date();
@@ -33,6 +36,12 @@ export default function OrdersManager() {
   const [status, setStatus] = useState(DEFAULT_STATE);
   const [fromDate, setFromDate] = useState(DEFAULT_FROM_DATE);
   const [toDate, setToDate] = useState(DEFAULT_TO_DATE);
+  // Cursor of the next page, null if this is the last page
+  const [nextCursor, setNextCursor] = useState(null);
+  const email = searchParams.get('email');
+  // Changed filter starts from the first page
+  const paging = useCursorPages(`${status}|${fromDate?.getTime()}|${toDate?.getTime()}`);
+  const cursor = paging.cursor;
 
   /** Preprocess orders and saves them to state. */
   function preprocessOrders(orders) {
@@ -43,40 +52,60 @@ export default function OrdersManager() {
   }
 
   useEffect(() => {
-    const email = searchParams.get('email');
     if (email) {
-      // Mail is set - get orders by mail
+      // Do not set any filter by default when searching by email
+      setStatus('');
+      setFromDate(null);
+      setToDate(null);
+    } else {
+      // showing all orders - set default filters which user can change
+      setStatus(DEFAULT_STATE);
+      setFromDate(DEFAULT_FROM_DATE);
+      setToDate(DEFAULT_TO_DATE);
+    }
+  }, [email]);
+
+  useEffect(() => {
+    // Response of a request of a previous filter is ignored
+    let ignore = false;
+    if (email) {
+      // Mail is set - get orders by mail, the orders of one user are filtered here
       api.get(`/order/byEmail/${email}`)
-        .then((response) =>{
-          // success
-          preprocessOrders(response.data);
-          // Do not set any filter by default when searching by email
-          setStatus('');
-          setFromDate(null);
-          setToDate(null);
-        })
+        .then((response) => {
+          if (!ignore) {
+            preprocessOrders(response.data);
+          }
+        });
     } else {
-      api.get('/order/all')
-        .then((response) =>{
-          preprocessOrders(response.data);
-          // showing all orders - set default filters which user can change
-          setStatus(DEFAULT_STATE);
-          setFromDate(DEFAULT_FROM_DATE);
-          setToDate(DEFAULT_TO_DATE);
-        })
+      // All orders are read page by page, filtered by the server
+      const params = {limit: AMOUNT_OF_ORDERS_ON_PAGE};
+      if (status !== '') params.status = status;
+      if (fromDate) params.from = toLocalDateTime(fromDate);
+      if (toDate) params.to = toLocalDateTime(toDate);
+      if (cursor) params.cursor = cursor;
+      api.get('/order/page', {params})
+        .then((response) => {
+          if (!ignore) {
+            preprocessOrders(response.data.items);
+            setNextCursor(response.data.nextCursor ?? null);
+          }
+        });
     }
-  }, [searchParams]);
+    return () => {
+      ignore = true;
+    };
+  }, [email, status, fromDate, toDate, cursor]);
 
   let content = null;
   if (orders === null) {
     content = (<Spinner animation='border' />);
-  } else if (orders.length === 0) {
+  } else if (orders.length === 0 && (email || paging.page === 1)) {
     content = (
       <div className='display-5 text-center text-muted mt-5'>
         No orders to show
       </div>
     );
-  } else {
+  } else if (email) {
     let ordersToShow = orders;
     // Filtering
     if (status !== '') {
@@ -89,6 +118,16 @@ export default function OrdersManager() {
       ordersToShow = ordersToShow.filter(o => o.creationDate <= toDate);
     }
     content = (<OrdersTable orders={ordersToShow} type='employee' defaultFromOldest={true}/>);
+  } else {
+    content = (<OrdersTable orders={orders}
+                            type='employee'
+                            paging={{
+                              page: paging.page,
+                              hasNext: nextCursor !== null,
+                              onFirst: paging.first,
+                              onPrev: paging.prev,
+                              onNext: () => paging.next(nextCursor),
+                            }}/>);
   }
 
   return (
@@ -112,4 +151,14 @@ export default function OrdersManager() {
       {content}
     </div>
   );
-}
\ No newline at end of file
+}
+
+/**
+ * Returns the date as local date time understood by the server (e.g. 2024-01-31T23:59:59).
+ * @param {Date} date Date to format.
+ */
+function toLocalDateTime(date) {
+  const pad = (n) => n.toString().padStart(2, '0');
+  return `${date.getFullYear()}-${pad(date.getMonth() + 1)}-${pad(date.getDate())}`
+    + `T${pad(date.getHours())}:${pad(date.getMinutes())}:${pad(date.getSeconds())}`;
+}
@@ -209,15 +209,19 @@ export default function BookForm({showModal, setShowModal, bookToEdit, getBooks,
             image
         };
 
-        // Check if book with this ISBN already exists
-        if (books.some(b => b.ISBN.toLowerCase() === ISBN.toLowerCase() && (!bookToEdit || b.id !== bookToEdit.id))) {
-            setErrorMessage('Book with this ISBN already exists.');
-            return;
-        }
+        // Check if book with this ISBN already exists, the listing has only one page of books
+        api.post('/productdescription/search/substring', {query: ISBN})
+            .then(response => {
+                if (response.data.some(b => b.ISBN?.toLowerCase() === ISBN.toLowerCase() && (!bookToEdit || b.id !== bookToEdit.id))) {
+                    setErrorMessage('Book with this ISBN already exists.');
+                    return;
+                }
 
-        // Call correct function based on whether the user is editing or adding a book
-        if (bookToEdit) editBook(book)
-        else addBook(book)
+                // Call correct function based on whether the user is editing or adding a book
+                if (bookToEdit) editBook(book)
+                else addBook(book)
+            })
+            .catch(error => console.log(error));
     }
 
     /**
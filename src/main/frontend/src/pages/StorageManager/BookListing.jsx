@@ -13,13 +13,14 @@ import StockInput from "./StockInput";
 /**
  * List of books for admin/employee to manage storage of books
  * @param books - list of books
+ * @param firstNumber - number of the first book in the table (the books are listed by pages)
  * @param handleEditClick - function for handling edit button click
  * @param handleDeleteClick - function for handling delete button click
  * @param updateBookDiscount - function for updating the discount of the book
  * @returns {Element} - table with books
  * @constructor - BookListing
  */
-export default function BookListing({books, handleEditClick, handleDeleteClick, updateBookDiscount}) {
+export default function BookListing({books, firstNumber = 1, handleEditClick, handleDeleteClick, updateBookDiscount}) {
     const {user} = useContext(AuthContext);
     const isAdmin = user?.role === 'admin';
 
@@ -51,7 +52,7 @@ export default function BookListing({books, handleEditClick, handleDeleteClick,
             <tbody>
             {booksCleaned.map((book, index) => (
                 <tr key={index}>
-                    <td>{index + 1}</td>
+                    <td>{firstNumber + index}</td>
                     <td>
                         <Link as='a'
                               role='button'
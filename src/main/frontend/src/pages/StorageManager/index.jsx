@@ -8,6 +8,10 @@ import {api} from "../../api";
 import StorageNavbarComponent from "./NavbarComponent";
 import {useSearchParams} from "react-router-dom";
 import BookListing from "./BookListing";
+import CursorPaginator from "../../components/CursorPaginator";
+import {useCursorPages} from "../../utils/useCursorPages";
+
+const AMOUNT_OF_BOOKS_ON_PAGE = 50;
 
 /**
  * Component for the Storage Manager page
@@ -18,6 +22,13 @@ export default function StorageManager() {
     const [books, setBooks] = useState([]);
     const [searchParams, setSearchParams] = useSearchParams()
     const [bookToEdit, setBookToEdit] = useState(null);
+    // Cursor of the next page, null if this is the last page
+    const [nextCursor, setNextCursor] = useState(null);
+    // Increased to read the current page again after a change
+    const [reloads, setReloads] = useState(0);
+    // New search starts from the first page
+    const paging = useCursorPages(searchParams.toString());
+    const cursor = paging.cursor;
 
     /**
      * Function for updating the discount of a book in real-time
@@ -43,32 +54,36 @@ export default function StorageManager() {
     };
 
     /**
-     * Function for getting all books using the REST API
+     * Function for reading the listed books again using the REST API
      */
     function getBooks() {
-        api.get('/productdescription')
-            .then(response => {
-                // sort books by name
-                response.data.sort((a, b) => a.name.localeCompare(b.name));
-                setBooks(response.data);
-            });
+        setReloads(r => r + 1);
     }
 
     /**
      * Function for getting books based on the search query
-     * If there is no query, get all books
+     * If there is no query, get one page of books sorted by name
      * otherwise search for books based on the query
      */
     useEffect(() => {
         let query = searchParams.get('query');
         if (query) {
             // User is searching for a book
-            api.post('/productdescription/search', {query})
+            api.post('/productdescription/search/substring', {query})
                 .then(response => {
                     setBooks(response.data);
+                    setNextCursor(null);
+                });
+        } else {
+            const params = {sort: 'name', limit: AMOUNT_OF_BOOKS_ON_PAGE};
+            if (cursor) params.cursor = cursor;
+            api.get('/productdescription/page', {params})
+                .then(response => {
+                    setBooks(response.data.items);
+                    setNextCursor(response.data.nextCursor ?? null);
                 });
-        } else getBooks();
-    }, [searchParams]);
+        }
+    }, [searchParams, cursor, reloads]);
 
     /**
      * Function for handling the edit click
@@ -96,7 +111,13 @@ export default function StorageManager() {
         <div>
             <StorageNavbarComponent books={books} getBooks={getBooks} bookToEdit={bookToEdit} setBookToEdit={setBookToEdit} />
             <br />
-            <BookListing books={books} handleEditClick={handleEditClick} handleDeleteClick={handleDeleteClick} updateBookDiscount={updateBookDiscount} />
+            <BookListing books={books} firstNumber={(paging.page - 1) * AMOUNT_OF_BOOKS_ON_PAGE + 1} handleEditClick={handleEditClick} handleDeleteClick={handleDeleteClick} updateBookDiscount={updateBookDiscount} />
+            {!searchParams.get('query') &&
+                <CursorPaginator page={paging.page}
+                                 hasNext={nextCursor !== null}
+                                 onFirst={paging.first}
+                                 onPrev={paging.prev}
+                                 onNext={() => paging.next(nextCursor)}/>}
         </div>
     );
 }
\ No newline at end of file
@@ -26,18 +26,24 @@ export default function UserCartPage() {
   const [books, setBooks] = useState([]);
 
   useEffect(() => {
-    api.get('/productdescription')
+    // Current prices and stock of the cart items, in one request
+    const cart = Array.from(items, ([id, amount]) => ({id, amount}));
+    api.post('/order/quote', cart)
       .then((response) => {
-        const allBooks = response.data;
-        // filtering - getting only books which are in the cart
-        const books = allBooks.filter(book => items.has(book.id));
-        // Counting current price for the books.
-        books.forEach(book => {
-          book.currentPrice = book.price;
-          if (book?.discount?.discount) {
-            book.currentPrice = book.price *((100-book.discount.discount)/100);
-          }
-        })
+        const books = response.data.items
+          .filter(line => line.status !== 'NOT_FOUND')
+          .map(line => ({
+            id: line.id,
+            name: line.name,
+            image: line.image,
+            author: line.authorId && {
+              id: line.authorId,
+              firstName: line.authorFirstName,
+              lastName: line.authorLastName,
+            },
+            availableQuantity: line.availableQuantity,
+            currentPrice: line.currentPrice,
+          }));
         setBooks(books);
       });
   }, [items]);
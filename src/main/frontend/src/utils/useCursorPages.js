@@ -0,0 +1,27 @@
+/**
+ * Hook for listings loaded page by page by cursors.
+ * @author Lukas Petr
+ */
+import {useMemo, useState} from "react";
+
+/**
+ * Remembers cursors of the visited pages of a listing. When the key (e.g. the
+ * search, filter and sort of the listing) changes, the listing starts again
+ * from the first page.
+ * @param {string} key Identifies the listing.
+ * @returns {{cursor: (string|null), page: number, first: Function, prev: Function, next: Function}}
+ *          Cursor of the current page (null for the first page), number of the page
+ *          (from 1) and functions going to the first, previous and next page
+ *          (next is called with the cursor of the next page).
+ */
+export function useCursorPages(key) {
+  const [paging, setPaging] = useState({key, cursors: [null]});
+  const cursors = useMemo(() => paging.key === key ? paging.cursors : [null], [paging, key]);
+  return {
+    cursor: cursors[cursors.length - 1],
+    page: cursors.length,
+    first: () => setPaging({key, cursors: [null]}),
+    prev: () => setPaging({key, cursors: cursors.slice(0, -1)}),
+    next: (nextCursor) => setPaging({key, cursors: [...cursors, nextCursor]}),
+  };
+}
@@ -0,0 +1,52 @@
+/**
+ * PIS Projekt 2024
+ * CacheResource.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.api;
+
+import java.util.List;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import pis.api.dto.CacheStatsDTO;
+import pis.service.PriceSnapshotCache;
+import pis.service.ProductJsonCache;
+import pis.service.ReferenceDataCache;
+import pis.service.SearchResultCache;
+import pis.service.TokenCache;
+
+/**
+ * REST API resource for monitoring the application caches -- admins only.
+ */
+@Path("/cache")
+@RolesAllowed({ "admin" })
+public class CacheResource {
+    @Inject
+    private ReferenceDataCache referenceDataCache;
+
+    @Inject
+    private TokenCache tokenCache;
+
+    @Inject
+    private PriceSnapshotCache priceSnapshotCache;
+
+    @Inject
+    private SearchResultCache searchResultCache;
+
+    @Inject
+    private ProductJsonCache productJsonCache;
+
+    /**
+     * Returns size and hit/miss counts of every cache.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<CacheStatsDTO> getCacheStats() {
+        return List.of(referenceDataCache.stats(), tokenCache.stats(), priceSnapshotCache.stats(),
+                searchResultCache.stats(), productJsonCache.stats());
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * PIS Projekt 2024
+ * CampaignResource.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.api;
+
+import java.util.List;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import pis.api.dto.CampaignDTO;
+import pis.api.dto.CreateCampaignDTO;
+import pis.data.CampaignTarget;
+import pis.data.Discount;
+import pis.data.DiscountCampaign;
+import pis.service.CampaignScheduler;
+import pis.service.CurrentUser;
+import pis.service.DiscountCampaignManager;
+import pis.service.DiscountManager;
+
+/**
+ * REST API resource for discount campaigns -- admins and employees only.
+ */
+@Path("/campaign")
+@RolesAllowed({ "admin", "employee" })
+public class CampaignResource {
+    @Inject
+    private DiscountCampaignManager campaignManager;
+
+    @Inject
+    private DiscountManager discountManager;
+
+    @Inject
+    private CampaignScheduler campaignScheduler;
+
+    @Inject
+    private CurrentUser currentUser;
+
+    /**
+     * Returns all campaigns, the latest first.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<CampaignDTO> getCampaigns() {
+        return campaignManager.findAll().stream().map(CampaignDTO::new).toList();
+    }
+
+    /**
+     * Returns campaign from id.
+     */
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCampaign(@PathParam("id") long id) {
+        DiscountCampaign c = campaignManager.find(id);
+        if (c == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Error: Campaign not found").build();
+        }
+        return Response.ok().entity(new CampaignDTO(c)).build();
+    }
+
+    /**
+     * Creates a campaign, it starts and ends automatically.
+     * 
+     * @param dto Campaign data.
+     * @return Created campaign.
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response createCampaign(CreateCampaignDTO dto) {
+        CampaignTarget target;
+        try {
+            target = CampaignTarget.valueOf(String.valueOf(dto.getTarget()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Invalid target").build();
+        }
+        if (dto.getName() == null || dto.getName().isBlank() || dto.getTargetIds() == null
+                || dto.getTargetIds().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Name and targets are required")
+                    .build();
+        }
+        if (dto.getStartsAt() == null || dto.getEndsAt() == null || !dto.getEndsAt().isAfter(dto.getStartsAt())) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Campaign has to end after it starts")
+                    .build();
+        }
+        Discount discount = discountManager.find(dto.getDiscountId());
+        if (discount == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Error: Discount not found").build();
+        }
+        DiscountCampaign c = campaignManager.save(new DiscountCampaign(dto.getName(), discount, target,
+                dto.getTargetIds(), dto.getStartsAt(), dto.getEndsAt(), currentUser.getUser()));
+        campaignScheduler.schedule(c);
+        return Response.ok().entity(new CampaignDTO(c)).build();
+    }
+
+    /**
+     * Cancels the campaign, products of an active campaign get their previous discounts back.
+     */
+    @DELETE
+    @Path("/{id}")
+    public Response cancelCampaign(@PathParam("id") long id) {
+        if (campaignManager.find(id) == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Error: Campaign not found").build();
+        }
+        if (!campaignManager.cancel(id)) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Campaign already ended").build();
+        }
+        return Response.ok().entity("Campaign was cancelled").build();
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * PIS Projekt 2024
+ * FeedResource.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.api;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import jakarta.annotation.security.PermitAll;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import pis.service.CatalogFeed;
+import pis.service.QueryBudget;
+
+/**
+ * REST API for downloading the catalog feed.
+ * The feed is served from the snapshot files, it does not touch the database.
+ */
+@Path("/feed")
+@PermitAll
+public class FeedResource {
+    /** Seconds after which a client should ask again while the first snapshot is built. */
+    private static final int RETRY_AFTER = 10;
+
+    @Inject
+    private CatalogFeed catalogFeed;
+
+    /**
+     * Returns the gzip-compressed catalog, supports conditional requests (ETag)
+     * and one byte range, so an interrupted download can continue.
+     * 
+     * @param extension ndjson or csv.
+     * @param ifNoneMatch ETag of the snapshot the client already has.
+     * @param range     Requested range, e.g. bytes=1000-.
+     * @param ifRange   The range is only returned if the snapshot still has this ETag.
+     * @return The whole snapshot, its part or 304 if it did not change.
+     */
+    @GET
+    @Path("/catalog.{extension}.gz")
+    @QueryBudget(0)
+    public Response getCatalog(@PathParam("extension") String extension,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+            @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange) {
+        CatalogFeed.Format format = CatalogFeed.Format.fromExtension(extension);
+        if (format == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Error: Unknown feed format").build();
+        }
+        CatalogFeed.Snapshot snapshot = catalogFeed.getSnapshot(format);
+        if (snapshot == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", RETRY_AFTER)
+                    .entity("Error: Feed is being generated").build();
+        }
+        String etag = snapshot.getEtag();
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+            return Response.notModified().header(HttpHeaders.ETAG, etag).build();
+        }
+
+        long length = snapshot.getLength();
+        long start = 0;
+        long end = length - 1;
+        boolean partial = false;
+        if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header("Content-Range", "bytes */" + length).build();
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                partial = true;
+            }
+        }
+
+        FileChannel channel;
+        try {
+            // Opened now, a newer snapshot may replace (and delete) this file while it is sent
+            channel = FileChannel.open(snapshot.getFile(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            System.out.println(e);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", RETRY_AFTER).build();
+        }
+        long from = start;
+        long count = end - start + 1;
+        StreamingOutput body = out -> {
+            try (FileChannel in = channel) {
+                // The servlet does not give the socket, the file is copied by the channel, not through the heap
+                WritableByteChannel target = Channels.newChannel(out);
+                long sent = 0;
+                while (sent < count) {
+                    sent += in.transferTo(from + sent, count - sent, target);
+                }
+            }
+        };
+        Response.Status status = partial ? Response.Status.PARTIAL_CONTENT : Response.Status.OK;
+        Response.ResponseBuilder response = Response.status(status)
+                .entity(body)
+                .type("application/gzip")
+                .header(HttpHeaders.ETAG, etag)
+                .header(HttpHeaders.CONTENT_LENGTH, count)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Disposition", "attachment; filename=\"catalog." + format.getExtension() + ".gz\"");
+        if (partial) {
+            response.header("Content-Range", "bytes " + start + "-" + end + "/" + length);
+        }
+        return response.build();
+    }
+
+    /**
+     * Parses a single byte range.
+     * 
+     * @return {start, end}, empty array if the whole file should be sent (several ranges
+     *         or an unknown unit), null if the range cannot be satisfied.
+     */
+    private static long[] parseRange(String range, long length) {
+        String value = range.trim();
+        if (!value.startsWith("bytes=") || value.contains(",")) {
+            return new long[0];
+        }
+        String[] parts = value.substring("bytes=".length()).split("-", -1);
+        try {
+            long start;
+            long end;
+            if (parts.length != 2) {
+                return new long[0];
+            }
+            if (parts[0].isEmpty()) {
+                // Suffix: the last n bytes
+                long suffix = Long.parseLong(parts[1]);
+                if (suffix == 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(parts[0]);
+                end = parts[1].isEmpty() ? length - 1 : Math.min(Long.parseLong(parts[1]), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
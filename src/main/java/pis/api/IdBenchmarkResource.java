@@ -0,0 +1,41 @@
+/**
+ * PIS Projekt 2024
+ * IdBenchmarkResource.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.api;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import pis.service.IdGenerators;
+
+/**
+ * REST API for measuring the id allocation -- admins only, for development purposes.
+ */
+@Path("/ids/benchmark")
+@RolesAllowed({ "admin" })
+public class IdBenchmarkResource {
+    /** Maximal number of ids allocated by one run. */
+    private static final int MAX_COUNT = 100000;
+
+    @Inject
+    private IdGenerators idGenerators;
+
+    /**
+     * Allocates count ids one by one and in blocks of allocationSize and returns both times.
+     */
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response benchmark(@QueryParam("count") @DefaultValue("1000") int count,
+            @QueryParam("allocationSize") @DefaultValue("100") int allocationSize) {
+        if (count < 1 || count > MAX_COUNT || allocationSize < 1) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Invalid count or allocation size")
+                    .build();
+        }
+        return Response.ok().entity(idGenerators.benchmark(count, allocationSize)).build();
+    }
+}
@@ -7,32 +7,48 @@
 
 package pis.api;
 
-import java.security.Principal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import pis.data.Modification;
 import pis.data.Order;
-import pis.data.OrderItem;
 import pis.data.OrderStatus;
-import pis.data.ProductDescription;
 import pis.data.RegisteredUser;
 import jakarta.annotation.security.PermitAll;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import pis.api.dto.CreateOrderDTO;
 import pis.api.dto.CreateOrderItemDTO;
 import pis.api.dto.OrderDetailDTO;
+import pis.api.dto.OrderPageDTO;
 import pis.api.dto.OrderPreviewDTO;
+import pis.api.dto.QuoteDTO;
+import pis.api.dto.QuoteItemDTO;
 import pis.api.dto.UpdateOrderDTO;
 import jakarta.ws.rs.*;
-import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import pis.service.OrderCreatedEvent;
 import pis.service.OrderManager;
+import pis.service.OrderPageCursor;
+import pis.service.PriceSnapshot;
 import pis.service.ProductDescriptionManager;
 import pis.service.RegisteredUserManager;
+import pis.service.CurrentUser;
+import pis.service.CheckoutException;
+import pis.service.CheckoutManager;
+import pis.service.HotInventory;
+import pis.service.QueryBudget;
 import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.core.SecurityContext;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -47,28 +63,96 @@ import org.eclipse.microprofile.openapi.annotations.media.Schema;
 @Path("/order")
 @PermitAll
 public class OrderResource {
+    /** Maximal number of orders on one page. */
+    private static final int MAX_PAGE_SIZE = 100;
+    /** Maximal number of lines of a quoted cart. */
+    private static final int MAX_QUOTE_ITEMS = 200;
+
+    @Inject
+    private CurrentUser currentUser;
+
     @Inject
     private OrderManager orderManager;
 
     @Inject
-    private ProductDescriptionManager productDescriptionManager;
+    private RegisteredUserManager registeredUserManager;
 
-    @Context
-    private SecurityContext securityContext;
+    @Inject
+    private CheckoutManager checkoutManager;
 
     @Inject
-    private RegisteredUserManager registeredUserManager;
+    private HotInventory hotInventory;
+
+    @Inject
+    private ProductDescriptionManager productDescriptionManager;
+
+    @Inject
+    private Event<OrderCreatedEvent> orderCreated;
 
     /**
-     * Returns list of all Orders.
+     * Returns list of the newest Orders (at most 1000), older ones are read by /page.
      */
     @GET
     @RolesAllowed({ "admin", "employee" })
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
+    @QueryBudget(2)
     public List<OrderPreviewDTO> getOrders() {
-        List<Order> orders = orderManager.findAll();
-        return orders.stream().map(o -> OrderPreviewDTO.createFromOrder(o)).toList();
+        return orderManager.findAllPreviews();
+    }
+
+    /**
+     * Returns one page of Orders, the newest first.
+     * 
+     * @param status Only orders in this status, omitted for all.
+     * @param from   Only orders created from this time (ISO date time), can be omitted.
+     * @param to     Only orders created until this time (ISO date time), can be omitted.
+     * @param cursor Cursor from the previous page, omitted for the first page.
+     * @param limit  Number of orders on the page, at most MAX_PAGE_SIZE.
+     * @return Page of Orders with the cursor of the next page.
+     */
+    @GET
+    @RolesAllowed({ "admin", "employee" })
+    @Path("/page")
+    @Produces(MediaType.APPLICATION_JSON)
+    @QueryBudget(2)
+    public Response getOrdersPage(@QueryParam("status") String status, @QueryParam("from") String from,
+            @QueryParam("to") String to, @QueryParam("cursor") String cursor,
+            @QueryParam("limit") @DefaultValue("20") int limit) {
+        OrderStatus orderStatus = null;
+        LocalDateTime fromDate = null;
+        LocalDateTime toDate = null;
+        OrderPageCursor after = null;
+        try {
+            if (status != null && !status.isEmpty()) {
+                orderStatus = OrderStatus.valueOf(status.toUpperCase());
+            }
+            if (from != null && !from.isEmpty()) {
+                fromDate = LocalDateTime.parse(from, DateTimeFormatter.ISO_DATE_TIME);
+            }
+            if (to != null && !to.isEmpty()) {
+                toDate = LocalDateTime.parse(to, DateTimeFormatter.ISO_DATE_TIME);
+            }
+            if (cursor != null && !cursor.isEmpty()) {
+                after = OrderPageCursor.decode(cursor);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Invalid filter or cursor").build();
+        }
+        if (limit < 1) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Limit has to be positive").build();
+        }
+        limit = Math.min(limit, MAX_PAGE_SIZE);
+
+        // One more order is fetched to know if there is a next page
+        List<OrderPreviewDTO> orders = orderManager.findPreviewPage(orderStatus, fromDate, toDate, after, limit + 1);
+        String nextCursor = null;
+        if (orders.size() > limit) {
+            orders = orders.subList(0, limit);
+            OrderPreviewDTO last = orders.get(limit - 1);
+            nextCursor = new OrderPageCursor(last.getCreationDate(), last.getId()).encode();
+        }
+        return Response.ok().entity(new OrderPageDTO(orders, nextCursor)).build();
     }
 
     /**
@@ -78,6 +162,7 @@ public class OrderResource {
     @RolesAllowed({ "admin", "employee" })
     @Path("/byEmail/{email}")
     @Produces(MediaType.APPLICATION_JSON)
+    @QueryBudget(6)
     public List<OrderPreviewDTO> getOrdersByEmail(@PathParam("email") String email) {
         // Find orders where the email is set in user info
         List<Order> orders = new LinkedList<Order>();
@@ -85,11 +170,12 @@ public class OrderResource {
         // Also add orders which was done by registered user with given email
         RegisteredUser user = registeredUserManager.findByEmail(email);
         if (user != null) {
-            orders.addAll(user.getOrders());
+            orders.addAll(orderManager.findByUser(user.getId()));
         }
         // If the user did not chagend the email for the order there will be
         // duplicates, therefore we are removing them.
-        orders = orders.stream().distinct().toList();
+        Set<Long> seen = new HashSet<>();
+        orders = orders.stream().filter(o -> seen.add(o.getId())).toList();
         return orders.stream().map(o -> OrderPreviewDTO.createFromOrder(o)).toList();
     }
 
@@ -99,10 +185,10 @@ public class OrderResource {
     @GET
     @RolesAllowed({ "admin", "user", "employee" })
     @Produces(MediaType.APPLICATION_JSON)
+    @QueryBudget(3)
     public List<OrderPreviewDTO> getOrdersForUser() {
-        String userEmail = securityContext.getUserPrincipal().getName();
-        RegisteredUser user = registeredUserManager.findByEmail(userEmail);
-        return user.getOrders().stream().map(o -> OrderPreviewDTO.createFromOrder(o)).toList();
+        return orderManager.findByUser(currentUser.getId()).stream().map(o -> OrderPreviewDTO.createFromOrder(o))
+                .toList();
     }
 
     /**
@@ -119,17 +205,13 @@ public class OrderResource {
             @APIResponse(responseCode = "404", description = "Order with given id was not found."),
     })
     @Produces(MediaType.APPLICATION_JSON)
+    @QueryBudget(7)
     public Response getOrder(@PathParam("id") long id) {
-        Order o = orderManager.find(id);
+        Order o = orderManager.findDetail(id);
         if (o != null) {
             OrderDetailDTO oDTO = new OrderDetailDTO(o);
             // Check who is accessing the data, if it is admin or not,
-            boolean isAdmin = false;
-            Principal principal = securityContext.getUserPrincipal();
-            if (principal != null) {
-                RegisteredUser user = registeredUserManager.findByEmail(principal.getName());
-                isAdmin = user.isAdmin();
-            }
+            boolean isAdmin = currentUser.isAdmin();
             // If it is not accessing admin then hide/remove the information
             // about who did the modifications
             if (! isAdmin) {
@@ -151,22 +233,15 @@ public class OrderResource {
     @Consumes(MediaType.APPLICATION_JSON)
     public Response createNewOrder(CreateOrderDTO dto) {
         List<CreateOrderItemDTO> items = dto.getItems();
+        if (items == null || items.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Order has no items").build();
+        }
 
         for (CreateOrderItemDTO item : items) {
-            ProductDescription product = productDescriptionManager.find(item.getId());
-            int amount = item.getAmount();
-            if (amount <= 0) {
+            if (item.getAmount() <= 0) {
                 return Response.status(Response.Status.BAD_REQUEST).entity("Error: Amount cannot be negative or zero")
                         .build();
             }
-
-            if (product == null) {
-                return Response.status(Response.Status.NOT_FOUND).entity("Error: Product not found").build();
-            }
-
-            if (product.getAvailableQuantity() < amount) {
-                return Response.status(Response.Status.BAD_REQUEST).entity("Error: Not enough items in stock").build();
-            }
         }
 
         // Create order
@@ -176,31 +251,95 @@ public class OrderResource {
                 dto.getUserAddress().getState(), dto.getUserAddress().getTown(), dto.getUserAddress().getStreet(),
                 dto.getUserAddress().getStreetNumber(), dto.getUserAddress().getPostCode());
 
+        // If the order was made by logged in user, it is added to his orders
+        Long userId = currentUser.isLoggedIn() ? currentUser.getId() : null;
+
+        // Hot products are reserved in memory, only a limited number of such
+        // checkouts runs at once so the rest of the shop is not flooded
+        Map<Long, Integer> amounts = new HashMap<>();
         for (CreateOrderItemDTO item : items) {
-            ProductDescription product = productDescriptionManager.find(item.getId());
-            OrderItem orderItem = new OrderItem(item.getAmount(), product);
-            int amount = item.getAmount();
-            order.addOrderItem(orderItem);
-            product.setAvailableQuantity(product.getAvailableQuantity() - amount);
-            // Need to persist
-            productDescriptionManager.save(product);
+            amounts.merge(item.getId(), item.getAmount(), Integer::sum);
         }
-
-        order = orderManager.save(order);
-        // Check if the order did user which is logged in.
-        // If it was logged in user then the securityContext will contain his email.
-        if (securityContext.getUserPrincipal() != null) {
-            String userEmail = securityContext.getUserPrincipal().getName();
-            // Getting user who ordered the items
-            RegisteredUser user = registeredUserManager.findByEmail(userEmail);
-            user.addOrder(order);
-            // Saving user for the reason his updated orders are saved in DB.
-            registeredUserManager.save(user);
+        boolean hot = amounts.keySet().stream().anyMatch(hotInventory::isHot);
+        if (hot && !hotInventory.admit()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Error: Too many orders, try again")
+                    .build();
         }
+        try {
+            HotInventory.Reservation reservation = hotInventory.reserve(amounts);
+            if (reservation == null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Error: Not enough items in stock")
+                        .build();
+            }
+            boolean placed = false;
+            try {
+                order = checkoutManager.placeOrder(order, items, userId, reservation.getProductIds());
+                placed = true;
+            } catch (CheckoutException e) {
+                Response.Status status = e.getReason() == CheckoutException.Reason.PRODUCT_NOT_FOUND
+                        ? Response.Status.NOT_FOUND
+                        : Response.Status.BAD_REQUEST;
+                return Response.status(status).entity(e.getMessage()).build();
+            } finally {
+                if (placed) {
+                    reservation.commit();
+                } else {
+                    reservation.cancel();
+                }
+            }
+        } finally {
+            if (hot) {
+                hotInventory.leave();
+            }
+        }
+        orderCreated.fire(new OrderCreatedEvent(order));
         // returning order id in the body of response
         return Response.ok(order.getId()).build();
     }
 
+    /**
+     * Returns current prices, discounts and stock of the cart items.
+     * Products are read by one query (and cached for a few seconds), so the
+     * cart can be refreshed cheaply whenever it is shown.
+     * 
+     * @param items Products and amounts in the cart.
+     * @return Quote with the status of every line and the total price.
+     */
+    @POST
+    @Path("/quote")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @QueryBudget(2)
+    public Response quote(List<CreateOrderItemDTO> items) {
+        if (items == null || items.size() > MAX_QUOTE_ITEMS) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Invalid number of items").build();
+        }
+        Map<Long, Integer> amounts = new LinkedHashMap<>();
+        for (CreateOrderItemDTO item : items) {
+            if (item.getAmount() <= 0) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Error: Amount cannot be negative or zero")
+                        .build();
+            }
+            amounts.merge(item.getId(), item.getAmount(), Integer::sum);
+        }
+
+        Map<Long, PriceSnapshot> products = amounts.isEmpty() ? Map.of()
+                : productDescriptionManager.findPriceSnapshots(amounts.keySet());
+        List<QuoteItemDTO> lines = new ArrayList<>();
+        for (Map.Entry<Long, Integer> e : amounts.entrySet()) {
+            PriceSnapshot product = products.get(e.getKey());
+            if (product == null) {
+                lines.add(new QuoteItemDTO(e.getKey(), e.getValue()));
+                continue;
+            }
+            // Stock of hot products is held in memory, the database is behind
+            Long hot = hotInventory.getAvailable(product.getId());
+            int available = hot != null ? hot.intValue() : product.getAvailableQuantity();
+            lines.add(new QuoteItemDTO(product, e.getValue(), available));
+        }
+        return Response.ok().entity(new QuoteDTO(lines)).build();
+    }
+
     @PUT
     @Path("/update")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -208,8 +347,7 @@ public class OrderResource {
     @RolesAllowed({ "admin", "employee" })
     public Response updateOrderStatus(UpdateOrderDTO dto) {
         Order o = orderManager.find(dto.getId());
-        String userEmail = securityContext.getUserPrincipal().getName();
-        RegisteredUser user = registeredUserManager.findByEmail(userEmail);
+        RegisteredUser user = currentUser.getUser();
         System.out.println(dto.getId());
         System.out.println(user.getId());
         if (o == null) {
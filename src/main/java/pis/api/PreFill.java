@@ -30,6 +30,7 @@ import pis.service.OrderUserInfoManager;
 import pis.service.ProductDescriptionManager;
 import pis.service.RegisteredUserManager;
 import pis.service.OrderItemManager;
+import pis.service.StatisticsRollupManager;
 
 import java.time.LocalDateTime;
 import java.time.Month;
@@ -63,6 +64,9 @@ public class PreFill {
     @Inject
     OrderItemManager orderItemManager;
 
+    @Inject
+    StatisticsRollupManager statisticsRollupManager;
+
     @GET
     public Response prefillDB() {
 
@@ -301,6 +305,9 @@ public class PreFill {
         registeredUserManager.save(admin);
         registeredUserManager.save(user);
 
+        // Orders were saved directly, compute their statistics at once
+        statisticsRollupManager.rebuildAll();
+
         return Response.status(Response.Status.OK).entity("DB was prefilled").build();
     }
 }
@@ -11,7 +11,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import pis.data.ProductDescription;
 import pis.data.ProductDescriptionEvidence;
@@ -19,6 +21,14 @@ import pis.data.Category;
 import pis.api.dto.FilterQuery;
 import pis.api.dto.SearchQuery;
 import pis.api.dto.ProductDetailDTO;
+import pis.api.dto.ProductPageDTO;
+import pis.api.dto.SuggestionDTO;
+import pis.api.dto.HotItemDTO;
+import pis.api.dto.BulkProductUpdateDTO;
+import pis.api.dto.BulkUpdateResultDTO;
+import pis.api.dto.ImportReportDTO;
+import pis.api.dto.FacetedProductsDTO;
+import pis.api.dto.FacetsDTO;
 import pis.api.dto.ProductDescriptionEvidenceDTO;
 import pis.data.BookAuthor;
 import pis.data.Language;
@@ -35,15 +45,31 @@ import pis.service.BookAuthorManager;
 import pis.service.LanguageManager;
 import pis.service.DiscountManager;
 import pis.service.RegisteredUserManager;
+import pis.service.ProductPageCursor;
+import pis.service.ProductSort;
+import pis.service.SuggestionIndex;
+import pis.service.HotInventory;
+import pis.service.CatalogImporter;
+import pis.service.CatalogColumns;
+import pis.service.ProductJsonCache;
+import pis.service.ImportFormat;
+import pis.service.CurrentUser;
+import pis.service.QueryBudget;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 
+import java.io.InputStream;
+
 /**
  * REST API resource for working with ProductDescriptions.
  */
 @Path("/productdescription")
 @PermitAll
 public class ProductDescriptionResource {
+    @Inject
+    private CurrentUser currentUser;
+
     // Injecting managers for ProductDescription, Category, BookAuthor, Language and
     // Discount
     @Inject
@@ -60,9 +86,26 @@ public class ProductDescriptionResource {
     private SecurityContext securityContext;
     @Inject
     private RegisteredUserManager registeredUserManager;
+    @Inject
+    private SuggestionIndex suggestionIndex;
+    @Inject
+    private HotInventory hotInventory;
+    @Inject
+    private CatalogImporter catalogImporter;
+    @Inject
+    private CatalogColumns catalogColumns;
+    @Inject
+    private ProductJsonCache productJsonCache;
+
+    /** Maximal number of updates in one bulk update. */
+    private static final int MAX_BULK_ITEMS = 20000;
+
+    /** Maximal number of products returned on one page. */
+    private static final int MAX_PAGE_SIZE = 100;
 
     /**
      * Returns list of all ProductDescriptions.
+     * No QueryBudget, the relations are read in batches whose number grows with the catalog.
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -76,22 +119,80 @@ public class ProductDescriptionResource {
         return productDetailDTOs;
     }
 
+    /**
+     * Returns one page of the catalog sorted by id, name or price.
+     * 
+     * @param sort   Column to sort by (id, name or price).
+     * @param order  Sort order (asc or desc).
+     * @param cursor Cursor from the previous page, omitted for the first page.
+     * @param limit  Number of products on the page, at most MAX_PAGE_SIZE.
+     * @param facets If to return the facet counts of the whole catalog with the first page.
+     * @return Page of ProductDescriptions with the cursor of the next page.
+     */
+    @GET
+    @Path("/page")
+    @Produces(MediaType.APPLICATION_JSON)
+    @QueryBudget(6)
+    public Response getProductDescriptionsPage(@QueryParam("sort") @DefaultValue("id") String sort,
+            @QueryParam("order") @DefaultValue("asc") String order, @QueryParam("cursor") String cursor,
+            @QueryParam("limit") @DefaultValue("20") int limit,
+            @QueryParam("facets") @DefaultValue("false") boolean facets) {
+        return page(null, null, sort, order, cursor, limit, facets);
+    }
+
     /**
      * Returns ProductDescription from id.
+     * The JSON is served from ProductJsonCache, gzip-compressed if the client accepts it.
      * 
-     * @param id ID of the ProductDescription.
-     * @return ProductDescription with given id.
+     * @param id             ID of the ProductDescription.
+     * @param acceptEncoding Accept-Encoding header of the request.
+     * @return ProductDescription with given id, no content if it does not exist.
      */
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public ProductDetailDTO getProductDescription(@PathParam("id") long id) {
-        ProductDescription productDescription = productDescriptionManager.find(id);
-        if (productDescription != null) {
-            ProductDetailDTO productDetailDTO = new ProductDetailDTO(productDescription);
-            return productDetailDTO;
+    @QueryBudget(6)
+    public Response getProductDescription(@PathParam("id") long id,
+            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        ProductJsonCache.Entry entry = productJsonCache.get(id, () -> {
+            ProductDescription productDescription = productDescriptionManager.findDetail(id);
+            return productDescription == null ? null : new ProductDetailDTO(productDescription);
+        });
+        if (entry == null) {
+            return Response.noContent().build();
         }
-        return null;
+        // The cached bytes are written as they are, without serialization
+        if (acceptsGzip(acceptEncoding)) {
+            return Response.ok(entry.getGzip(), MediaType.APPLICATION_JSON_TYPE.withCharset("UTF-8"))
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        return Response.ok(entry.getJson(), MediaType.APPLICATION_JSON_TYPE.withCharset("UTF-8"))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+    }
+
+    /**
+     * Tells if the Accept-Encoding header allows gzip (and does not refuse it by q=0).
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].replace(" ", "");
+                    if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -139,47 +240,230 @@ public class ProductDescriptionResource {
     /**
      * Returns search bar results from search query that can be name, author,
      * category, language ISBN or discount.
-     * The search query can be partial.
+     * The search query can be partial, results are ordered by relevance.
      * 
      * @param searchQuery Search query.
-     * @return List of ProductDescriptions with given search query.
+     * @param facets      If to return the facet counts of the results too.
+     * @return List of ProductDescriptions with given search query, with facets {items, facets}.
      * @apiNote uses POST instead of GET because GET can not have body
      */
     @POST
     @Path("/search")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public List<ProductDetailDTO> searchProductDescriptions(SearchQuery searchQuery) {
+    @QueryBudget(6)
+    public Response searchProductDescriptions(SearchQuery searchQuery,
+            @QueryParam("facets") @DefaultValue("false") boolean facets) {
 
         // Empty array to be returned in case the request is not valid
         List<ProductDetailDTO> arr = new ArrayList<>();
         // Request validation
         if (!searchQuery.valid()) {
-            return arr;
+            return Response.ok().entity(arr).build();
         }
 
         List<ProductDescription> results = productDescriptionManager.searchProductDescriptions(searchQuery.getQuery())
                 // filtering so it does not have to be done on frontend
                 .stream().distinct().toList();
-        return results.stream().map(r -> new ProductDetailDTO(r)).toList();
+        List<ProductDetailDTO> items = results.stream().map(r -> new ProductDetailDTO(r)).toList();
+        if (!facets) {
+            return Response.ok().entity(items).build();
+        }
+        List<Long> ids = results.stream().map(ProductDescription::getId).toList();
+        return Response.ok().entity(new FacetedProductsDTO(items, facets(null, ids))).build();
+    }
+
+    /**
+     * Returns products with name, ISBN or author name containing the query,
+     * used by the storage to find books by fragments of ISBN or title.
+     * 
+     * @param searchQuery Search query.
+     * @return List of ProductDescriptions ordered by id.
+     * @apiNote uses POST instead of GET because GET can not have body
+     */
+    @POST
+    @Path("/search/substring")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @RolesAllowed({ "admin", "employee" })
+    @QueryBudget(6)
+    public List<ProductDetailDTO> searchProductDescriptionsBySubstring(SearchQuery searchQuery) {
+        if (searchQuery == null || !searchQuery.valid()) {
+            return new ArrayList<>();
+        }
+        return productDescriptionManager.searchProductDescriptionsBySubstring(searchQuery.getQuery())
+                .stream().map(r -> new ProductDetailDTO(r)).toList();
+    }
+
+    /**
+     * Returns completions of the text typed into the search bar. Books, authors
+     * and categories are suggested, the most sold first.
+     * 
+     * @param q     Typed text.
+     * @param limit Maximal number of suggestions.
+     * @return List of suggestions.
+     */
+    @GET
+    @Path("/suggest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<SuggestionDTO> suggest(@QueryParam("q") String q, @QueryParam("limit") @DefaultValue("8") int limit) {
+        if (q == null || limit < 1) {
+            return new ArrayList<>();
+        }
+        return suggestionIndex.suggest(q, Math.min(limit, SuggestionIndex.MAX_SUGGESTIONS));
     }
 
     /**
      * Returns filtered results from filter query.
      * 
      * @param filterQuery Filter query.
-     * @return List of ProductDescriptions with given filter query.
+     * @param facets      If to return the facet counts of the results too.
+     * @return List of ProductDescriptions with given filter query, with facets {items, facets}.
      * @apiNote uses POST instead of GET because GET can not have body
      */
     @POST
     @Path("/filter")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public List<ProductDetailDTO> filterProductDescriptions(FilterQuery filterQuery) {
+    @QueryBudget(6)
+    public Response filterProductDescriptions(FilterQuery filterQuery,
+            @QueryParam("facets") @DefaultValue("false") boolean facets) {
         List<ProductDescription> results = productDescriptionManager.filterProductDescriptions(filterQuery)
                 // filtering so it does not have to be done on frontend
                 .stream().distinct().toList();
-        return results.stream().map(r -> new ProductDetailDTO(r)).toList();
+        List<ProductDetailDTO> items = results.stream().map(r -> new ProductDetailDTO(r)).toList();
+        if (!facets) {
+            return Response.ok().entity(items).build();
+        }
+        return Response.ok().entity(new FacetedProductsDTO(items, facets(filterQuery, null))).build();
+    }
+
+    /**
+     * Counts the facets and adds names of the authors, categories and languages
+     * (from the cached lists, so there are no queries).
+     */
+    private FacetsDTO facets(FilterQuery filterQuery, List<Long> ids) {
+        FacetsDTO facets = catalogColumns.facets(filterQuery, ids);
+        Map<Long, String> authors = new HashMap<>();
+        for (BookAuthor a : bookAuthorManager.findAll()) {
+            authors.put(a.getId(), a.getFirstName() + " " + a.getLastName());
+        }
+        Map<Long, String> categories = new HashMap<>();
+        for (Category c : categoryManager.findAll()) {
+            categories.put(c.getId(), c.getName());
+        }
+        Map<Long, String> languages = new HashMap<>();
+        for (Language l : languageManager.findAll()) {
+            languages.put(l.getId(), l.getLanguage());
+        }
+        facets.getAuthors().forEach(v -> v.setName(authors.get(v.getId())));
+        facets.getCategories().forEach(v -> v.setName(categories.get(v.getId())));
+        facets.getLanguages().forEach(v -> v.setName(languages.get(v.getId())));
+        return facets;
+    }
+
+    /**
+     * Returns one page of search bar results, see searchProductDescriptions.
+     * 
+     * @param searchQuery Search query.
+     * @param sort        Column to sort by (id, name or price).
+     * @param order       Sort order (asc or desc).
+     * @param cursor      Cursor from the previous page, omitted for the first page.
+     * @param limit       Number of products on the page, at most MAX_PAGE_SIZE.
+     * @param facets      If to return the facet counts of all results with the first page.
+     * @return Page of ProductDescriptions with the cursor of the next page.
+     */
+    @POST
+    @Path("/search/page")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @QueryBudget(6)
+    public Response searchProductDescriptionsPage(SearchQuery searchQuery,
+            @QueryParam("sort") @DefaultValue("id") String sort,
+            @QueryParam("order") @DefaultValue("asc") String order, @QueryParam("cursor") String cursor,
+            @QueryParam("limit") @DefaultValue("20") int limit,
+            @QueryParam("facets") @DefaultValue("false") boolean facets) {
+        if (searchQuery == null || !searchQuery.valid()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid request!").build();
+        }
+        return page(null, searchQuery.getQuery(), sort, order, cursor, limit, facets);
+    }
+
+    /**
+     * Returns one page of filtered results, see filterProductDescriptions.
+     * 
+     * @param filterQuery Filter query.
+     * @param sort        Column to sort by (id, name or price).
+     * @param order       Sort order (asc or desc).
+     * @param cursor      Cursor from the previous page, omitted for the first page.
+     * @param limit       Number of products on the page, at most MAX_PAGE_SIZE.
+     * @param facets      If to return the facet counts of all results with the first page.
+     * @return Page of ProductDescriptions with the cursor of the next page.
+     */
+    @POST
+    @Path("/filter/page")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @QueryBudget(6)
+    public Response filterProductDescriptionsPage(FilterQuery filterQuery,
+            @QueryParam("sort") @DefaultValue("id") String sort,
+            @QueryParam("order") @DefaultValue("asc") String order, @QueryParam("cursor") String cursor,
+            @QueryParam("limit") @DefaultValue("20") int limit,
+            @QueryParam("facets") @DefaultValue("false") boolean facets) {
+        if (filterQuery == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid request!").build();
+        }
+        return page(filterQuery, null, sort, order, cursor, limit, facets);
+    }
+
+    /**
+     * Validates the paging parameters and returns the requested page.
+     * Facets are counted only for the first page, the next pages have the same results.
+     */
+    private Response page(FilterQuery filterQuery, String query, String sort, String order, String cursor,
+            int limit, boolean withFacets) {
+        ProductSort productSort = ProductSort.fromString(sort);
+        if (productSort == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Unknown sort " + sort).build();
+        }
+        if (!order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Order has to be asc or desc").build();
+        }
+        boolean descending = order.equalsIgnoreCase("desc");
+        if (limit < 1) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: Limit has to be positive").build();
+        }
+        limit = Math.min(limit, MAX_PAGE_SIZE);
+
+        ProductPageCursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                after = ProductPageCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Error: Invalid cursor").build();
+            }
+            // Cursor is valid only for the listing it was created for
+            if (after.getSort() != productSort || after.isDescending() != descending) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Error: Cursor does not match the sort")
+                        .build();
+            }
+        }
+
+        // One more product is fetched to know if there is a next page
+        List<ProductDescription> products = productDescriptionManager.findPage(filterQuery, query, productSort,
+                descending, after, limit + 1);
+        String nextCursor = null;
+        if (products.size() > limit) {
+            products = products.subList(0, limit);
+            nextCursor = ProductPageCursor.after(productSort, descending, products.get(limit - 1)).encode();
+        }
+        List<ProductDetailDTO> items = products.stream().map(p -> new ProductDetailDTO(p)).toList();
+        FacetsDTO facets = null;
+        if (withFacets && after == null) {
+            facets = query == null ? facets(filterQuery, null)
+                    : facets(null, productDescriptionManager.searchIds(query));
+        }
+        return Response.ok().entity(new ProductPageDTO(items, nextCursor, facets)).build();
     }
 
     /**
@@ -230,8 +514,7 @@ public class ProductDescriptionResource {
         }
         
         ProductDescription toUpdate = productDescriptionManager.find(id);
-        String userEmail = securityContext.getUserPrincipal().getName();
-        RegisteredUser user = registeredUserManager.findByEmail(userEmail);
+        RegisteredUser user = currentUser.getUser();
         if (toUpdate == null) {
             // ProductDescription with given id does not exist
             return Response.status(Response.Status.BAD_REQUEST).entity("Error: Product Description doesnt exist")
@@ -357,6 +640,77 @@ public class ProductDescriptionResource {
         return Response.ok().build();
     }
 
+    /**
+     * Applies partial updates of many ProductDescriptions in one transaction,
+     * e.g. the nightly repricing. Values missing in an update are left as they are.
+     * 
+     * @param updates List of updates, at most MAX_BULK_ITEMS.
+     * @return Numbers of updated and unchanged products and ids of missing products.
+     */
+    @PATCH
+    @Path("/bulk")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({ "admin" })
+    public Response bulkUpdateProductDescriptions(List<BulkProductUpdateDTO> updates) {
+        if (updates == null || updates.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Error: No updates").build();
+        }
+        if (updates.size() > MAX_BULK_ITEMS) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Error: At most " + MAX_BULK_ITEMS + " updates at once").build();
+        }
+        for (BulkProductUpdateDTO u : updates) {
+            if ((u.getName() != null && u.getName().isEmpty()) || (u.getPrice() != null && u.getPrice() < 0)
+                    || (u.getPages() != null && u.getPages() < 0)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("Error: Invalid update of Product Description " + u.getId()).build();
+            }
+        }
+        BulkUpdateResultDTO result = productDescriptionManager.bulkUpdate(updates, currentUser.getUser());
+        return Response.ok().entity(result).build();
+    }
+
+    /**
+     * Imports the catalog streamed in the request body (CSV with a header row or NDJSON).
+     * Products with an existing ISBN are updated, missing authors, categories and languages are created.
+     * 
+     * @param in          Catalog.
+     * @param contentType text/csv or application/x-ndjson.
+     * @return Result of the import with the errors of the rows.
+     */
+    @POST
+    @Path("/import")
+    @Consumes({ "text/csv", "application/x-ndjson", "application/jsonl" })
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({ "admin" })
+    public Response importCatalog(InputStream in, @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType) {
+        ImportFormat format = ImportFormat.fromMediaType(contentType);
+        if (format == null) {
+            return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+        ImportReportDTO report = catalogImporter.importCatalog(in, format);
+        if (report == null) {
+            return Response.status(Response.Status.CONFLICT).entity("Error: Another import is running").build();
+        }
+        return Response.ok().entity(report).build();
+    }
+
+    /**
+     * Returns progress of the running catalog import or the result of the last one.
+     */
+    @GET
+    @Path("/import")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({ "admin" })
+    public Response getImportReport() {
+        ImportReportDTO report = catalogImporter.getReport();
+        if (report == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Error: No import yet").build();
+        }
+        return Response.ok().entity(report).build();
+    }
+
     /**
      * Add discount to product description.
      * 
@@ -429,8 +783,7 @@ public class ProductDescriptionResource {
 
         // Only log if it changed anything
         if (discount != old_discount) {
-            String userEmail = securityContext.getUserPrincipal().getName();
-            RegisteredUser user = registeredUserManager.findByEmail(userEmail);
+            RegisteredUser user = currentUser.getUser();
             String message = "Discount updated from " + String.valueOf(old_discount) +  "% to " + discount + "%.";
             ProductDescriptionEvidence discountEvidence = new ProductDescriptionEvidence(user, message);
             productDescription.addProductDescriptionEvidence(discountEvidence);
@@ -479,8 +832,7 @@ public class ProductDescriptionResource {
 
         // Only log if anything changed
         if (previousQuantity != amount) {
-            String userEmail = securityContext.getUserPrincipal().getName();
-            RegisteredUser user = registeredUserManager.findByEmail(userEmail);
+            RegisteredUser user = currentUser.getUser();
             String message = "Quantity updated from " + String.valueOf(previousQuantity) + " to " + amount + ".";
             ProductDescriptionEvidence quantityEvidence = new ProductDescriptionEvidence(user, message);
             productDescription.addProductDescriptionEvidence(quantityEvidence);
@@ -489,4 +841,49 @@ public class ProductDescriptionResource {
         return Response.ok().entity("Succesfully updated quantity of given Product Description ID").build();
     }
 
+    /**
+     * Switches the product to flash-sale mode, its stock is then held in memory.
+     * 
+     * @param id ID of the ProductDescription.
+     * @return Response status.
+     */
+    @PUT
+    @Path("/{id}/hot")
+    @RolesAllowed({ "admin" })
+    public Response enableHotProduct(@PathParam("id") long id) {
+        if (!hotInventory.enable(id)) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Error: Product Description doesnt exist")
+                    .build();
+        }
+        return Response.ok().entity("Product Description is in flash-sale mode").build();
+    }
+
+    /**
+     * Switches the product back to normal mode.
+     * 
+     * @param id ID of the ProductDescription.
+     * @return Response status.
+     */
+    @DELETE
+    @Path("/{id}/hot")
+    @RolesAllowed({ "admin" })
+    public Response disableHotProduct(@PathParam("id") long id) {
+        if (!hotInventory.isHot(id)) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Error: Product Description is not hot").build();
+        }
+        hotInventory.disable(id);
+        return Response.ok().entity("Product Description is back in normal mode").build();
+    }
+
+    /**
+     * Returns stock of the hot products held in memory compared with the database.
+     */
+    @GET
+    @Path("/hot")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({ "admin" })
+    public List<HotItemDTO> getHotProducts() {
+        return hotInventory.reconcile();
+    }
+
 }
@@ -8,7 +8,7 @@ package pis.api;
 
 import pis.data.RegisteredUser;
 
-import pis.service.RegisteredUserManager;
+import pis.service.CurrentUser;
 
 import java.security.Key;
 import java.util.Date;
@@ -16,9 +16,7 @@ import java.util.Date;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
-import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.core.SecurityContext;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -28,12 +26,8 @@ import io.jsonwebtoken.security.Keys;
  */
 @Path("/renewToken")
 public class RenewToken {
-
     @Inject
-	private RegisteredUserManager userManager;
-
-    @Context
-    private SecurityContext securityContext;
+    private CurrentUser currentUser;
 
     // Hardcoded private key, such security
     private static final Key key = Keys.hmacShaKeyFor("12345789101112131415161718192021222324252627282930".getBytes());
@@ -47,7 +41,7 @@ public class RenewToken {
     @POST
     public Response renewToken() {
 
-        RegisteredUser u = userManager.findByEmail(securityContext.getUserPrincipal().getName());
+        RegisteredUser u = currentUser.getUser();
 
         if (u == null) {
             return Response.status(Response.Status.BAD_REQUEST).entity("This shouldn't happen! Something went wrong").build();
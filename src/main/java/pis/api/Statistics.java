@@ -11,10 +11,10 @@ import pis.api.dto.StatisticsEarningsDTO;
 import pis.api.dto.StatisticsItemDTO;
 import pis.api.dto.StatisticsItemsInTime;
 import pis.api.dto.StatisticsOrdersInTime;
-import pis.data.Order;
-import pis.service.OrderManager;
+import pis.service.StatisticsRollupManager;
 
 import java.sql.Date;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -37,9 +37,11 @@ import jakarta.ws.rs.core.Response;
  */
 @Path("/statistics")
 public class Statistics {
+    /** Maximal number of items returned by mostSoldItems. */
+    private static final int MAX_TOP_ITEMS = 1000;
 
     @Inject
-    private OrderManager orderManager;
+    private StatisticsRollupManager rollupManager;
 
     /**
      * Local class to parse the given time (which is a string) to the LocalDateTime format
@@ -124,7 +126,7 @@ public class Statistics {
         }
 
         /* Find numbers of orders from in between the given dates */
-        List<Object[]> ords = this.orderManager.salesTimeRange(times.getFromDate(), times.getToDate());
+        List<Object[]> ords = this.rollupManager.salesTimeRange(times.getFromDate().toLocalDate(), times.getToDate().toLocalDate());
 
         // Empty list initialization
         List<StatisticsOrdersInTime> resp = new ArrayList<>();
@@ -139,7 +141,7 @@ public class Statistics {
 
         // Populate the list with values returned from the database
         for (Object[] ord : ords) {
-            Date time  = (Date) ord[0];
+            Date time  = Date.valueOf((LocalDate) ord[0]);
             Long occurences = (long) ord[1];
             total += occurences;
             StatisticsOrdersInTime tmp = new StatisticsOrdersInTime(time, occurences);
@@ -151,12 +153,6 @@ public class Statistics {
         dto.setTotal(total);
 
 
-        /* 
-         * Now, if this was a production version, there'd need to be some more preprocessing here.
-         * We can't exactly process thousands of values in user's profile.
-         * However, this will do for our purposes
-         */
-
         return Response.status(Response.Status.OK).entity(dto).build();
     }
 
@@ -188,7 +184,7 @@ public class Statistics {
         }
 
         /* Find numbers of categories from in between the given dates */
-        List<Object[]> ords = this.orderManager.categoriesSalesInRange(times.getFromDate(), times.getToDate());
+        List<Object[]> ords = this.rollupManager.categoriesSalesInRange(times.getFromDate().toLocalDate(), times.getToDate().toLocalDate());
 
         // Empty list initialization
         List<StatisticsItemsInTime> resp = new ArrayList<>();
@@ -218,9 +214,10 @@ public class Statistics {
     }
 
     /**
-     * Endpoint to get the TOP 20 most sold items (with the nubmer of sales) for specific time range
+     * Endpoint to get the TOP N most sold items (with the nubmer of sales) for specific time range
      * @param r Valid request with fromDate and toDate attributes
-     * @return List with item name and corresponding number
+     * @param limit Number of items to return (N), 20 by default
+     * @return List with item name and corresponding number, the most sold first
      */
     @POST
     @Path("/mostSoldItems")
@@ -237,15 +234,15 @@ public class Statistics {
         @APIResponse(responseCode = "401", description = "Unauthorized")
         }
     )
-    public Response mostSoldItems(StatisticsRequest r) {
+    public Response mostSoldItems(StatisticsRequest r, @QueryParam("limit") @DefaultValue("20") int limit) {
         TimeConvertor times = this.getTimesFromRequest(r);
 
-        if (times == null) {
+        if (times == null || limit < 1 || limit > MAX_TOP_ITEMS) {
             return Response.status(Response.Status.BAD_REQUEST).entity("Invalid request!").build();
         }
 
         /* Find numbers of items from in between the given dates */
-        List<Object[]> ords = this.orderManager.itemSalesInRange(times.getFromDate(), times.getToDate());
+        List<Object[]> ords = this.rollupManager.itemSalesInRange(times.getFromDate().toLocalDate(), times.getToDate().toLocalDate(), limit);
 
         // Empty list initialization
         List<StatisticsItemsInTime> resp = new ArrayList<>();
@@ -261,8 +258,8 @@ public class Statistics {
 
         // Populate the list with values returned from the database
         for (Object[] ord : ords) {
-            String cat  = (String) ord[0];
-            Long occurences = (long) ord[1];
+            String cat  = (String) ord[1];
+            Long occurences = ((Number) ord[2]).longValue();
             total += occurences;
             StatisticsItemsInTime tmp = new StatisticsItemsInTime(cat, occurences);
             resp.add(tmp);
@@ -303,7 +300,7 @@ public class Statistics {
         }
 
         /* Find earnings per day from in between the given dates */
-        List<Object[]> ords = this.orderManager.earningsInRange(times.getFromDate(), times.getToDate());
+        List<Object[]> ords = this.rollupManager.earningsInRange(times.getFromDate().toLocalDate(), times.getToDate().toLocalDate());
 
         // Empty list initialization
         List<StatisticsOrdersInTime> resp = new ArrayList<>();
@@ -319,7 +316,7 @@ public class Statistics {
 
         // Populate the list with values returned from the database
         for (Object[] ord : ords) {
-            Date d  = (Date) ord[0];
+            Date d  = Date.valueOf((LocalDate) ord[0]);
             double tmpNum = (double) ord[1]; // idk why i need to first save it
             Long occurences = (long) tmpNum; // but this doesnt work otherwise
             total += occurences;
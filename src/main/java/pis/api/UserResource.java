@@ -9,6 +9,7 @@ package pis.api;
 import pis.api.dto.*;
 import pis.data.RegisteredUser;
 import pis.service.RegisteredUserManager;
+import pis.service.CurrentUser;
 
 import java.util.regex.Pattern;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -29,6 +30,9 @@ import jakarta.ws.rs.core.SecurityContext;
  */
 @Path("/user")
 public class UserResource {
+    @Inject
+    private CurrentUser currentUser;
+
     @Inject
     private RegisteredUserManager userManager;
 
@@ -44,7 +48,7 @@ public class UserResource {
     @RolesAllowed({ "admin", "user", "employee" })
     public Response getProfile() {
 
-        RegisteredUser u = userManager.findByEmail(securityContext.getUserPrincipal().getName());
+        RegisteredUser u = currentUser.getUser();
 
         if (u == null) {
             return Response.status(Response.Status.BAD_REQUEST).entity("You are not logged in! How could this happen!")
@@ -125,7 +129,7 @@ public class UserResource {
     @RolesAllowed({ "admin", "user", "employee" })
     public Response setProfile(ProfileRequest r) {
 
-        RegisteredUser u = userManager.findByEmail(securityContext.getUserPrincipal().getName());
+        RegisteredUser u = currentUser.getUser();
 
         if (u == null) {
             return Response.status(Response.Status.BAD_REQUEST).entity("You are not logged in! How could this happen!")
@@ -191,7 +195,7 @@ public class UserResource {
             return Response.status(Response.Status.BAD_REQUEST).entity("Invalid request!!").build();
         }
 
-        RegisteredUser u = userManager.findByEmail(securityContext.getUserPrincipal().getName());
+        RegisteredUser u = currentUser.getUser();
 
         if (u == null) {
             return Response.status(Response.Status.BAD_REQUEST).entity("You are not logged in! How could this happen!")
@@ -0,0 +1,41 @@
+/**
+ * DTO for the result of a bulk update of products.
+ * @author Tomas Ondrusek <xondru18>
+ */
+package pis.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkUpdateResultDTO {
+    /** Number of products which changed. */
+    private int updated;
+    /** Number of updates whose product already had the sent values. */
+    private int unchanged;
+    /** Ids of products which do not exist, their updates were skipped. */
+    private List<Long> notFound = new ArrayList<>();
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(int updated) {
+        this.updated = updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public void setUnchanged(int unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    public List<Long> getNotFound() {
+        return notFound;
+    }
+
+    public void setNotFound(List<Long> notFound) {
+        this.notFound = notFound;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * PIS Projekt 2024
+ * CacheStatsDTO.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.api.dto;
+
+/**
+ * Usage statistics of one application cache.
+ */
+public class CacheStatsDTO {
+    private String name;
+    /** Number of cached entries. */
+    private int size;
+    /** Maximal number of cached entries. */
+    private int maxSize;
+    private long hits;
+    private long misses;
+    /** Number of entries removed because the cache was full. */
+    private long evictions;
+
+    public CacheStatsDTO(String name, int size, int maxSize, long hits, long misses, long evictions) {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns ratio of requests answered from the cache.
+     */
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
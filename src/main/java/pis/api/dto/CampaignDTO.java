@@ -0,0 +1,78 @@
+/**
+ * DTO for a discount campaign.
+ * @author Tomas Ondrusek <xondru18>
+ */
+package pis.api.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import pis.data.CampaignStatus;
+import pis.data.CampaignTarget;
+import pis.data.DiscountCampaign;
+
+public class CampaignDTO {
+    private long id;
+    private String name;
+    private long discountId;
+    private int discount;
+    private CampaignTarget target;
+    private List<Long> targetIds;
+    private LocalDateTime startsAt;
+    private LocalDateTime endsAt;
+    private CampaignStatus status;
+    private int productCount;
+
+    public CampaignDTO(DiscountCampaign c) {
+        this.id = c.getId();
+        this.name = c.getName();
+        this.discountId = c.getDiscount().getId();
+        this.discount = c.getDiscount().getDiscount();
+        this.target = c.getTarget();
+        this.targetIds = List.copyOf(c.getTargetIds());
+        this.startsAt = c.getStartsAt();
+        this.endsAt = c.getEndsAt();
+        this.status = c.getStatus();
+        this.productCount = c.getProductCount();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDiscountId() {
+        return discountId;
+    }
+
+    public int getDiscount() {
+        return discount;
+    }
+
+    public CampaignTarget getTarget() {
+        return target;
+    }
+
+    public List<Long> getTargetIds() {
+        return targetIds;
+    }
+
+    public LocalDateTime getStartsAt() {
+        return startsAt;
+    }
+
+    public LocalDateTime getEndsAt() {
+        return endsAt;
+    }
+
+    public CampaignStatus getStatus() {
+        return status;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+}
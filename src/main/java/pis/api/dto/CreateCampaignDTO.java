@@ -0,0 +1,66 @@
+/**
+ * DTO for creating a discount campaign.
+ * @author Tomas Ondrusek <xondru18>
+ */
+package pis.api.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class CreateCampaignDTO {
+    private String name;
+    private long discountId;
+    /** CATEGORY, AUTHOR, LANGUAGE or PRODUCTS. */
+    private String target;
+    private List<Long> targetIds;
+    private LocalDateTime startsAt;
+    private LocalDateTime endsAt;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getDiscountId() {
+        return discountId;
+    }
+
+    public void setDiscountId(long discountId) {
+        this.discountId = discountId;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public List<Long> getTargetIds() {
+        return targetIds;
+    }
+
+    public void setTargetIds(List<Long> targetIds) {
+        this.targetIds = targetIds;
+    }
+
+    public LocalDateTime getStartsAt() {
+        return startsAt;
+    }
+
+    public void setStartsAt(LocalDateTime startsAt) {
+        this.startsAt = startsAt;
+    }
+
+    public LocalDateTime getEndsAt() {
+        return endsAt;
+    }
+
+    public void setEndsAt(LocalDateTime endsAt) {
+        this.endsAt = endsAt;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * DTO for the number of results in a range of prices, pages or discounts.
+ * @author Tomas Ondrusek <xondru18>
+ */
+package pis.api.dto;
+
+public class FacetBucketDTO {
+    private double from;
+    /** Exclusive, null for the last bucket. */
+    private Double to;
+    private long count;
+
+    public FacetBucketDTO(double from, Double to, long count) {
+        this.from = from;
+        this.to = to;
+        this.count = count;
+    }
+
+    public double getFrom() {
+        return from;
+    }
+
+    public Double getTo() {
+        return to;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
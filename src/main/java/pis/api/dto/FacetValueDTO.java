@@ -0,0 +1,32 @@
+/**
+ * DTO for the number of results with one author, category or language.
+ * @author Tomas Ondrusek <xondru18>
+ */
+package pis.api.dto;
+
+public class FacetValueDTO {
+    private long id;
+    private String name;
+    private long count;
+
+    public FacetValueDTO(long id, long count) {
+        this.id = id;
+        this.count = count;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
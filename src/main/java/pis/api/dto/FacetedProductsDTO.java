@@ -0,0 +1,25 @@
+/**
+ * DTO for filter or search results with their facet counts.
+ * @author Tomas Ondrusek <xondru18>
+ */
+package pis.api.dto;
+
+import java.util.List;
+
+public class FacetedProductsDTO {
+    private List<ProductDetailDTO> items;
+    private FacetsDTO facets;
+
+    public FacetedProductsDTO(List<ProductDetailDTO> items, FacetsDTO facets) {
+        this.items = items;
+        this.facets = facets;
+    }
+
+    public List<ProductDetailDTO> getItems() {
+        return items;
+    }
+
+    public FacetsDTO getFacets() {
+        return facets;
+    }
+}
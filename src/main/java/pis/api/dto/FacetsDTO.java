@@ -0,0 +1,62 @@
+/**
+ * DTO for facet counts of filter or search results.
+ * Every facet counts the results as if its own part of the filter was not set,
+ * so it shows how many results every other choice would give.
+ * @author Tomas Ondrusek <xondru18>
+ */
+package pis.api.dto;
+
+import java.util.List;
+
+public class FacetsDTO {
+    /** Number of results. */
+    private long total;
+    /** Values with results (and the selected ones), the most results first. */
+    private List<FacetValueDTO> authors;
+    private List<FacetValueDTO> categories;
+    private List<FacetValueDTO> languages;
+    private List<FacetBucketDTO> prices;
+    private List<FacetBucketDTO> pages;
+    /** The first bucket (0 - 1) are products without discount. */
+    private List<FacetBucketDTO> discounts;
+
+    public FacetsDTO(long total, List<FacetValueDTO> authors, List<FacetValueDTO> categories,
+            List<FacetValueDTO> languages, List<FacetBucketDTO> prices, List<FacetBucketDTO> pages,
+            List<FacetBucketDTO> discounts) {
+        this.total = total;
+        this.authors = authors;
+        this.categories = categories;
+        this.languages = languages;
+        this.prices = prices;
+        this.pages = pages;
+        this.discounts = discounts;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<FacetValueDTO> getAuthors() {
+        return authors;
+    }
+
+    public List<FacetValueDTO> getCategories() {
+        return categories;
+    }
+
+    public List<FacetValueDTO> getLanguages() {
+        return languages;
+    }
+
+    public List<FacetBucketDTO> getPrices() {
+        return prices;
+    }
+
+    public List<FacetBucketDTO> getPages() {
+        return pages;
+    }
+
+    public List<FacetBucketDTO> getDiscounts() {
+        return discounts;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * PIS Projekt 2024
+ * HotItemDTO.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.api.dto;
+
+/**
+ * Stock of one hot product held in memory, compared with the database.
+ */
+public class HotItemDTO {
+    private long productId;
+    /** False while the product is being switched back to normal mode. */
+    private boolean active;
+    /** Pieces which can be bought. */
+    private long available;
+    /** Pieces taken by running checkouts. */
+    private long reserved;
+    /** Pieces sold but not written to the database yet. */
+    private long pending;
+    /** Pieces sold since the product became hot. */
+    private long sold;
+    private long databaseQuantity;
+
+    public HotItemDTO(long productId, boolean active, long available, long reserved, long pending, long sold,
+            long databaseQuantity) {
+        this.productId = productId;
+        this.active = active;
+        this.available = available;
+        this.reserved = reserved;
+        this.pending = pending;
+        this.sold = sold;
+        this.databaseQuantity = databaseQuantity;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+
+    public long getReserved() {
+        return reserved;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    public long getSold() {
+        return sold;
+    }
+
+    public long getDatabaseQuantity() {
+        return databaseQuantity;
+    }
+
+    /**
+     * Returns how many pieces more the database has than the memory, zero if they match.
+     */
+    public long getDifference() {
+        if (!active) {
+            // Remaining stock is back in the database only
+            return 0;
+        }
+        return databaseQuantity - pending - available - reserved;
+    }
+
+    public boolean isConsistent() {
+        return getDifference() == 0;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * DTO with the result of the id allocation benchmark.
+ * @author Lukas Petr <xpetrl06>
+ */
+package pis.api.dto;
+
+public class IdBenchmarkDTO {
+    /** Number of ids allocated in each run. */
+    private int count;
+    private int allocationSize;
+    /** Time of the run taking one id per transaction. */
+    private double unpooledMillis;
+    /** Time of the run taking blocks of allocationSize ids. */
+    private double pooledMillis;
+
+    public IdBenchmarkDTO(int count, int allocationSize, double unpooledMillis, double pooledMillis) {
+        this.count = count;
+        this.allocationSize = allocationSize;
+        this.unpooledMillis = unpooledMillis;
+        this.pooledMillis = pooledMillis;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getAllocationSize() {
+        return allocationSize;
+    }
+
+    public double getUnpooledMillis() {
+        return unpooledMillis;
+    }
+
+    public double getPooledMillis() {
+        return pooledMillis;
+    }
+
+    public double getUnpooledPerSecond() {
+        return unpooledMillis == 0 ? 0 : count * 1000.0 / unpooledMillis;
+    }
+
+    public double getPooledPerSecond() {
+        return pooledMillis == 0 ? 0 : count * 1000.0 / pooledMillis;
+    }
+
+    /**
+     * Returns how many times the pooled allocation is faster.
+     */
+    public double getSpeedup() {
+        return pooledMillis == 0 ? 0 : unpooledMillis / pooledMillis;
+    }
+}
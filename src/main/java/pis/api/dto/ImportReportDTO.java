@@ -0,0 +1,77 @@
+/**
+ * DTO for progress and result of the catalog import.
+ * @author Tomas Ondrusek <xondru18>
+ */
+package pis.api.dto;
+
+import java.util.List;
+
+public class ImportReportDTO {
+    private boolean running;
+    private String format;
+    /** Number of read rows. */
+    private long rows;
+    private long created;
+    private long updated;
+    /** Rows left out because a later row of the same chunk had the same ISBN. */
+    private long duplicates;
+    private long failed;
+    /** First errors, "line: reason". */
+    private List<String> errors;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+
+    public ImportReportDTO(boolean running, String format, long rows, long created, long updated, long duplicates,
+            long failed, List<String> errors, long elapsedMillis) {
+        this.running = running;
+        this.format = format;
+        this.rows = rows;
+        this.created = created;
+        this.updated = updated;
+        this.duplicates = duplicates;
+        this.failed = failed;
+        this.errors = errors;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = elapsedMillis == 0 ? 0 : rows * 1000.0 / elapsedMillis;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+}
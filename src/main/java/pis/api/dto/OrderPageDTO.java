@@ -0,0 +1,26 @@
+/**
+ * DTO for one page of the order listing.
+ * @author Lukas Petr <xpetrl06>
+ */
+package pis.api.dto;
+
+import java.util.List;
+
+public class OrderPageDTO {
+    private List<OrderPreviewDTO> items;
+    /** Cursor of the next page, null if this is the last page. */
+    private String nextCursor;
+
+    public OrderPageDTO(List<OrderPreviewDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<OrderPreviewDTO> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
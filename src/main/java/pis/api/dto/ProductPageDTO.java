@@ -0,0 +1,42 @@
+/*
+ * PIS Projekt 2024
+ * ProductPageDTO.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.api.dto;
+
+import java.util.List;
+
+/**
+ * One page of the catalog listing.
+ */
+public class ProductPageDTO {
+    private List<ProductDetailDTO> items;
+    /** Cursor of the next page, null if this is the last page. */
+    private String nextCursor;
+    /** Facet counts of all results, only on the first page when requested. */
+    private FacetsDTO facets;
+
+    public ProductPageDTO(List<ProductDetailDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public ProductPageDTO(List<ProductDetailDTO> items, String nextCursor, FacetsDTO facets) {
+        this(items, nextCursor);
+        this.facets = facets;
+    }
+
+    public List<ProductDetailDTO> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public FacetsDTO getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * DTO for a quoted cart: current prices and stock of its items.
+ * @author Lukas Petr <xpetrl06>
+ */
+package pis.api.dto;
+
+import java.util.List;
+
+public class QuoteDTO {
+    private List<QuoteItemDTO> items;
+    /** Total price of the existing products. */
+    private double totalPrice;
+    /** True if every line can be ordered in the requested amount. */
+    private boolean orderable;
+
+    public QuoteDTO(List<QuoteItemDTO> items) {
+        this.items = items;
+        this.totalPrice = items.stream().mapToDouble(QuoteItemDTO::getTotalPrice).sum();
+        this.orderable = !items.isEmpty()
+                && items.stream().allMatch(i -> QuoteItemDTO.AVAILABLE.equals(i.getStatus()));
+    }
+
+    public List<QuoteItemDTO> getItems() {
+        return items;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public boolean isOrderable() {
+        return orderable;
+    }
+}
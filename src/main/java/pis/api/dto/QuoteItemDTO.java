@@ -0,0 +1,111 @@
+/**
+ * DTO for one line of a quoted cart.
+ * @author Lukas Petr <xpetrl06>
+ */
+package pis.api.dto;
+
+import pis.service.PriceSnapshot;
+
+public class QuoteItemDTO {
+    /** The product can be ordered in the requested amount. */
+    public static final String AVAILABLE = "AVAILABLE";
+    /** The product has less pieces in stock than requested. */
+    public static final String NOT_ENOUGH = "NOT_ENOUGH";
+    /** The product does not exist (anymore). */
+    public static final String NOT_FOUND = "NOT_FOUND";
+
+    private long id;
+    private int amount;
+    private String status;
+    private String name;
+    private String image;
+    private Long authorId;
+    private String authorFirstName;
+    private String authorLastName;
+    private double price;
+    private int discount;
+    private double currentPrice;
+    private int availableQuantity;
+    /** Current price times the amount. */
+    private double totalPrice;
+
+    /**
+     * Line of a product which does not exist.
+     */
+    public QuoteItemDTO(long id, int amount) {
+        this.id = id;
+        this.amount = amount;
+        this.status = NOT_FOUND;
+    }
+
+    /**
+     * @param availableQuantity Pieces in stock, may differ from the snapshot for hot products.
+     */
+    public QuoteItemDTO(PriceSnapshot p, int amount, int availableQuantity) {
+        this.id = p.getId();
+        this.amount = amount;
+        this.status = availableQuantity >= amount ? AVAILABLE : NOT_ENOUGH;
+        this.name = p.getName();
+        this.image = p.getImage();
+        this.authorId = p.getAuthorId();
+        this.authorFirstName = p.getAuthorFirstName();
+        this.authorLastName = p.getAuthorLastName();
+        this.price = p.getPrice();
+        this.discount = p.getDiscount();
+        this.currentPrice = p.getCurrentPrice();
+        this.availableQuantity = availableQuantity;
+        this.totalPrice = currentPrice * amount;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public String getAuthorFirstName() {
+        return authorFirstName;
+    }
+
+    public String getAuthorLastName() {
+        return authorLastName;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getDiscount() {
+        return discount;
+    }
+
+    public double getCurrentPrice() {
+        return currentPrice;
+    }
+
+    public int getAvailableQuantity() {
+        return availableQuantity;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * PIS Projekt 2024
+ * SuggestionDTO.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.api.dto;
+
+/**
+ * One completion offered while typing into the search bar.
+ */
+public class SuggestionDTO {
+    /** Suggested text, e.g. name of the book. */
+    private String text;
+    /** What is suggested: book, author or category. */
+    private String type;
+    /** Id of the suggested book, author or category. */
+    private long id;
+
+    public SuggestionDTO(String text, String type, long id) {
+        this.text = text;
+        this.type = type;
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -6,6 +6,8 @@
 
 package pis.data;
 
+import java.util.Locale;
+
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 
@@ -13,21 +15,35 @@ import jakarta.validation.constraints.NotNull;
  * Data model for BookAuthor.
  */
 @Entity
-@Table(name = "BookAuthor")
+@Table(name = "BookAuthor", indexes = @Index(name = "IDX_AUTHOR_NAME", columnList = "lastNameLower, firstNameLower"))
 @NamedQuery(name = "BookAuthor.findAll", query = "SELECT a FROM BookAuthor a")
+@NamedQuery(name = "BookAuthor.findByLastName", query = "SELECT a FROM BookAuthor a WHERE a.lastNameLower = :lastName")
+@NamedQuery(name = "BookAuthor.findByName", query = "SELECT a FROM BookAuthor a WHERE a.lastNameLower = :lastName AND a.firstNameLower = :firstName")
 public class BookAuthor {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "BookAuthor", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "BookAuthor", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "BookAuthor")
     private long id;
 
     @NotNull
     private String firstName;
     @NotNull
     private String lastName;
+    /** Lower-cased names, so case-insensitive lookups can use an index. */
+    private String firstNameLower;
+    private String lastNameLower;
 
     public BookAuthor() {
     }
 
+    @PrePersist
+    @PreUpdate
+    private void normalize() {
+        firstNameLower = firstName == null ? null : firstName.toLowerCase(Locale.ROOT);
+        lastNameLower = lastName == null ? null : lastName.toLowerCase(Locale.ROOT);
+    }
+
     public BookAuthor(String firstName, String lastName) {
         this.firstName = firstName;
         this.lastName = lastName;
@@ -0,0 +1,88 @@
+/**
+ * PIS Projekt 2024
+ * CampaignProduct.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.data;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.*;
+
+/**
+ * Product a discount campaign was applied to, with the discount the product
+ * had before, so it can be restored when the campaign ends.
+ * Rows are written by one INSERT ... SELECT when the campaign starts.
+ */
+@Entity
+@Table(name = "CampaignProduct")
+@IdClass(CampaignProduct.Key.class)
+public class CampaignProduct {
+    @Id
+    private long campaignId;
+
+    @Id
+    private long productId;
+
+    /** Id of the previous discount of the product, null if it had none. */
+    private Long previousDiscountId;
+
+    /**
+     * Number of the product in the campaign (from 1), gives the id of its
+     * evidence record within the block of ids taken for the campaign.
+     */
+    private Integer evidenceIndex;
+
+    public CampaignProduct() {
+    }
+
+    /**
+     * Primary key of the CampaignProduct.
+     */
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long campaignId;
+        private long productId;
+
+        public Key() {
+        }
+
+        public Key(long campaignId, long productId) {
+            this.campaignId = campaignId;
+            this.productId = productId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return campaignId == k.campaignId && productId == k.productId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(campaignId, productId);
+        }
+    }
+
+    public long getCampaignId() {
+        return campaignId;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public Long getPreviousDiscountId() {
+        return previousDiscountId;
+    }
+
+    public Integer getEvidenceIndex() {
+        return evidenceIndex;
+    }
+}
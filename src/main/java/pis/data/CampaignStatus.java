@@ -0,0 +1,14 @@
+/**
+ * PIS Projekt 2024
+ * CampaignStatus.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.data;
+
+/**
+ * State of a discount campaign.
+ */
+public enum CampaignStatus {
+    SCHEDULED, ACTIVE, FINISHED, CANCELLED
+}
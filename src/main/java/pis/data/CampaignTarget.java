@@ -0,0 +1,14 @@
+/**
+ * PIS Projekt 2024
+ * CampaignTarget.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.data;
+
+/**
+ * What the target ids of a discount campaign refer to.
+ */
+public enum CampaignTarget {
+    CATEGORY, AUTHOR, LANGUAGE, PRODUCTS
+}
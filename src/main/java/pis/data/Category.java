@@ -17,7 +17,9 @@ import jakarta.validation.constraints.NotNull;
 @NamedQuery(name="Category.findAll", query="SELECT c FROM Category c")
 public class Category {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "Category", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "Category", allocationSize = 20)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "Category")
     private long id;
 
     @NotNull
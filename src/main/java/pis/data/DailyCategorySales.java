@@ -0,0 +1,87 @@
+/**
+ * PIS Projekt 2024
+ * DailyCategorySales.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.data;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+import jakarta.persistence.*;
+
+/**
+ * Pre-aggregated number of sold pieces of one category in one day, used by statistics.
+ */
+@Entity
+@Table(name = "DailyCategorySales")
+@IdClass(DailyCategorySales.Key.class)
+@NamedQuery(name = "DailyCategorySales.findAll", query = "SELECT s FROM DailyCategorySales s")
+public class DailyCategorySales {
+    @Id
+    private LocalDate salesDate;
+
+    @Id
+    private String categoryName;
+
+    private long quantity;
+
+    public DailyCategorySales() {
+    }
+
+    public DailyCategorySales(LocalDate salesDate, String categoryName, long quantity) {
+        this.salesDate = salesDate;
+        this.categoryName = categoryName;
+        this.quantity = quantity;
+    }
+
+    /**
+     * Primary key of the DailyCategorySales.
+     */
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private LocalDate salesDate;
+        private String categoryName;
+
+        public Key() {
+        }
+
+        public Key(LocalDate salesDate, String categoryName) {
+            this.salesDate = salesDate;
+            this.categoryName = categoryName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return Objects.equals(salesDate, k.salesDate) && Objects.equals(categoryName, k.categoryName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(salesDate, categoryName);
+        }
+    }
+
+    public LocalDate getSalesDate() {
+        return salesDate;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * PIS Projekt 2024
+ * DailyProductSales.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.data;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+import jakarta.persistence.*;
+
+/**
+ * Pre-aggregated number of sold pieces of one product in one day, used by statistics.
+ */
+@Entity
+@Table(name = "DailyProductSales")
+@IdClass(DailyProductSales.Key.class)
+@NamedQuery(name = "DailyProductSales.findAll", query = "SELECT s FROM DailyProductSales s")
+public class DailyProductSales {
+    @Id
+    private LocalDate salesDate;
+
+    @Id
+    private long productId;
+
+    /** Name of the product when it was last sold. */
+    private String productName;
+
+    private long quantity;
+
+    public DailyProductSales() {
+    }
+
+    public DailyProductSales(LocalDate salesDate, long productId, String productName, long quantity) {
+        this.salesDate = salesDate;
+        this.productId = productId;
+        this.productName = productName;
+        this.quantity = quantity;
+    }
+
+    /**
+     * Primary key of the DailyProductSales.
+     */
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private LocalDate salesDate;
+        private long productId;
+
+        public Key() {
+        }
+
+        public Key(LocalDate salesDate, long productId) {
+            this.salesDate = salesDate;
+            this.productId = productId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return Objects.equals(salesDate, k.salesDate) && productId == k.productId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(salesDate, productId);
+        }
+    }
+
+    public LocalDate getSalesDate() {
+        return salesDate;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * PIS Projekt 2024
+ * DailySales.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.data;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.*;
+
+/**
+ * Pre-aggregated number of orders and earnings of one day, used by statistics.
+ */
+@Entity
+@Table(name = "DailySales")
+@NamedQuery(name = "DailySales.findAll", query = "SELECT s FROM DailySales s")
+public class DailySales {
+    @Id
+    private LocalDate salesDate;
+
+    private long orderCount;
+
+    private double income;
+
+    public DailySales() {
+    }
+
+    public DailySales(LocalDate salesDate, long orderCount, double income) {
+        this.salesDate = salesDate;
+        this.orderCount = orderCount;
+        this.income = income;
+    }
+
+    public LocalDate getSalesDate() {
+        return salesDate;
+    }
+
+    public void setSalesDate(LocalDate salesDate) {
+        this.salesDate = salesDate;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public double getIncome() {
+        return income;
+    }
+
+    public void setIncome(double income) {
+        this.income = income;
+    }
+}
@@ -17,7 +17,9 @@ import jakarta.validation.constraints.NotNull;
 @NamedQuery(name = "Discount.findAll", query = "SELECT d FROM Discount d")
 public class Discount {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "Discount", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "Discount", allocationSize = 20)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "Discount")
     private long id;
 
     @NotNull
@@ -0,0 +1,128 @@
+/**
+ * PIS Projekt 2024
+ * DiscountCampaign.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Discount applied to a set of products (by category, author, language or
+ * product ids) for a time window.
+ */
+@Entity
+@Table(name = "DiscountCampaign", indexes = @Index(name = "IDX_CAMPAIGN_STATUS", columnList = "status, startsAt"))
+@NamedQuery(name = "DiscountCampaign.findAll", query = "SELECT c FROM DiscountCampaign c ORDER BY c.startsAt DESC, c.id DESC")
+@NamedQuery(name = "DiscountCampaign.findPending", query = "SELECT c FROM DiscountCampaign c WHERE c.status IN (pis.data.CampaignStatus.SCHEDULED, pis.data.CampaignStatus.ACTIVE)")
+public class DiscountCampaign {
+    @Id
+    @TableGenerator(name = "DiscountCampaign", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "DiscountCampaign", allocationSize = 20)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "DiscountCampaign")
+    private long id;
+
+    @NotNull
+    private String name;
+
+    @NotNull
+    @ManyToOne
+    @JoinColumn(name = "discount_id")
+    private Discount discount;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private CampaignTarget target;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "DiscountCampaignTarget", joinColumns = @JoinColumn(name = "campaign_id"))
+    @Column(name = "target_id")
+    private List<Long> targetIds = new ArrayList<>();
+
+    @NotNull
+    private LocalDateTime startsAt;
+
+    @NotNull
+    private LocalDateTime endsAt;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private CampaignStatus status;
+
+    /** Number of products the campaign was applied to (set when it starts). */
+    private int productCount;
+
+    /** Employee who created the campaign, shown in the evidence of the products. */
+    @ManyToOne
+    @JoinColumn(name = "createdBy_id")
+    private RegisteredUser createdBy;
+
+    public DiscountCampaign() {
+    }
+
+    public DiscountCampaign(String name, Discount discount, CampaignTarget target, List<Long> targetIds,
+            LocalDateTime startsAt, LocalDateTime endsAt, RegisteredUser createdBy) {
+        this.name = name;
+        this.discount = discount;
+        this.target = target;
+        this.targetIds = new ArrayList<>(targetIds);
+        this.startsAt = startsAt;
+        this.endsAt = endsAt;
+        this.createdBy = createdBy;
+        this.status = CampaignStatus.SCHEDULED;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Discount getDiscount() {
+        return discount;
+    }
+
+    public CampaignTarget getTarget() {
+        return target;
+    }
+
+    public List<Long> getTargetIds() {
+        return targetIds;
+    }
+
+    public LocalDateTime getStartsAt() {
+        return startsAt;
+    }
+
+    public LocalDateTime getEndsAt() {
+        return endsAt;
+    }
+
+    public CampaignStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(CampaignStatus status) {
+        this.status = status;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public void setProductCount(int productCount) {
+        this.productCount = productCount;
+    }
+
+    public RegisteredUser getCreatedBy() {
+        return createdBy;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * PIS Projekt 2024
+ * HotProduct.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.data;
+
+import jakarta.persistence.*;
+
+/**
+ * Product in the flash-sale mode (see HotInventory), stored so the mode
+ * survives a restart of the application.
+ */
+@Entity
+@Table(name = "HotProduct")
+@NamedQuery(name = "HotProduct.findAllIds", query = "SELECT h.productId FROM HotProduct h")
+public class HotProduct {
+    @Id
+    private long productId;
+
+    public HotProduct() {
+    }
+
+    public HotProduct(long productId) {
+        this.productId = productId;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * PIS Projekt 2024
+ * HotSale.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.data;
+
+import jakarta.persistence.*;
+
+/**
+ * Pieces of a hot product sold by one order whose stock was not decreased yet.
+ * Written in the transaction of the order, so sold pieces are not lost when the
+ * application stops before the stock is written. The row is deleted in the same
+ * transaction which decreases the stock.
+ */
+@Entity
+@Table(name = "HotSale", indexes = @Index(name = "IDX_HOTSALE_PRODUCT", columnList = "productId"))
+public class HotSale {
+    @Id
+    @TableGenerator(name = "HotSale", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "HotSale", allocationSize = 500)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "HotSale")
+    private long id;
+
+    private long productId;
+
+    private int quantity;
+
+    public HotSale() {
+    }
+
+    public HotSale(long productId, int quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+}
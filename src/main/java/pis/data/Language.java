@@ -6,6 +6,8 @@
 
 package pis.data;
 
+import java.util.Locale;
+
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 
@@ -13,19 +15,30 @@ import jakarta.validation.constraints.NotNull;
  * Data model for language.
  */
 @Entity
-@Table(name = "Language")
+@Table(name = "Language", indexes = @Index(name = "IDX_LANGUAGE_LANGUAGE", columnList = "languageLower"))
 @NamedQuery(name = "Language.findAll", query = "SELECT l FROM Language l")
+@NamedQuery(name = "Language.findByLanguage", query = "SELECT l FROM Language l WHERE l.languageLower = :language")
 public class Language {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "Language", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "Language", allocationSize = 20)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "Language")
     private long id;
 
     @NotNull
     private String language;
+    /** Lower-cased language, so case-insensitive lookups can use an index. */
+    private String languageLower;
 
     public Language() {
     }
 
+    @PrePersist
+    @PreUpdate
+    private void normalize() {
+        languageLower = language == null ? null : language.toLowerCase(Locale.ROOT);
+    }
+
     public Language(String language) {
         this.language = language;
     }
@@ -15,7 +15,9 @@ import jakarta.validation.constraints.NotNull;
 public class Modification {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "Modification", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "Modification", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "Modification")
     private long id;
 
     @OneToOne
@@ -16,11 +16,26 @@ import pis.api.dto.*;
  * Data model for an order.
  */
 @Entity
-@Table(name = "Orders")
+@Table(name = "Orders", indexes = {
+        // Order listing (newest first) and statistics rollups
+        @Index(name = "IDX_ORDERS_CREATION", columnList = "creationDate, id"),
+        @Index(name = "IDX_ORDERS_STATUS", columnList = "status, creationDate")
+})
 @NamedQuery(name = "Order.findAll", query = "SELECT o FROM Order o")
+@NamedEntityGraph(name = "Order.preview", attributeNodes = @NamedAttributeNode("orderUserInfo"))
+@NamedEntityGraph(name = "Order.detail", attributeNodes = {
+        @NamedAttributeNode("orderUserInfo"),
+        @NamedAttributeNode(value = "orderItems", subgraph = "items"),
+        @NamedAttributeNode(value = "modifications", subgraph = "modifications")
+}, subgraphs = {
+        @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("categories")),
+        @NamedSubgraph(name = "modifications", attributeNodes = @NamedAttributeNode("registeredUser"))
+})
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "Order", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "Order", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "Order")
     private long id;
 
     @NotNull
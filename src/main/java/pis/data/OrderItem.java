@@ -16,7 +16,9 @@ import jakarta.validation.constraints.NotNull;
 @NamedQuery(name = "OrderItem.findAll", query = "SELECT oi FROM OrderItem oi")
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "OrderItem", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "OrderItem", allocationSize = 500)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "OrderItem")
     private long id;
 
     @NotNull
@@ -28,6 +30,11 @@ public class OrderItem {
     @NotNull
     private double pricePerPiece;
 
+    /**
+     * Id of the bought product, used to aggregate sales of the product even if it was renamed.
+     */
+    private long productId;
+
     // Product description fields (for when the product is no longer available in the system)
     private String image;
     private String productName;
@@ -41,6 +48,7 @@ public class OrderItem {
 
     public OrderItem(Integer quantity, ProductDescription productDescription) {
         this.quantity = quantity;
+        this.productId = productDescription.getId();
         this.image = productDescription.getImage();
         this.productName = productDescription.getName();
         this.authorFirstName = productDescription.getAuthor() != null ? productDescription.getAuthor().getFirstName() : null;
@@ -76,6 +84,14 @@ public class OrderItem {
         this.id = id;
     }
 
+    public long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(long productId) {
+        this.productId = productId;
+    }
+
     public String getImage() {
         return image;
     }
@@ -14,7 +14,9 @@ import jakarta.validation.constraints.NotNull;
 @NamedQuery(name = "OrderUserInfo.findAll", query = "SELECT o FROM OrderUserInfo o")
 public class OrderUserInfo {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "OrderUserInfo", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "OrderUserInfo", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "OrderUserInfo")
     private long id;
 
     @NotNull
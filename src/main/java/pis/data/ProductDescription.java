@@ -16,11 +16,23 @@ import pis.api.dto.Request; // Not really a DTO, but this makes things easier
  * Data model for product description.
  */
 @Entity
-@Table(name = "ProductDescription")
+@Table(name = "ProductDescription", indexes = {
+        @Index(name = "IDX_PRODUCT_NAME", columnList = "name"),
+        @Index(name = "IDX_PRODUCT_ISBN", columnList = "ISBN"),
+        @Index(name = "IDX_PRODUCT_PRICE", columnList = "effectivePrice, id")
+})
 @NamedQuery(name = "ProductDescription.findAll", query = "SELECT pd FROM ProductDescription pd")
+@NamedEntityGraph(name = "ProductDescription.detail", attributeNodes = {
+        @NamedAttributeNode("author"),
+        @NamedAttributeNode("categories"),
+        @NamedAttributeNode("language"),
+        @NamedAttributeNode("discount")
+})
 public class ProductDescription extends Request {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "ProductDescription", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "ProductDescription", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ProductDescription")
     private long id;
 
     @NotNull
@@ -36,13 +48,22 @@ public class ProductDescription extends Request {
     private String image;
     @NotNull
     private int availableQuantity;
+    /**
+     * Price after the discount, stored so that price filters and sorting can use an index.
+     * Kept up to date on every save, and by DiscountManager when a discount changes.
+     */
+    private double effectivePrice;
 
     @ManyToOne
     @JoinColumn(name = "author_id")
     private BookAuthor author;
 
     @ManyToMany
-    @JoinTable(name = "ProductCategory", joinColumns = @JoinColumn(name = "product_id"), inverseJoinColumns = @JoinColumn(name = "category_id"))
+    @JoinTable(name = "ProductCategory", joinColumns = @JoinColumn(name = "product_id"), inverseJoinColumns = @JoinColumn(name = "category_id"), indexes = {
+            // Both directions: categories of a product and products of a category (filter)
+            @Index(name = "IDX_PRODUCTCATEGORY_PRODUCT", columnList = "product_id, category_id"),
+            @Index(name = "IDX_PRODUCTCATEGORY_CATEGORY", columnList = "category_id, product_id")
+    })
     private List<Category> categories;
 
     @ManyToOne
@@ -73,6 +94,12 @@ public class ProductDescription extends Request {
         this.availableQuantity = availableQuantity;
     }
 
+    @PrePersist
+    @PreUpdate
+    private void updateEffectivePrice() {
+        effectivePrice = getCurrentPrice();
+    }
+
     /**
      * Returns current price - if discount exists, substracts the discout.
      */
@@ -83,6 +110,13 @@ public class ProductDescription extends Request {
         return price * ((100.0 - discount.getDiscount()) / 100.0);
     }
 
+    /**
+     * Returns the current price as stored in the database.
+     */
+    public double getEffectivePrice() {
+        return effectivePrice;
+    }
+
     public double getPrice() {
         return price;
     }
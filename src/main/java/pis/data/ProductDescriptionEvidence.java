@@ -14,7 +14,9 @@ import java.time.LocalDateTime;
 public class ProductDescriptionEvidence {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "ProductDescriptionEvidence", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "ProductDescriptionEvidence", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ProductDescriptionEvidence")
     private long id;
 
     private RegisteredUser registeredUser;
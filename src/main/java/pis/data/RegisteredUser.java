@@ -11,6 +11,7 @@ import jakarta.validation.constraints.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import pis.api.dto.*;
 
 import org.apache.commons.codec.digest.DigestUtils;
@@ -19,11 +20,14 @@ import org.apache.commons.codec.digest.DigestUtils;
  * Data model for user.
  */
 @Entity
-@Table(name = "RegisteredUser")
+@Table(name = "RegisteredUser", indexes = @Index(name = "IDX_USER_EMAIL", columnList = "emailLower"))
 @NamedQuery(name="RegisteredUser.findAll", query="SELECT c FROM RegisteredUser c")
+@NamedQuery(name = "RegisteredUser.findByEmail", query = "SELECT u FROM RegisteredUser u WHERE u.emailLower = :email")
 public class RegisteredUser {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TableGenerator(name = "RegisteredUser", table = "ID_GENERATOR", pkColumnName = "GEN_NAME",
+            valueColumnName = "GEN_VALUE", pkColumnValue = "RegisteredUser", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "RegisteredUser")
     private long id;
 
     @NotNull
@@ -34,6 +38,8 @@ public class RegisteredUser {
 	private String phone;
     @NotNull
 	private String email;
+    /** Lower-cased email, so case-insensitive lookups can use an index. */
+    private String emailLower;
     @NotNull
 	private String passwordHash;
     @NotNull
@@ -49,6 +55,12 @@ public class RegisteredUser {
 
     public RegisteredUser() {}
 
+    @PrePersist
+    @PreUpdate
+    private void normalize() {
+        emailLower = email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+
     public RegisteredUser(String firstname, String surname, String phone, String email, String password, String state, String town, String street, String streetNumber, String postCode) {
         this.firstname = firstname;
         this.surname = surname;
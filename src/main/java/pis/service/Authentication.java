@@ -7,15 +7,8 @@
 
 package pis.service;
 
-import pis.data.RegisteredUser;
-
-import java.security.Key;
 import java.security.Principal;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
-
 import jakarta.annotation.Priority;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
@@ -37,7 +30,10 @@ import jakarta.ws.rs.core.Response;
 public class Authentication implements ContainerRequestFilter {
     
     @Inject
-	private RegisteredUserManager userManager;
+	private TokenCache tokenCache;
+
+    @Inject
+    private CurrentUser currentUser;
 
     @Context
     private SecurityContext securityContext;
@@ -45,8 +41,6 @@ public class Authentication implements ContainerRequestFilter {
     @Context
     private ResourceInfo resourceInfo;
 
-    private static final Key key = Keys.hmacShaKeyFor("12345789101112131415161718192021222324252627282930".getBytes()); // very stupid but w/e
-
     /**
      * Perform filter on each incoming request
      */
@@ -58,21 +52,15 @@ public class Authentication implements ContainerRequestFilter {
             String token = authorizationHeader.substring("Bearer ".length()); // get the useful token part
 
             try {
-                Claims claims = Jwts.parserBuilder()
-                        .setSigningKey(key)
-                        .build()
-                        .parseClaimsJws(token)
-                        .getBody();
-
-                // If it got here, token should be valid
+                // Verified token or the same token verified by a previous request
+                UserSnapshot u = tokenCache.authenticate(token);
 
-                String email = claims.getSubject();
-                RegisteredUser u = userManager.findByEmail(email);
-                
                 // User not found
                 if (u == null) {
                     ctx.abortWith(Response.status(Response.Status.UNAUTHORIZED).build());
+                    return;
                 }
+                currentUser.set(u);
 
                 ctx.setSecurityContext(new SecurityContext() { // Custom SecurityContext, isUserInRole is used in @RolesAllowed annotation
                     @Override
@@ -7,9 +7,12 @@
 package pis.service;
 
 import java.util.List;
+import java.util.Locale;
 
 import pis.data.BookAuthor;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.persistence.Query;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -23,11 +26,18 @@ public class BookAuthorManager {
     @PersistenceContext
     private EntityManager em;
 
+    @Inject
+    private ReferenceDataCache referenceDataCache;
+
+    @Inject
+    private Event<ReferenceDataChangedEvent> referenceDataChanged;
+
     /**
      * Returns list of all BookAuthors.
      */
     public List<BookAuthor> findAll() {
-        return em.createNamedQuery("BookAuthor.findAll", BookAuthor.class).getResultList();
+        return referenceDataCache.findAll(BookAuthor.class,
+                () -> em.createNamedQuery("BookAuthor.findAll", BookAuthor.class).getResultList());
     }
 
     /**
@@ -49,8 +59,8 @@ public class BookAuthorManager {
     public BookAuthor findByLastName(String lastName) {
         BookAuthor author = null;
         try {
-            Query q = em.createQuery("SELECT a FROM BookAuthor a WHERE lower(a.lastName) = lower( :lastName )");
-            q.setParameter("lastName", lastName);
+            Query q = em.createNamedQuery("BookAuthor.findByLastName");
+            q.setParameter("lastName", lastName.toLowerCase(Locale.ROOT));
             return (BookAuthor) q.getSingleResult();
         } catch (Exception e) {
             System.out.println(e);
@@ -68,10 +78,9 @@ public class BookAuthorManager {
     public BookAuthor findByName(String firstName, String lastName) {
         BookAuthor author = null;
         try {
-            Query q = em.createQuery(
-                    "SELECT a FROM BookAuthor a WHERE lower(a.firstName) = lower( :firstName ) AND lower(a.lastName) = lower( :lastName )");
-            q.setParameter("firstName", firstName);
-            q.setParameter("lastName", lastName);
+            Query q = em.createNamedQuery("BookAuthor.findByName");
+            q.setParameter("firstName", firstName.toLowerCase(Locale.ROOT));
+            q.setParameter("lastName", lastName.toLowerCase(Locale.ROOT));
             return (BookAuthor) q.getSingleResult();
         } catch (Exception e) {
             System.out.println(e);
@@ -87,7 +96,9 @@ public class BookAuthorManager {
      */
     @Transactional
     public BookAuthor save(BookAuthor a) {
-        return em.merge(a);
+        BookAuthor saved = em.merge(a);
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(BookAuthor.class, saved.getId()));
+        return saved;
     }
 
     /**
@@ -100,5 +111,6 @@ public class BookAuthorManager {
     public void delete(BookAuthor a) {
         BookAuthor new_a = em.merge(a);
         em.remove(new_a);
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(BookAuthor.class, new_a.getId()));
     }
 }
@@ -0,0 +1,116 @@
+/**
+ * PIS Projekt 2024
+ * CampaignScheduler.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.context.control.RequestContextController;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import pis.data.CampaignStatus;
+import pis.data.DiscountCampaign;
+
+/**
+ * Starts and ends discount campaigns on time.
+ * Start and end of every pending campaign are kept in a time wheel, which
+ * is advanced every second. Campaigns are read from the database at startup,
+ * so campaigns which should have started or ended while the application was
+ * down are handled right away.
+ */
+@ApplicationScoped
+public class CampaignScheduler {
+    private static final long TICK_MILLIS = 1000;
+    /** One turn of the wheel is an hour. */
+    private static final int WHEEL_SIZE = 3600;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    @Inject
+    private Instance<DiscountCampaignManager> campaignManager;
+
+    @Inject
+    private Instance<RequestContextController> requestContext;
+
+    private final TimeWheel<Task> wheel = new TimeWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+
+    /**
+     * Start or end of one campaign.
+     */
+    private static class Task {
+        private final long campaignId;
+        private final boolean start;
+
+        private Task(long campaignId, boolean start) {
+            this.campaignId = campaignId;
+            this.start = start;
+        }
+    }
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        inRequest(() -> {
+            for (DiscountCampaign c : campaignManager.get().findPending()) {
+                schedule(c);
+            }
+        });
+        executor.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules the start (if the campaign did not start yet) and the end of the campaign.
+     */
+    public void schedule(DiscountCampaign c) {
+        if (c.getStatus() == CampaignStatus.SCHEDULED) {
+            wheel.schedule(new Task(c.getId(), true), toMillis(c.getStartsAt()));
+        }
+        if (c.getStatus() == CampaignStatus.SCHEDULED || c.getStatus() == CampaignStatus.ACTIVE) {
+            wheel.schedule(new Task(c.getId(), false), toMillis(c.getEndsAt()));
+        }
+    }
+
+    private void tick() {
+        for (Task task : wheel.advance(System.currentTimeMillis())) {
+            // Each campaign in its own transaction, a failing one does not stop the others
+            inRequest(() -> {
+                DiscountCampaignManager manager = campaignManager.get();
+                if (task.start) {
+                    manager.start(task.campaignId);
+                } else {
+                    manager.end(task.campaignId, CampaignStatus.FINISHED);
+                }
+            });
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Runs the task with an active request context, needed by the request scoped managers.
+     */
+    private void inRequest(Runnable task) {
+        RequestContextController controller = requestContext.get();
+        boolean activated = controller.activate();
+        try {
+            task.run();
+        } catch (Exception e) {
+            System.out.println(e);
+        } finally {
+            if (activated) {
+                controller.deactivate();
+            }
+        }
+    }
+}
@@ -0,0 +1,697 @@
+/**
+ * PIS Projekt 2024
+ * CatalogColumns.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import pis.api.dto.FacetBucketDTO;
+import pis.api.dto.FacetValueDTO;
+import pis.api.dto.FacetsDTO;
+import pis.api.dto.FilterQuery;
+import pis.data.Category;
+import pis.data.Discount;
+import pis.data.ProductDescription;
+
+/**
+ * Read-optimized copy of the filterable product attributes, used to answer
+ * the product filter and to count facets without the database.
+ *
+ * Products are rows of primitive arrays ordered by id. Authors and languages are
+ * dictionary-encoded, every author and language has the sorted list of its rows,
+ * every category has a bitmap of its rows. A filter ORs and ANDs the bitmaps of
+ * the wanted categories, authors and languages and then checks the ranges in the
+ * arrays of the remaining rows.
+ *
+ * The snapshot is immutable. Changes are collected and applied at the next read,
+ * all of them by one copy of the arrays, so bulk changes do not copy the
+ * arrays once per product.
+ */
+@ApplicationScoped
+public class CatalogColumns {
+    private static final int FETCH_SIZE = 1000;
+    /** Maximal number of ids in one IN list. */
+    private static final int IN_CHUNK = 1000;
+    /** Lower bounds of the facet buckets. */
+    private static final double[] PRICE_BUCKETS = { 0, 5, 10, 20, 50, 100 };
+    private static final double[] PAGE_BUCKETS = { 0, 100, 200, 400, 800 };
+    /** Products without discount are in the first bucket. */
+    private static final double[] DISCOUNT_BUCKETS = { 0, 1, 10, 25, 50 };
+
+    /** Parts of the filter a row can fail, see facets. */
+    private static final int CATEGORY = 1;
+    private static final int AUTHOR = 2;
+    private static final int LANGUAGE = 4;
+    private static final int PRICE = 8;
+    private static final int PAGES = 16;
+    private static final int DISCOUNT = 32;
+
+    /** Row data marking a deleted product. */
+    private static final Row DELETED = new Row(-1);
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private volatile Snapshot snapshot;
+    /** Changed products (DELETED if deleted) not yet in the snapshot. */
+    private final Map<Long, Row> pending = new ConcurrentHashMap<>();
+    /** Products whose prices changed in bulk, read again from the database. */
+    private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+    private volatile boolean reload = false;
+
+    /**
+     * Attributes of one product.
+     */
+    private static class Row {
+        private final long id;
+        private double price;
+        private double currentPrice;
+        private int pages;
+        /** Discount in percent, -1 if the product has no discount. */
+        private int discount = -1;
+        private long authorId = -1;
+        private long languageId = -1;
+        private long[] categoryIds = new long[0];
+
+        private Row(long id) {
+            this.id = id;
+        }
+
+        private static Row of(ProductDescription p) {
+            Row r = new Row(p.getId());
+            r.price = p.getPrice();
+            r.currentPrice = p.getCurrentPrice();
+            r.pages = p.getPages();
+            r.discount = p.getDiscount() == null ? -1 : p.getDiscount().getDiscount();
+            r.authorId = p.getAuthor() == null ? -1 : p.getAuthor().getId();
+            r.languageId = p.getLanguage() == null ? -1 : p.getLanguage().getId();
+            if (p.getCategories() != null) {
+                r.categoryIds = p.getCategories().stream().mapToLong(Category::getId).toArray();
+            }
+            return r;
+        }
+    }
+
+    /**
+     * Immutable columns of the whole catalog.
+     */
+    private static class Snapshot {
+        private final int size;
+        private final long[] ids;
+        private final double[] price;
+        private final double[] currentPrice;
+        private final int[] pages;
+        private final byte[] discount;
+        /** Dictionary codes of the authors and languages of the rows, -1 if none. */
+        private final int[] author;
+        private final int[] language;
+        private final long[] authorIds;
+        private final long[] languageIds;
+        private final Map<Long, Integer> authorCodes;
+        private final Map<Long, Integer> languageCodes;
+        /** Rows of every author and language, row lists of code c are rows[start[c]..start[c + 1]). */
+        private final int[] authorStart;
+        private final int[] authorRows;
+        private final int[] languageStart;
+        private final int[] languageRows;
+        private final Map<Long, BitSet> categories;
+
+        private Snapshot(Columns c) {
+            this.size = c.size;
+            this.ids = Arrays.copyOf(c.ids, c.size);
+            this.price = Arrays.copyOf(c.price, c.size);
+            this.currentPrice = Arrays.copyOf(c.currentPrice, c.size);
+            this.pages = Arrays.copyOf(c.pages, c.size);
+            this.discount = Arrays.copyOf(c.discount, c.size);
+            this.author = Arrays.copyOf(c.author, c.size);
+            this.language = Arrays.copyOf(c.language, c.size);
+            this.authorIds = c.authorIds.stream().mapToLong(Long::longValue).toArray();
+            this.languageIds = c.languageIds.stream().mapToLong(Long::longValue).toArray();
+            this.authorCodes = c.authorCodes;
+            this.languageCodes = c.languageCodes;
+            this.authorStart = new int[authorIds.length + 1];
+            this.authorRows = postings(author, authorStart);
+            this.languageStart = new int[languageIds.length + 1];
+            this.languageRows = postings(language, languageStart);
+            this.categories = c.categories;
+        }
+
+        /**
+         * Groups rows by their codes (counting sort), returns the rows and fills their starts.
+         */
+        private int[] postings(int[] codes, int[] start) {
+            for (int row = 0; row < size; row++) {
+                if (codes[row] >= 0) {
+                    start[codes[row] + 1]++;
+                }
+            }
+            for (int c = 1; c < start.length; c++) {
+                start[c] += start[c - 1];
+            }
+            int[] rows = new int[start[start.length - 1]];
+            int[] next = Arrays.copyOf(start, start.length - 1);
+            for (int row = 0; row < size; row++) {
+                if (codes[row] >= 0) {
+                    rows[next[codes[row]]++] = row;
+                }
+            }
+            return rows;
+        }
+
+        private Row row(int i) {
+            Row r = new Row(ids[i]);
+            r.price = price[i];
+            r.currentPrice = currentPrice[i];
+            r.pages = pages[i];
+            r.discount = discount[i];
+            r.authorId = author[i] < 0 ? -1 : authorIds[author[i]];
+            r.languageId = language[i] < 0 ? -1 : languageIds[language[i]];
+            return r;
+        }
+    }
+
+    /**
+     * Growable columns, used to build a snapshot.
+     */
+    private static class Columns {
+        private int size = 0;
+        private long[] ids;
+        private double[] price;
+        private double[] currentPrice;
+        private int[] pages;
+        private byte[] discount;
+        private int[] author;
+        private int[] language;
+        private final List<Long> authorIds = new ArrayList<>();
+        private final List<Long> languageIds = new ArrayList<>();
+        private final Map<Long, Integer> authorCodes = new HashMap<>();
+        private final Map<Long, Integer> languageCodes = new HashMap<>();
+        private final Map<Long, BitSet> categories = new HashMap<>();
+
+        private Columns(int capacity) {
+            capacity = Math.max(16, capacity);
+            ids = new long[capacity];
+            price = new double[capacity];
+            currentPrice = new double[capacity];
+            pages = new int[capacity];
+            discount = new byte[capacity];
+            author = new int[capacity];
+            language = new int[capacity];
+        }
+
+        /**
+         * Appends the row, rows have to be added ordered by id.
+         *
+         * @return Index of the row.
+         */
+        private int add(Row r) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                price = Arrays.copyOf(price, capacity);
+                currentPrice = Arrays.copyOf(currentPrice, capacity);
+                pages = Arrays.copyOf(pages, capacity);
+                discount = Arrays.copyOf(discount, capacity);
+                author = Arrays.copyOf(author, capacity);
+                language = Arrays.copyOf(language, capacity);
+            }
+            int i = size++;
+            ids[i] = r.id;
+            price[i] = r.price;
+            currentPrice[i] = r.currentPrice;
+            pages[i] = r.pages;
+            discount[i] = (byte) r.discount;
+            author[i] = code(r.authorId, authorIds, authorCodes);
+            language[i] = code(r.languageId, languageIds, languageCodes);
+            for (long categoryId : r.categoryIds) {
+                category(categoryId).set(i);
+            }
+            return i;
+        }
+
+        private BitSet category(long categoryId) {
+            return categories.computeIfAbsent(categoryId, k -> new BitSet());
+        }
+
+        private static int code(long id, List<Long> ids, Map<Long, Integer> codes) {
+            if (id < 0) {
+                return -1;
+            }
+            return codes.computeIfAbsent(id, k -> {
+                ids.add(k);
+                return ids.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Returns ids of the products matching the filter, ordered by id.
+     * Same semantics as the filter in ProductDescriptionManager: missing values
+     * do not filter, products without discount pass any discount range.
+     *
+     * @param query Filter query.
+     * @return Ids of the matching products.
+     */
+    public long[] filter(FilterQuery query) {
+        Snapshot s = current();
+        Ranges r = new Ranges(query);
+        BitSet candidates = null;
+        for (BitSet rows : new BitSet[] { categoryRows(s, query), authorRows(s, query), languageRows(s, query) }) {
+            if (rows != null) {
+                if (candidates == null) {
+                    candidates = rows;
+                } else {
+                    candidates.and(rows);
+                }
+            }
+        }
+
+        long[] result = new long[candidates == null ? s.size : candidates.cardinality()];
+        int found = 0;
+        int row = candidates == null ? (s.size > 0 ? 0 : -1) : candidates.nextSetBit(0);
+        while (row >= 0 && row < s.size) {
+            if (r.failed(s, row) == 0) {
+                result[found++] = s.ids[row];
+            }
+            row = candidates == null ? row + 1 : candidates.nextSetBit(row + 1);
+        }
+        return Arrays.copyOf(result, found);
+    }
+
+    /**
+     * Counts the results by authors, categories, languages and by price, page and
+     * discount buckets, all in one pass over the rows. Every facet counts the rows
+     * which pass all other parts of the filter (whatever its own part says), so it
+     * shows how many results each choice would give. Names are not filled.
+     *
+     * @param query Filter query, null if the results are not filtered.
+     * @param ids   Ids of the results (e.g. of a search), null for the whole catalog.
+     * @return Facet counts.
+     */
+    public FacetsDTO facets(FilterQuery query, Collection<Long> ids) {
+        Snapshot s = current();
+        FilterQuery q = query == null ? new FilterQuery() : query;
+        BitSet base = null;
+        if (ids != null) {
+            base = new BitSet(s.size);
+            for (Long id : ids) {
+                int row = Arrays.binarySearch(s.ids, 0, s.size, id);
+                if (row >= 0) {
+                    base.set(row);
+                }
+            }
+        }
+        BitSet categories = categoryRows(s, q);
+        BitSet authors = authorRows(s, q);
+        BitSet languages = languageRows(s, q);
+        Ranges r = new Ranges(q);
+
+        long total = 0;
+        BitSet categoryFacetRows = new BitSet(s.size);
+        long[] authorCounts = new long[s.authorIds.length];
+        long[] languageCounts = new long[s.languageIds.length];
+        long[] priceCounts = new long[PRICE_BUCKETS.length];
+        long[] pageCounts = new long[PAGE_BUCKETS.length];
+        long[] discountCounts = new long[DISCOUNT_BUCKETS.length];
+        int row = base == null ? (s.size > 0 ? 0 : -1) : base.nextSetBit(0);
+        while (row >= 0 && row < s.size) {
+            int failed = r.failed(s, row);
+            if (categories != null && !categories.get(row)) {
+                failed |= CATEGORY;
+            }
+            if (authors != null && !authors.get(row)) {
+                failed |= AUTHOR;
+            }
+            if (languages != null && !languages.get(row)) {
+                failed |= LANGUAGE;
+            }
+            if (failed == 0) {
+                total++;
+            }
+            if ((failed & ~CATEGORY) == 0) {
+                categoryFacetRows.set(row);
+            }
+            if ((failed & ~AUTHOR) == 0 && s.author[row] >= 0) {
+                authorCounts[s.author[row]]++;
+            }
+            if ((failed & ~LANGUAGE) == 0 && s.language[row] >= 0) {
+                languageCounts[s.language[row]]++;
+            }
+            if ((failed & ~PRICE) == 0) {
+                priceCounts[bucket(PRICE_BUCKETS, s.currentPrice[row])]++;
+            }
+            if ((failed & ~PAGES) == 0) {
+                pageCounts[bucket(PAGE_BUCKETS, s.pages[row])]++;
+            }
+            if ((failed & ~DISCOUNT) == 0) {
+                discountCounts[bucket(DISCOUNT_BUCKETS, Math.max(0, s.discount[row]))]++;
+            }
+            row = base == null ? row + 1 : base.nextSetBit(row + 1);
+        }
+
+        Map<Long, Long> categoryCounts = new HashMap<>();
+        for (Map.Entry<Long, BitSet> e : s.categories.entrySet()) {
+            BitSet rows = (BitSet) e.getValue().clone();
+            rows.and(categoryFacetRows);
+            categoryCounts.put(e.getKey(), (long) rows.cardinality());
+        }
+        Map<Long, Long> authorCountsById = new HashMap<>();
+        for (int c = 0; c < authorCounts.length; c++) {
+            authorCountsById.put(s.authorIds[c], authorCounts[c]);
+        }
+        Map<Long, Long> languageCountsById = new HashMap<>();
+        for (int c = 0; c < languageCounts.length; c++) {
+            languageCountsById.put(s.languageIds[c], languageCounts[c]);
+        }
+        return new FacetsDTO(total, values(authorCountsById, q.getAuthorIds()),
+                values(categoryCounts, q.getCategoryIds()), values(languageCountsById, q.getLanguageIds()),
+                buckets(PRICE_BUCKETS, priceCounts), buckets(PAGE_BUCKETS, pageCounts),
+                buckets(DISCOUNT_BUCKETS, discountCounts));
+    }
+
+    /**
+     * Returns number of products in the snapshot.
+     */
+    public int size() {
+        return current().size;
+    }
+
+    public void onProductChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangedEvent event) {
+        pending.put(event.getId(), event.isDeleted() ? DELETED : Row.of(event.getProduct()));
+    }
+
+    public void onPricesChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) PricesChangedEvent event) {
+        stale.addAll(event.getProductIds());
+    }
+
+    /**
+     * A changed discount changes prices of all its products.
+     */
+    public void onReferenceDataChanged(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        if (event.getType() == Discount.class) {
+            reload = true;
+        }
+    }
+
+    /**
+     * Range parts of the filter, missing values are replaced like in the database filter.
+     */
+    private static class Ranges {
+        private final double priceFrom;
+        private final double priceTo;
+        private final int pagesFrom;
+        private final int pagesTo;
+        private final int discountFrom;
+        private final int discountTo;
+
+        private Ranges(FilterQuery query) {
+            priceFrom = query.getPriceFrom() == null ? 0 : query.getPriceFrom();
+            priceTo = query.getPriceTo() == null ? 999999.99 : query.getPriceTo();
+            pagesFrom = query.getPagesFrom();
+            pagesTo = query.getPagesTo() == 0 ? 1000000 : query.getPagesTo();
+            discountFrom = query.getDiscountFrom();
+            discountTo = query.getDiscountTo() == 0 ? 100 : query.getDiscountTo();
+        }
+
+        /**
+         * Returns the ranges the row does not fit (PRICE, PAGES, DISCOUNT), 0 if it fits all.
+         */
+        private int failed(Snapshot s, int row) {
+            int failed = 0;
+            double price = s.currentPrice[row];
+            if (price < priceFrom || price > priceTo) {
+                failed |= PRICE;
+            }
+            int pages = s.pages[row];
+            if (pages < pagesFrom || pages > pagesTo) {
+                failed |= PAGES;
+            }
+            // Products without discount are not filtered by the discount range
+            int discount = s.discount[row];
+            if (discount >= 0 && (discount < discountFrom || discount > discountTo)) {
+                failed |= DISCOUNT;
+            }
+            return failed;
+        }
+    }
+
+    /**
+     * Returns rows in any of the wanted categories, null if the categories are not filtered.
+     */
+    private static BitSet categoryRows(Snapshot s, FilterQuery query) {
+        if (query.getCategoryIds() == null || query.getCategoryIds().isEmpty()) {
+            return null;
+        }
+        BitSet rows = new BitSet(s.size);
+        for (Long categoryId : query.getCategoryIds()) {
+            BitSet category = s.categories.get(categoryId);
+            if (category != null) {
+                rows.or(category);
+            }
+        }
+        return rows;
+    }
+
+    private static BitSet authorRows(Snapshot s, FilterQuery query) {
+        if (query.getAuthorIds() == null || query.getAuthorIds().isEmpty()) {
+            return null;
+        }
+        return rows(s, query.getAuthorIds(), s.authorCodes, s.authorStart, s.authorRows);
+    }
+
+    /**
+     * Returns rows with any of the wanted languages, products without language never match.
+     */
+    private static BitSet languageRows(Snapshot s, FilterQuery query) {
+        if (query.getLanguageIds() == null || query.getLanguageIds().isEmpty()) {
+            return null;
+        }
+        return rows(s, query.getLanguageIds(), s.languageCodes, s.languageStart, s.languageRows);
+    }
+
+    private static int bucket(double[] bounds, double value) {
+        int i = bounds.length - 1;
+        while (i > 0 && value < bounds[i]) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Returns values with results and the selected values, the most results first.
+     */
+    private static List<FacetValueDTO> values(Map<Long, Long> counts, Collection<Long> selected) {
+        List<FacetValueDTO> values = new ArrayList<>();
+        for (Map.Entry<Long, Long> e : counts.entrySet()) {
+            if (e.getValue() > 0) {
+                values.add(new FacetValueDTO(e.getKey(), e.getValue()));
+            }
+        }
+        if (selected != null) {
+            for (Long id : new HashSet<>(selected)) {
+                if (counts.getOrDefault(id, 0L) == 0) {
+                    values.add(new FacetValueDTO(id, 0));
+                }
+            }
+        }
+        values.sort((a, b) -> a.getCount() != b.getCount() ? Long.compare(b.getCount(), a.getCount())
+                : Long.compare(a.getId(), b.getId()));
+        return values;
+    }
+
+    private static List<FacetBucketDTO> buckets(double[] bounds, long[] counts) {
+        List<FacetBucketDTO> buckets = new ArrayList<>(bounds.length);
+        for (int i = 0; i < bounds.length; i++) {
+            buckets.add(new FacetBucketDTO(bounds[i], i + 1 < bounds.length ? bounds[i + 1] : null, counts[i]));
+        }
+        return buckets;
+    }
+
+    private static BitSet rows(Snapshot s, Collection<Long> ids, Map<Long, Integer> codes, int[] start, int[] rows) {
+        BitSet result = new BitSet(s.size);
+        for (Long id : ids) {
+            Integer code = codes.get(id);
+            if (code != null) {
+                for (int i = start[code]; i < start[code + 1]; i++) {
+                    result.set(rows[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the snapshot with all collected changes.
+     */
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s != null && !reload && pending.isEmpty() && stale.isEmpty()) {
+            return s;
+        }
+        synchronized (this) {
+            if (snapshot == null || reload) {
+                reload = false;
+                // Changes made before the read are in the database
+                pending.clear();
+                stale.clear();
+                QueryCounter.uncounted(() -> snapshot = load());
+            }
+            if (!pending.isEmpty() || !stale.isEmpty()) {
+                snapshot = apply(snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Reads the whole catalog by two projection queries.
+     */
+    private Snapshot load() {
+        long count = em.createQuery("SELECT COUNT(p) FROM ProductDescription p", Long.class).getSingleResult();
+        Columns c = new Columns((int) count);
+        Map<Long, Integer> rowOfId = new HashMap<>();
+        try (Stream<Object[]> rows = em.createQuery("SELECT p.id, p.price, p.effectivePrice, p.pages, d.discount,"
+                + " a.id, l.id FROM ProductDescription p LEFT JOIN p.discount d"
+                + " LEFT JOIN p.author a LEFT JOIN p.language l ORDER BY p.id", Object[].class)
+                .setHint("eclipselink.jdbc.fetch-size", FETCH_SIZE)
+                .getResultStream()) {
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext();) {
+                Object[] p = it.next();
+                Row r = new Row((Long) p[0]);
+                r.price = (Double) p[1];
+                r.currentPrice = (Double) p[2];
+                r.pages = (Integer) p[3];
+                r.discount = p[4] == null ? -1 : (Integer) p[4];
+                r.authorId = p[5] == null ? -1 : (Long) p[5];
+                r.languageId = p[6] == null ? -1 : (Long) p[6];
+                rowOfId.put(r.id, c.add(r));
+            }
+        }
+        try (Stream<Object[]> rows = em.createQuery("SELECT p.id, c.id FROM ProductDescription p"
+                + " JOIN p.categories c", Object[].class)
+                .setHint("eclipselink.jdbc.fetch-size", FETCH_SIZE)
+                .getResultStream()) {
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext();) {
+                Object[] pc = it.next();
+                Integer row = rowOfId.get((Long) pc[0]);
+                if (row != null) {
+                    c.category((Long) pc[1]).set(row);
+                }
+            }
+        }
+        return new Snapshot(c);
+    }
+
+    /**
+     * Returns a new snapshot with the collected changes, the old one is not changed.
+     */
+    private Snapshot apply(Snapshot old) {
+        Map<Long, Row> changes = new HashMap<>();
+        for (Iterator<Map.Entry<Long, Row>> it = pending.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Long, Row> e = it.next();
+            changes.put(e.getKey(), e.getValue());
+            it.remove();
+        }
+        Set<Long> staleIds = new HashSet<>();
+        for (Iterator<Long> it = stale.iterator(); it.hasNext();) {
+            staleIds.add(it.next());
+            it.remove();
+        }
+        if (!staleIds.isEmpty()) {
+            QueryCounter.uncounted(() -> refreshPrices(old, staleIds, changes));
+        }
+
+        long[] changedIds = changes.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        Columns c = new Columns(old.size + changedIds.length);
+        // Row of the old snapshot -> row of the new one, -1 if it was replaced or deleted
+        int[] moved = new int[old.size];
+        int i = 0;
+        int j = 0;
+        while (i < old.size || j < changedIds.length) {
+            if (j == changedIds.length || (i < old.size && old.ids[i] < changedIds[j])) {
+                moved[i] = c.add(old.row(i));
+                i++;
+                continue;
+            }
+            long id = changedIds[j++];
+            if (i < old.size && old.ids[i] == id) {
+                moved[i++] = -1;
+            }
+            Row r = changes.get(id);
+            if (r != DELETED) {
+                c.add(r);
+            }
+        }
+        for (Map.Entry<Long, BitSet> e : old.categories.entrySet()) {
+            BitSet rows = c.category(e.getKey());
+            for (int row = e.getValue().nextSetBit(0); row >= 0; row = e.getValue().nextSetBit(row + 1)) {
+                if (moved[row] >= 0) {
+                    rows.set(moved[row]);
+                }
+            }
+        }
+        c.categories.values().removeIf(BitSet::isEmpty);
+        return new Snapshot(c);
+    }
+
+    /**
+     * Reads prices of the products again, changes are added to the changed rows.
+     */
+    private void refreshPrices(Snapshot old, Set<Long> ids, Map<Long, Row> changes) {
+        Map<Long, BitSet> categories = old.categories;
+        List<Object[]> rows = new ArrayList<>();
+        List<Long> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += IN_CHUNK) {
+            rows.addAll(em.createQuery("SELECT p.id, p.price, p.effectivePrice, d.discount"
+                    + " FROM ProductDescription p LEFT JOIN p.discount d WHERE p.id IN :ids", Object[].class)
+                    .setParameter("ids", all.subList(from, Math.min(all.size(), from + IN_CHUNK)))
+                    .getResultList());
+        }
+        for (Object[] p : rows) {
+            long id = (Long) p[0];
+            Row r = changes.get(id);
+            if (r == DELETED) {
+                continue;
+            }
+            if (r == null) {
+                int row = Arrays.binarySearch(old.ids, 0, old.size, id);
+                if (row < 0) {
+                    // New product, it comes with its ProductChangedEvent
+                    continue;
+                }
+                r = old.row(row);
+                List<Long> categoryIds = new ArrayList<>();
+                for (Map.Entry<Long, BitSet> e : categories.entrySet()) {
+                    if (e.getValue().get(row)) {
+                        categoryIds.add(e.getKey());
+                    }
+                }
+                r.categoryIds = categoryIds.stream().mapToLong(Long::longValue).toArray();
+                changes.put(id, r);
+            }
+            r.price = (Double) p[1];
+            r.currentPrice = (Double) p[2];
+            r.discount = p[3] == null ? -1 : (Integer) p[3];
+        }
+    }
+}
@@ -0,0 +1,428 @@
+/**
+ * PIS Projekt 2024
+ * CatalogFeed.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Catalog feed for partners and crawlers, kept as gzip-compressed snapshot files on disk.
+ * 
+ * Products are split into segments by id (SEGMENT_SIZE ids each), every segment is a
+ * separate gzip member file. A change of a product only marks its segment dirty, a
+ * background task rewrites the dirty segments from the database (a projection read
+ * as a stream, no entities) and concatenates the segment files into a new snapshot,
+ * which is valid gzip as gzip allows several members. Downloads only read the
+ * snapshot files, the snapshot being served is never changed, a new one replaces it.
+ */
+@ApplicationScoped
+public class CatalogFeed {
+    /** Number of product ids in one segment. */
+    private static final long SEGMENT_SIZE = 10000;
+    private static final int FETCH_SIZE = 500;
+    /** Changes are collected for this long before the snapshots are rebuilt. */
+    private static final long REBUILD_DELAY_MILLIS = 10000;
+
+    /** Columns of the CSV feed, the CSV can be imported back (unknown columns are ignored). */
+    private static final String CSV_HEADER = "id,name,isbn,price,currentPrice,discount,quantity,pages,image,"
+            + "description,authorFirstName,authorLastName,language,categories\n";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    private final Path directory = Path.of(ConfigProvider.getConfig().getOptionalValue("pis.feed.dir", String.class)
+            .orElse(System.getProperty("java.io.tmpdir") + "/pis-feed"));
+
+    /** Segment -> CRC of its files (NDJSON, CSV), only used by the rebuild task. */
+    private final TreeMap<Long, long[]> segments = new TreeMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean allDirty = new AtomicBoolean(true);
+    private final Map<Format, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private long version = 0;
+
+    /**
+     * Formats of the feed.
+     */
+    public enum Format {
+        NDJSON("ndjson"), CSV("csv");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Returns format with the extension, null if there is none.
+         */
+        public static Format fromExtension(String extension) {
+            for (Format f : values()) {
+                if (f.extension.equalsIgnoreCase(extension)) {
+                    return f;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Finished snapshot file, never changed after it was published.
+     */
+    public static class Snapshot {
+        private final Path file;
+        private final long length;
+        private final String etag;
+        private final long createdAt;
+
+        private Snapshot(Path file, long length, String etag) {
+            this.file = file;
+            this.length = length;
+            this.etag = etag;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Returns strong entity tag of the content (quoted).
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        // Files of the previous run, the whole feed is written again. Only the files
+        // the feed writes are deleted, the directory may be shared with other files.
+        deleteFiles(directory.resolve("segments"), "*");
+        deleteFiles(directory, "catalog-*.gz");
+        deleteFiles(directory, "segment*.tmp");
+        executor.scheduleWithFixedDelay(this::rebuild, 0, REBUILD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void deleteFiles(Path dir, String glob) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, glob)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * Returns the current snapshot of the format, null until the first one is built.
+     */
+    public Snapshot getSnapshot(Format format) {
+        return snapshots.get(format);
+    }
+
+    public void onProductChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangedEvent event) {
+        dirty.add(event.getId() / SEGMENT_SIZE);
+    }
+
+    public void onPricesChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) PricesChangedEvent event) {
+        markDirty(event.getProductIds());
+    }
+
+    public void onStockChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) StockChangedEvent event) {
+        markDirty(event.getProductIds());
+    }
+
+    /**
+     * Names of authors, languages, categories and discount values are in every segment.
+     */
+    public void onReferenceDataChanged(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        allDirty.set(true);
+    }
+
+    private void markDirty(Iterable<Long> productIds) {
+        for (Long id : productIds) {
+            dirty.add(id / SEGMENT_SIZE);
+        }
+    }
+
+    /**
+     * Rewrites the dirty segments and publishes new snapshots.
+     */
+    private void rebuild() {
+        Set<Long> todo = new HashSet<>();
+        boolean all = allDirty.getAndSet(false);
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext();) {
+            todo.add(it.next());
+            it.remove();
+        }
+        if (!all && todo.isEmpty()) {
+            return;
+        }
+        try {
+            if (all) {
+                todo.addAll(segments.keySet());
+                Object[] range = em.createQuery("SELECT MIN(p.id), MAX(p.id) FROM ProductDescription p",
+                        Object[].class).getSingleResult();
+                if (range[0] != null) {
+                    for (long s = (Long) range[0] / SEGMENT_SIZE; s <= (Long) range[1] / SEGMENT_SIZE; s++) {
+                        todo.add(s);
+                    }
+                }
+            }
+            Files.createDirectories(directory.resolve("segments"));
+            for (long segment : todo) {
+                writeSegment(segment);
+            }
+            version++;
+            for (Format format : Format.values()) {
+                publish(format);
+            }
+        } catch (Exception e) {
+            System.out.println(e);
+            // Try again next time
+            dirty.addAll(todo);
+            if (all) {
+                allDirty.set(true);
+            }
+        }
+    }
+
+    /**
+     * Writes both files of the segment from the database, removes them if the segment has no products.
+     */
+    private void writeSegment(long segment) throws IOException {
+        long from = segment * SEGMENT_SIZE;
+        long to = from + SEGMENT_SIZE - 1;
+        Map<Long, List<String>> categories = new HashMap<>();
+        for (Object[] row : em.createQuery("SELECT p.id, c.name FROM ProductDescription p JOIN p.categories c"
+                + " WHERE p.id BETWEEN :from AND :to", Object[].class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList()) {
+            categories.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+
+        Map<Format, Path> temp = new EnumMap<>(Format.class);
+        Map<Format, CRC32> crcs = new EnumMap<>(Format.class);
+        Map<Format, Writer> writers = new EnumMap<>(Format.class);
+        long rows = 0;
+        try {
+            for (Format format : Format.values()) {
+                Path file = Files.createTempFile(directory, "segment", ".tmp");
+                CRC32 crc = new CRC32();
+                temp.put(format, file);
+                crcs.put(format, crc);
+                writers.put(format, gzipWriter(Files.newOutputStream(file), crc));
+            }
+            try (Stream<Object[]> products = em.createQuery("SELECT p.id, p.name, p.ISBN, p.price,"
+                    + " p.effectivePrice, d.discount, p.availableQuantity, p.pages, p.image, p.description,"
+                    + " a.firstName, a.lastName, l.language FROM ProductDescription p LEFT JOIN p.discount d"
+                    + " LEFT JOIN p.author a LEFT JOIN p.language l WHERE p.id BETWEEN :from AND :to ORDER BY p.id",
+                    Object[].class)
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .setHint("eclipselink.jdbc.fetch-size", FETCH_SIZE)
+                    .getResultStream()) {
+                for (Iterator<Object[]> it = products.iterator(); it.hasNext();) {
+                    Object[] p = it.next();
+                    List<String> names = categories.getOrDefault((Long) p[0], List.of());
+                    writers.get(Format.NDJSON).write(json(p, names));
+                    writers.get(Format.CSV).write(csv(p, names));
+                    rows++;
+                }
+            }
+        } finally {
+            for (Writer w : writers.values()) {
+                w.close();
+            }
+        }
+
+        for (Format format : Format.values()) {
+            Path file = segmentFile(segment, format);
+            if (rows == 0) {
+                Files.delete(temp.get(format));
+                Files.deleteIfExists(file);
+            } else {
+                Files.move(temp.get(format), file, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        if (rows == 0) {
+            segments.remove(segment);
+        } else {
+            segments.put(segment, new long[] { crcs.get(Format.NDJSON).getValue(), crcs.get(Format.CSV).getValue() });
+        }
+    }
+
+    /**
+     * Concatenates the segment files into a new snapshot and replaces the old one.
+     */
+    private void publish(Format format) throws IOException {
+        Path file = directory.resolve("catalog-" + version + "." + format.getExtension() + ".gz");
+        CRC32 etag = new CRC32();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (format == Format.CSV) {
+                Path header = directory.resolve("segments/header.csv.gz");
+                try (Writer w = gzipWriter(Files.newOutputStream(header), etag)) {
+                    w.write(CSV_HEADER);
+                }
+                append(header, out);
+            }
+            ByteBuffer crc = ByteBuffer.allocate(Long.BYTES);
+            for (Map.Entry<Long, long[]> e : segments.entrySet()) {
+                append(segmentFile(e.getKey(), format), out);
+                crc.clear();
+                crc.putLong(e.getValue()[format.ordinal()]).flip();
+                etag.update(crc);
+            }
+        }
+        Snapshot snapshot = new Snapshot(file, Files.size(file),
+                "\"" + format.getExtension() + "-" + Long.toHexString(etag.getValue()) + "\"");
+        Snapshot old = snapshots.put(format, snapshot);
+        if (old != null) {
+            // Downloads which already opened the old file keep reading it (on POSIX systems)
+            try {
+                Files.deleteIfExists(old.getFile());
+            } catch (IOException e) {
+                System.out.println(e);
+            }
+        }
+    }
+
+    private static void append(Path source, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private Path segmentFile(long segment, Format format) {
+        return directory.resolve("segments/" + segment + "." + format.getExtension() + ".gz");
+    }
+
+    private static Writer gzipWriter(OutputStream out, CRC32 crc) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new CheckedOutputStream(out, crc), 1 << 16), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static String json(Object[] p, List<String> categories) {
+        JsonObjectBuilder o = Json.createObjectBuilder()
+                .add("id", (Long) p[0])
+                .add("price", (Double) p[3])
+                .add("currentPrice", (Double) p[4])
+                .add("discount", p[5] == null ? 0 : (Integer) p[5])
+                .add("quantity", (Integer) p[6])
+                .add("pages", (Integer) p[7]);
+        add(o, "name", p[1]);
+        add(o, "isbn", p[2]);
+        add(o, "image", p[8]);
+        add(o, "description", p[9]);
+        add(o, "authorFirstName", p[10]);
+        add(o, "authorLastName", p[11]);
+        add(o, "language", p[12]);
+        JsonArrayBuilder names = Json.createArrayBuilder();
+        for (String name : categories) {
+            names.add(name);
+        }
+        o.add("categories", names);
+        return o.build().toString() + "\n";
+    }
+
+    private static void add(JsonObjectBuilder o, String name, Object value) {
+        if (value == null) {
+            o.addNull(name);
+        } else {
+            o.add(name, value.toString());
+        }
+    }
+
+    private static String csv(Object[] p, List<String> categories) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 13; i++) {
+            Object value = i == 5 && p[5] == null ? 0 : p[i];
+            line.append(csvValue(value)).append(',');
+        }
+        line.append(csvValue(String.join("|", categories))).append('\n');
+        return line.toString();
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
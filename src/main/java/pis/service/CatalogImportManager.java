@@ -0,0 +1,271 @@
+/**
+ * PIS Projekt 2024
+ * CatalogImportManager.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import pis.data.BookAuthor;
+import pis.data.Category;
+import pis.data.Language;
+import pis.data.ProductDescription;
+
+/**
+ * Writes chunks of the catalog import, every chunk in its own transaction.
+ */
+@RequestScoped
+public class CatalogImportManager {
+    @PersistenceContext
+    private EntityManager em;
+
+    @Inject
+    private Event<ProductChangedEvent> productChanged;
+
+    @Inject
+    private Event<ReferenceDataChangedEvent> referenceDataChanged;
+
+    /**
+     * Ids of the authors, categories and languages by their lower-cased names.
+     * They are read once at the start of the import and only grow, so rows
+     * resolve their references without queries.
+     */
+    public static class Dictionary {
+        private final Map<String, Long> authors = new HashMap<>();
+        private final Map<String, Long> categories = new HashMap<>();
+        private final Map<String, Long> languages = new HashMap<>();
+
+        /**
+         * Adds authors, categories and languages created by a committed chunk.
+         */
+        public void add(ChunkResult chunk) {
+            authors.putAll(chunk.added.authors);
+            categories.putAll(chunk.added.categories);
+            languages.putAll(chunk.added.languages);
+        }
+    }
+
+    /**
+     * Result of a written chunk.
+     */
+    public static class ChunkResult {
+        private int created;
+        private int updated;
+        /** Authors, categories and languages created by the chunk. */
+        private final Dictionary added = new Dictionary();
+
+        public int getCreated() {
+            return created;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+    }
+
+    /**
+     * Reads ids of all authors, categories and languages.
+     */
+    public Dictionary loadDictionary() {
+        Dictionary d = new Dictionary();
+        for (Object[] row : em.createQuery("SELECT a.id, a.firstName, a.lastName FROM BookAuthor a", Object[].class)
+                .getResultList()) {
+            d.authors.putIfAbsent(authorKey((String) row[1], (String) row[2]), (Long) row[0]);
+        }
+        for (Object[] row : em.createQuery("SELECT c.id, c.name FROM Category c", Object[].class).getResultList()) {
+            d.categories.putIfAbsent(key((String) row[1]), (Long) row[0]);
+        }
+        for (Object[] row : em.createQuery("SELECT l.id, l.language FROM Language l", Object[].class)
+                .getResultList()) {
+            d.languages.putIfAbsent(key((String) row[1]), (Long) row[0]);
+        }
+        return d;
+    }
+
+    /**
+     * Creates products of the rows, products with an existing ISBN are updated.
+     * Missing authors, categories and languages are created, the known ones are
+     * read by one IN query per type, so the products passed to the change events
+     * have them loaded. New products are persisted, so EclipseLink sends them in
+     * JDBC batches with pooled ids.
+     * 
+     * @param rows       Parsed rows, every ISBN at most once.
+     * @param dictionary Known authors, categories and languages, extended by the
+     *                   created ones after the chunk was committed.
+     * @return Numbers of created and updated products.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public ChunkResult write(List<ImportRow> rows, Dictionary dictionary) {
+        ChunkResult result = new ChunkResult();
+        Map<String, BookAuthor> newAuthors = new HashMap<>();
+        Map<String, Category> newCategories = new HashMap<>();
+        Map<String, Language> newLanguages = new HashMap<>();
+
+        Map<String, ProductDescription> existing = new HashMap<>();
+        for (ProductDescription p : em.createQuery("SELECT p FROM ProductDescription p WHERE p.ISBN IN :isbns",
+                ProductDescription.class)
+                .setParameter("isbns", rows.stream().map(ImportRow::getIsbn).toList())
+                .setHint("eclipselink.batch.type", "IN")
+                .setHint("eclipselink.batch", "p.categories")
+                .getResultList()) {
+            existing.putIfAbsent(p.getISBN(), p);
+        }
+
+        Set<Long> authorIds = new HashSet<>();
+        Set<Long> languageIds = new HashSet<>();
+        Set<Long> categoryIds = new HashSet<>();
+        for (ImportRow row : rows) {
+            if (row.getAuthorFirstName() != null || row.getAuthorLastName() != null) {
+                addKnown(authorIds, dictionary.authors, authorKey(row.getAuthorFirstName(), row.getAuthorLastName()));
+            }
+            if (row.getLanguage() != null) {
+                addKnown(languageIds, dictionary.languages, key(row.getLanguage()));
+            }
+            for (String name : row.getCategories()) {
+                addKnown(categoryIds, dictionary.categories, key(name));
+            }
+        }
+        Map<Long, BookAuthor> authors = findReferences(BookAuthor.class, authorIds);
+        Map<Long, Language> languages = findReferences(Language.class, languageIds);
+        Map<Long, Category> categoriesById = findReferences(Category.class, categoryIds);
+
+        List<ProductDescription> written = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            BookAuthor author = null;
+            if (row.getAuthorFirstName() != null || row.getAuthorLastName() != null) {
+                String key = authorKey(row.getAuthorFirstName(), row.getAuthorLastName());
+                // Unknown, or deleted since the dictionary was read, is created
+                author = authors.get(dictionary.authors.get(key));
+                if (author == null) {
+                    author = newAuthors.computeIfAbsent(key, k -> persist(
+                            new BookAuthor(row.getAuthorFirstName(), row.getAuthorLastName())));
+                }
+            }
+            Language language = null;
+            if (row.getLanguage() != null) {
+                String key = key(row.getLanguage());
+                language = languages.get(dictionary.languages.get(key));
+                if (language == null) {
+                    language = newLanguages.computeIfAbsent(key, k -> persist(new Language(row.getLanguage())));
+                }
+            }
+            List<Category> categories = new ArrayList<>();
+            for (String name : row.getCategories()) {
+                String key = key(name);
+                Category c = categoriesById.get(dictionary.categories.get(key));
+                if (c == null) {
+                    c = newCategories.computeIfAbsent(key, k -> persist(new Category(name)));
+                }
+                if (!categories.contains(c)) {
+                    categories.add(c);
+                }
+            }
+
+            ProductDescription p = existing.get(row.getIsbn());
+            if (p == null) {
+                p = new ProductDescription(row.getPrice(), row.getName(), row.getDescription(), row.getIsbn(),
+                        row.getPages(), author, categories, language, null, row.getImage(), row.getQuantity());
+                if (p.getImage() == null) {
+                    p.setDefaulImage();
+                }
+                em.persist(p);
+                result.created++;
+            } else {
+                p.setName(row.getName());
+                p.setPrice(row.getPrice());
+                p.setPages(row.getPages());
+                p.setAvailableQuantity(row.getQuantity());
+                if (row.getDescription() != null) {
+                    p.setDescription(row.getDescription());
+                }
+                if (row.getImage() != null) {
+                    p.setImage(row.getImage());
+                }
+                if (author != null) {
+                    p.setAuthor(author);
+                }
+                if (language != null) {
+                    p.setLanguage(language);
+                }
+                if (!row.getCategories().isEmpty()) {
+                    p.clearCategories();
+                    for (Category c : categories) {
+                        p.addCategory(c);
+                    }
+                }
+                result.updated++;
+            }
+            written.add(p);
+        }
+        em.flush();
+
+        // Ids are assigned on persist
+        newAuthors.forEach((key, a) -> result.added.authors.put(key, a.getId()));
+        newCategories.forEach((key, c) -> result.added.categories.put(key, c.getId()));
+        newLanguages.forEach((key, l) -> result.added.languages.put(key, l.getId()));
+        for (ProductDescription p : written) {
+            productChanged.fire(new ProductChangedEvent(p.getId(), p));
+        }
+        if (!newAuthors.isEmpty()) {
+            referenceDataChanged.fire(new ReferenceDataChangedEvent(BookAuthor.class));
+        }
+        if (!newCategories.isEmpty()) {
+            referenceDataChanged.fire(new ReferenceDataChangedEvent(Category.class));
+        }
+        if (!newLanguages.isEmpty()) {
+            referenceDataChanged.fire(new ReferenceDataChangedEvent(Language.class));
+        }
+        return result;
+    }
+
+    private static void addKnown(Set<Long> ids, Map<String, Long> known, String key) {
+        Long id = known.get(key);
+        if (id != null) {
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Returns entities of the type with given ids by one IN query.
+     */
+    private <T> Map<Long, T> findReferences(Class<T> type, Collection<Long> ids) {
+        Map<Long, T> found = new HashMap<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+        // Entity names are the class names
+        for (Object[] row : em.createQuery("SELECT e.id, e FROM " + type.getSimpleName() + " e WHERE e.id IN :ids",
+                Object[].class).setParameter("ids", ids).getResultList()) {
+            found.put(((Number) row[0]).longValue(), type.cast(row[1]));
+        }
+        return found;
+    }
+
+    private <T> T persist(T entity) {
+        em.persist(entity);
+        return entity;
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String authorKey(String firstName, String lastName) {
+        return key(firstName == null ? "" : firstName) + "\n" + key(lastName == null ? "" : lastName);
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * PIS Projekt 2024
+ * CatalogImporter.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import pis.api.dto.ImportReportDTO;
+
+/**
+ * Streaming import of the catalog.
+ * The input is read record by record, chunks of CHUNK_SIZE records are parsed
+ * in parallel and written in order, every chunk in its own transaction.
+ * At most PARALLELISM chunks are parsed at once, so the memory does not depend
+ * on the size of the input. Only one import runs at a time, its progress can be
+ * read while it runs.
+ */
+@ApplicationScoped
+public class CatalogImporter {
+    /** Number of rows written in one transaction. */
+    private static final int CHUNK_SIZE = 1000;
+    private static final int PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+    /** Maximal number of row errors kept in the report. */
+    private static final int MAX_ERRORS = 100;
+    /** Progress is logged every LOG_EVERY rows. */
+    private static final long LOG_EVERY = 100000;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Inject
+    private CatalogImportManager importManager;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile ImportReportDTO report;
+
+    /**
+     * Progress of the running import.
+     */
+    private static class Progress {
+        private final String format;
+        private final long startedAt = System.currentTimeMillis();
+        private long rows;
+        private long created;
+        private long updated;
+        private long duplicates;
+        private long failed;
+        private final List<String> errors = new ArrayList<>();
+
+        private Progress(ImportFormat format) {
+            this.format = format.name();
+        }
+
+        private void error(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(line + ": " + message);
+            }
+        }
+
+        private ImportReportDTO report(boolean running) {
+            return new ImportReportDTO(running, format, rows, created, updated, duplicates, failed,
+                    List.copyOf(errors), System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    /**
+     * Returns progress of the running import or the result of the last one, null if there was none.
+     */
+    public ImportReportDTO getReport() {
+        return report;
+    }
+
+    /**
+     * Imports the catalog, products with an existing ISBN are updated.
+     * 
+     * @param in     Input stream of the catalog.
+     * @param format Format of the input.
+     * @return Result of the import, null if another import is running.
+     */
+    public ImportReportDTO importCatalog(InputStream in, ImportFormat format) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        Progress progress = new Progress(format);
+        Deque<Future<List<ImportRow>>> parsing = new ArrayDeque<>();
+        try {
+            report = progress.report(true);
+            CatalogImportManager.Dictionary dictionary = importManager.loadDictionary();
+            ImportParser parser = new ImportParser(in, format);
+            List<ImportParser.Record> chunk = new ArrayList<>(CHUNK_SIZE);
+            ImportParser.Record record;
+            while ((record = parser.next()) != null) {
+                chunk.add(record);
+                if (chunk.size() == CHUNK_SIZE) {
+                    parsing.add(parse(parser, chunk));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                    if (parsing.size() >= PARALLELISM) {
+                        write(parsing.poll().get(), dictionary, progress);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                parsing.add(parse(parser, chunk));
+            }
+            while (!parsing.isEmpty()) {
+                write(parsing.poll().get(), dictionary, progress);
+            }
+        } catch (IOException | ExecutionException e) {
+            System.out.println(e);
+            progress.error(progress.rows, "Import stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.error(progress.rows, "Import interrupted");
+        } finally {
+            for (Future<List<ImportRow>> f : parsing) {
+                f.cancel(true);
+            }
+            report = progress.report(false);
+            running.set(false);
+        }
+        System.out.println("Catalog import finished: " + report.getRows() + " rows, " + report.getCreated()
+                + " created, " + report.getUpdated() + " updated, " + report.getFailed() + " failed in "
+                + report.getElapsedMillis() + " ms");
+        return report;
+    }
+
+    private Future<List<ImportRow>> parse(ImportParser parser, List<ImportParser.Record> records) {
+        return executor.submit(() -> {
+            List<ImportRow> rows = new ArrayList<>(records.size());
+            for (ImportParser.Record r : records) {
+                rows.add(parser.parse(r));
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Writes the parsed chunk. If the chunk fails, its rows are written one by one,
+     * so only the bad rows are lost and reported.
+     */
+    private void write(List<ImportRow> rows, CatalogImportManager.Dictionary dictionary, Progress progress) {
+        long before = progress.rows;
+        progress.rows += rows.size();
+        // The last row with the same ISBN wins
+        Map<String, ImportRow> unique = new LinkedHashMap<>();
+        for (ImportRow row : rows) {
+            if (row.getError() != null) {
+                progress.error(row.getLine(), row.getError());
+            } else if (unique.put(row.getIsbn(), row) != null) {
+                progress.duplicates++;
+            }
+        }
+        if (!unique.isEmpty()) {
+            try {
+                count(importManager.write(new ArrayList<>(unique.values()), dictionary), dictionary, progress);
+            } catch (RuntimeException e) {
+                for (ImportRow row : unique.values()) {
+                    try {
+                        count(importManager.write(List.of(row), dictionary), dictionary, progress);
+                    } catch (RuntimeException rowError) {
+                        progress.error(row.getLine(), rootCause(rowError).getMessage());
+                    }
+                }
+            }
+        }
+        if (before / LOG_EVERY != progress.rows / LOG_EVERY) {
+            System.out.println("Catalog import: " + progress.rows + " rows, " + progress.failed + " failed");
+        }
+        report = progress.report(true);
+    }
+
+    private static void count(CatalogImportManager.ChunkResult result, CatalogImportManager.Dictionary dictionary,
+            Progress progress) {
+        dictionary.add(result);
+        progress.created += result.getCreated();
+        progress.updated += result.getUpdated();
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null && e.getCause() != e) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
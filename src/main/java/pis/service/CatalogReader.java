@@ -0,0 +1,93 @@
+/**
+ * PIS Projekt 2024
+ * CatalogReader.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import pis.data.BookAuthor;
+import pis.data.Category;
+import pis.data.Language;
+import pis.data.ProductDescription;
+
+/**
+ * Reads the whole catalog in batches, used to build the in-memory indexes.
+ * Every batch is read in its own persistence context, so the memory used
+ * does not grow with the size of the catalog.
+ */
+@ApplicationScoped
+public class CatalogReader {
+    /** Number of products read by one query. */
+    private static final int BATCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Calls the consumer for every product in the catalog, ordered by id.
+     * 
+     * @param consumer Consumer of the products.
+     */
+    public void forEachProduct(Consumer<ProductDescription> consumer) {
+        // Reading the whole catalog is not a cost of the request which triggered it
+        QueryCounter.uncounted(() -> readAll("", null, consumer));
+    }
+
+    /**
+     * Calls the consumer for every product referencing the author, category or
+     * language, ordered by id. Used to index the products again when it was renamed.
+     * 
+     * @param type     BookAuthor.class, Category.class or Language.class.
+     * @param id       Id of the referenced entity.
+     * @param consumer Consumer of the products.
+     */
+    public void forEachProductReferencing(Class<?> type, long id, Consumer<ProductDescription> consumer) {
+        String condition;
+        if (type == BookAuthor.class) {
+            condition = " AND p.author.id = :refId";
+        } else if (type == Category.class) {
+            condition = " AND EXISTS (SELECT c FROM ProductDescription p2 JOIN p2.categories c"
+                    + " WHERE p2 = p AND c.id = :refId)";
+        } else if (type == Language.class) {
+            condition = " AND p.language.id = :refId";
+        } else {
+            throw new IllegalArgumentException("Products do not reference " + type.getSimpleName());
+        }
+        QueryCounter.uncounted(() -> readAll(condition, id, consumer));
+    }
+
+    private void readAll(String condition, Long refId, Consumer<ProductDescription> consumer) {
+        long lastId = -1;
+        while (true) {
+            TypedQuery<ProductDescription> q = em
+                    .createQuery("SELECT p FROM ProductDescription p WHERE p.id > :lastId" + condition
+                            + " ORDER BY p.id", ProductDescription.class)
+                    .setParameter("lastId", lastId)
+                    // EclipseLink loads the relations of the whole batch with one query each
+                    .setHint("eclipselink.batch", "p.author")
+                    .setHint("eclipselink.batch", "p.language")
+                    .setHint("eclipselink.batch", "p.discount")
+                    .setHint("eclipselink.batch", "p.categories")
+                    .setMaxResults(BATCH_SIZE);
+            if (refId != null) {
+                q.setParameter("refId", refId);
+            }
+            List<ProductDescription> batch = q.getResultList();
+            for (ProductDescription p : batch) {
+                consumer.accept(p);
+            }
+            if (batch.size() < BATCH_SIZE) {
+                return;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * PIS Projekt 2024
+ * CatalogVersion.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.interceptor.Interceptor;
+
+/**
+ * Monotonic version of the catalog, incremented after every committed change
+ * of products, their prices or the reference data. Values computed from the
+ * catalog remember the version they were computed at and are stale once it
+ * changed. Stock changes do not count, as no cached value depends on them and
+ * they come with every order.
+ * The version is incremented after all the other observers of the change
+ * (default priority) queued it into SearchIndex, CatalogColumns and the other
+ * indexes. A value computed at the new version so reads them with the change,
+ * which they apply at the start of every read.
+ */
+@ApplicationScoped
+public class CatalogVersion {
+    /** Notified after the observers with the default priority (APPLICATION + 500). */
+    private static final int AFTER_INDEXES = Interceptor.Priority.APPLICATION + 1000;
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Returns the current version, read it before computing a value from the catalog.
+     */
+    public long get() {
+        return version.get();
+    }
+
+    public void onProductChanged(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) @Priority(AFTER_INDEXES) ProductChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    public void onPricesChanged(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) @Priority(AFTER_INDEXES) PricesChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    public void onReferenceDataChanged(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) @Priority(AFTER_INDEXES) ReferenceDataChangedEvent event) {
+        version.incrementAndGet();
+    }
+}
@@ -10,6 +10,8 @@ import java.util.List;
 
 import pis.data.Category;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.persistence.Query;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -23,11 +25,18 @@ public class CategoryManager {
     @PersistenceContext
     private EntityManager em;
 
+    @Inject
+    private ReferenceDataCache referenceDataCache;
+
+    @Inject
+    private Event<ReferenceDataChangedEvent> referenceDataChanged;
+
     /**
      * Returns list of all categories.
      */
     public List<Category> findAll() {
-        return em.createNamedQuery("Category.findAll", Category.class).getResultList();
+        return referenceDataCache.findAll(Category.class,
+                () -> em.createNamedQuery("Category.findAll", Category.class).getResultList());
     }
 
     /**
@@ -64,7 +73,9 @@ public class CategoryManager {
      */
     @Transactional
     public Category save(Category c) {
-        return em.merge(c);
+        Category saved = em.merge(c);
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Category.class, saved.getId()));
+        return saved;
     }
 
     /**
@@ -76,5 +87,6 @@ public class CategoryManager {
     public void delete(Category c) {
         Category new_c = em.merge(c);
         em.remove(new_c);
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Category.class, new_c.getId()));
     }
 }
@@ -0,0 +1,29 @@
+/**
+ * PIS Projekt 2024
+ * CheckoutException.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+/**
+ * Thrown when an order can not be placed, the whole checkout is rolled back.
+ */
+public class CheckoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        PRODUCT_NOT_FOUND, OUT_OF_STOCK
+    }
+
+    private final Reason reason;
+
+    public CheckoutException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
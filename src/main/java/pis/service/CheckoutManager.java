@@ -0,0 +1,128 @@
+/**
+ * PIS Projekt 2024
+ * CheckoutManager.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import pis.api.dto.CreateOrderItemDTO;
+import pis.data.HotSale;
+import pis.data.Order;
+import pis.data.OrderItem;
+import pis.data.ProductDescription;
+import pis.data.RegisteredUser;
+
+/**
+ * Places orders. The whole checkout (stock of all the products, the order with
+ * its items and the link to the user) is written in one transaction, so either
+ * everything is saved or nothing is.
+ */
+@RequestScoped
+public class CheckoutManager {
+    @PersistenceContext
+    private EntityManager em;
+
+    @Inject
+    private Event<StockChangedEvent> stockChanged;
+
+    /**
+     * Places the order.
+     * Stock of all the products is decreased by one conditional UPDATE, which
+     * changes nothing unless every product has enough pieces. The database
+     * checks and decreases the stock in one step, so concurrent buyers can not
+     * both buy the last piece.
+     * Stock of hot products was already reserved in memory (see HotInventory),
+     * so it is not changed here, their sold pieces are stored as HotSale rows
+     * and written to the stock later.
+     * 
+     * @param order       New order without items.
+     * @param lines       Ordered products and their amounts (positive).
+     * @param userId      Id of the logged in user who ordered, null for anonymous order.
+     * @param reservedIds Ids of the products reserved in HotInventory.
+     * @return Saved order.
+     * @throws CheckoutException If some product does not exist or has not enough pieces.
+     */
+    @Transactional
+    public Order placeOrder(Order order, List<CreateOrderItemDTO> lines, Long userId, Collection<Long> reservedIds) {
+        Map<Long, Integer> amounts = new LinkedHashMap<>();
+        for (CreateOrderItemDTO line : lines) {
+            amounts.merge(line.getId(), line.getAmount(), Integer::sum);
+        }
+
+        Map<Long, ProductDescription> products = new HashMap<>();
+        for (ProductDescription p : em
+                .createQuery("SELECT p FROM ProductDescription p WHERE p.id IN :ids", ProductDescription.class)
+                .setParameter("ids", amounts.keySet())
+                // Order items copy author and categories of the products
+                .setHint("eclipselink.batch.type", "IN")
+                .setHint("eclipselink.batch", "p.author")
+                .setHint("eclipselink.batch", "p.categories")
+                .setHint("eclipselink.batch", "p.discount")
+                .getResultList()) {
+            products.put(p.getId(), p);
+        }
+        if (products.size() != amounts.size()) {
+            throw new CheckoutException(CheckoutException.Reason.PRODUCT_NOT_FOUND, "Error: Product not found");
+        }
+
+        Map<Long, Integer> taken = new LinkedHashMap<>(amounts);
+        taken.keySet().removeAll(reservedIds);
+        if (!taken.isEmpty() && decreaseStock(taken) != taken.size()) {
+            throw new CheckoutException(CheckoutException.Reason.OUT_OF_STOCK, "Error: Not enough items in stock");
+        }
+
+        for (CreateOrderItemDTO line : lines) {
+            order.addOrderItem(new OrderItem(line.getAmount(), products.get(line.getId())));
+        }
+        Order saved = em.merge(order);
+        // Stock of hot products is decreased later, their sold pieces are stored with the order
+        for (Long id : reservedIds) {
+            em.persist(new HotSale(id, amounts.get(id)));
+        }
+        if (userId != null) {
+            RegisteredUser user = em.find(RegisteredUser.class, userId);
+            if (user != null) {
+                user.addOrder(saved);
+            }
+        }
+        // Order items are inserted in JDBC batches (see persistence.xml)
+        em.flush();
+        if (!taken.isEmpty()) {
+            stockChanged.fire(new StockChangedEvent(taken.keySet()));
+        }
+        return saved;
+    }
+
+    /**
+     * Decreases stock of all the products by one statement, only products with enough pieces are updated.
+     * 
+     * @param amounts Product id -> amount to take.
+     * @return Number of updated products.
+     */
+    private int decreaseStock(Map<Long, Integer> amounts) {
+        // Ids and amounts are numbers, so they can be inlined safely, and Derby
+        // does not have to infer types of parameters inside the CASE
+        StringBuilder amount = new StringBuilder("CASE p.id");
+        for (Map.Entry<Long, Integer> e : amounts.entrySet()) {
+            amount.append(" WHEN ").append(e.getKey().longValue()).append(" THEN ").append(e.getValue().intValue());
+        }
+        amount.append(" ELSE 0 END");
+        return em.createQuery("UPDATE ProductDescription p SET p.availableQuantity = p.availableQuantity - " + amount
+                + " WHERE p.id IN :ids AND p.availableQuantity >= " + amount)
+                .setParameter("ids", amounts.keySet())
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * PIS Projekt 2024
+ * CurrentUser.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.service;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import pis.data.RegisteredUser;
+
+/**
+ * User who made the current request, set by the Authentication filter.
+ * Id, email and role are known without touching the database, the whole
+ * user is loaded only when asked for (at most once per request).
+ */
+@RequestScoped
+public class CurrentUser {
+    @Inject
+    private RegisteredUserManager userManager;
+
+    private UserSnapshot snapshot;
+    private RegisteredUser user;
+
+    public void set(UserSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.user = null;
+    }
+
+    /**
+     * Returns true if the request was made by a logged in user.
+     */
+    public boolean isLoggedIn() {
+        return snapshot != null;
+    }
+
+    public long getId() {
+        return snapshot.getId();
+    }
+
+    public String getEmail() {
+        return snapshot.getEmail();
+    }
+
+    public String getRole() {
+        return snapshot.getRole();
+    }
+
+    public boolean isAdmin() {
+        return isLoggedIn() && "admin".equals(snapshot.getRole());
+    }
+
+    /**
+     * Returns the logged in user or null if nobody is logged in.
+     */
+    public RegisteredUser getUser() {
+        if (snapshot == null) {
+            return null;
+        }
+        if (user == null) {
+            user = userManager.find(snapshot.getId());
+        }
+        return user;
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * PIS Projekt 2024
+ * DiscountCampaignManager.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.transaction.Transactional;
+import pis.data.CampaignProduct;
+import pis.data.CampaignStatus;
+import pis.data.Discount;
+import pis.data.DiscountCampaign;
+import pis.data.ProductDescription;
+import pis.data.RegisteredUser;
+
+/**
+ * Business logic for discount campaigns.
+ * Starting and ending a campaign are set-based: a few statements change all
+ * the products of the campaign, however many there are, in one transaction.
+ */
+@RequestScoped
+public class DiscountCampaignManager {
+    @PersistenceContext
+    private EntityManager em;
+
+    @Inject
+    private IdGeneratorManager idGeneratorManager;
+
+    @Inject
+    private Event<PricesChangedEvent> pricesChanged;
+
+    /**
+     * Returns all campaigns, the latest first.
+     */
+    public List<DiscountCampaign> findAll() {
+        return em.createNamedQuery("DiscountCampaign.findAll", DiscountCampaign.class).getResultList();
+    }
+
+    /**
+     * Returns campaigns which did not start or end yet.
+     */
+    public List<DiscountCampaign> findPending() {
+        return em.createNamedQuery("DiscountCampaign.findPending", DiscountCampaign.class).getResultList();
+    }
+
+    public DiscountCampaign find(long id) {
+        return em.find(DiscountCampaign.class, id);
+    }
+
+    @Transactional
+    public DiscountCampaign save(DiscountCampaign c) {
+        DiscountCampaign saved = em.merge(c);
+        em.flush();
+        return saved;
+    }
+
+    /**
+     * Applies the campaign discount to its products.
+     * The products are recorded with their previous discounts by one
+     * INSERT ... SELECT, then changed by one UPDATE, and their evidence is
+     * written by two more INSERT ... SELECT statements.
+     * 
+     * @param id Id of the campaign.
+     * @return False if the campaign is not scheduled (cancelled or already started) or its window already passed.
+     */
+    @Transactional
+    public boolean start(long id) {
+        DiscountCampaign c = em.find(DiscountCampaign.class, id);
+        if (c == null || c.getStatus() != CampaignStatus.SCHEDULED) {
+            return false;
+        }
+        if (!c.getEndsAt().isAfter(LocalDateTime.now())) {
+            // Whole window passed while the application was down
+            c.setStatus(CampaignStatus.FINISHED);
+            return false;
+        }
+        em.createNativeQuery("INSERT INTO CampaignProduct (campaignId, productId, previousDiscountId, evidenceIndex)"
+                + " SELECT " + id + ", p.ID, p.discount_id, ROW_NUMBER() OVER () FROM ProductDescription p WHERE "
+                + targetCondition(c))
+                .executeUpdate();
+        Discount discount = c.getDiscount();
+        int count = em.createQuery("UPDATE ProductDescription p SET p.discount = :discount,"
+                + " p.effectivePrice = p.price * :factor"
+                + " WHERE p.id IN (SELECT cp.productId FROM CampaignProduct cp WHERE cp.campaignId = :id)")
+                .setParameter("discount", discount)
+                .setParameter("factor", (100.0 - discount.getDiscount()) / 100.0)
+                .setParameter("id", id)
+                .executeUpdate();
+        writeEvidence(c, "Discount campaign '" + c.getName() + "' started, discount " + discount.getDiscount()
+                + " %.");
+        c.setProductCount(count);
+        c.setStatus(CampaignStatus.ACTIVE);
+        pricesChanged.fire(new PricesChangedEvent(productIds(id)));
+        return true;
+    }
+
+    /**
+     * Gives the products of the campaign back their previous discounts.
+     * Products whose discount was changed during the campaign are left as they are.
+     * There is one UPDATE for every distinct previous discount. Active campaigns
+     * which started later on the same products recorded this campaign's discount
+     * as the previous one, they get the discount from before this campaign instead,
+     * so they do not bring back the discount of an ended campaign.
+     * 
+     * @param id     Id of the campaign.
+     * @param status Final status of the campaign (finished or cancelled).
+     * @return False if the campaign is not active.
+     */
+    @Transactional
+    public boolean end(long id, CampaignStatus status) {
+        DiscountCampaign c = em.find(DiscountCampaign.class, id);
+        if (c == null || c.getStatus() != CampaignStatus.ACTIVE) {
+            return false;
+        }
+        List<Long> previousDiscounts = em.createQuery(
+                "SELECT DISTINCT cp.previousDiscountId FROM CampaignProduct cp WHERE cp.campaignId = :id", Long.class)
+                .setParameter("id", id)
+                .getResultList();
+        for (Long previousId : previousDiscounts) {
+            Discount previous = previousId == null ? null : em.find(Discount.class, previousId);
+            String products = "SELECT cp.productId FROM CampaignProduct cp WHERE cp.campaignId = :id AND "
+                    + (previousId == null ? "cp.previousDiscountId IS NULL" : "cp.previousDiscountId = :previousId");
+            Query q;
+            if (previous == null) {
+                q = em.createQuery("UPDATE ProductDescription p SET p.discount = NULL, p.effectivePrice = p.price"
+                        + " WHERE p.discount = :discount AND p.id IN (" + products + ")");
+            } else {
+                q = em.createQuery("UPDATE ProductDescription p SET p.discount = :previous,"
+                        + " p.effectivePrice = p.price * :factor"
+                        + " WHERE p.discount = :discount AND p.id IN (" + products + ")")
+                        .setParameter("previous", previous)
+                        .setParameter("factor", (100.0 - previous.getDiscount()) / 100.0);
+            }
+            q.setParameter("discount", c.getDiscount()).setParameter("id", id);
+            if (previousId != null) {
+                q.setParameter("previousId", previousId);
+            }
+            q.executeUpdate();
+        }
+        em.createNativeQuery("UPDATE CampaignProduct SET previousDiscountId = (SELECT e.previousDiscountId"
+                + " FROM CampaignProduct e WHERE e.campaignId = ? AND e.productId = CampaignProduct.productId)"
+                + " WHERE previousDiscountId = ? AND campaignId IN (SELECT a.id FROM DiscountCampaign a"
+                + " WHERE a.status = 'ACTIVE' AND a.id <> ?)"
+                + " AND productId IN (SELECT e.productId FROM CampaignProduct e WHERE e.campaignId = ?)")
+                .setParameter(1, id)
+                .setParameter(2, c.getDiscount().getId())
+                .setParameter(3, id)
+                .setParameter(4, id)
+                .executeUpdate();
+        em.getEntityManagerFactory().getCache().evict(CampaignProduct.class);
+        writeEvidence(c, "Discount campaign '" + c.getName() + "' ended.");
+        c.setStatus(status);
+        pricesChanged.fire(new PricesChangedEvent(productIds(id)));
+        return true;
+    }
+
+    /**
+     * Cancels the campaign, an active campaign is ended right away.
+     * 
+     * @return False if the campaign already ended.
+     */
+    @Transactional
+    public boolean cancel(long id) {
+        DiscountCampaign c = em.find(DiscountCampaign.class, id);
+        if (c == null) {
+            return false;
+        }
+        if (c.getStatus() == CampaignStatus.ACTIVE) {
+            return end(id, CampaignStatus.CANCELLED);
+        }
+        if (c.getStatus() != CampaignStatus.SCHEDULED) {
+            return false;
+        }
+        c.setStatus(CampaignStatus.CANCELLED);
+        return true;
+    }
+
+    /**
+     * Returns SQL condition selecting the products of the campaign (p is the ProductDescription table).
+     */
+    private static String targetCondition(DiscountCampaign c) {
+        // Ids are numbers, so they can be inlined safely
+        String ids = c.getTargetIds().stream().map(String::valueOf).collect(Collectors.joining(", "));
+        switch (c.getTarget()) {
+            case CATEGORY:
+                return "p.ID IN (SELECT pc.product_id FROM ProductCategory pc WHERE pc.category_id IN (" + ids + "))";
+            case AUTHOR:
+                return "p.author_id IN (" + ids + ")";
+            case LANGUAGE:
+                return "p.language_id IN (" + ids + ")";
+            default:
+                return "p.ID IN (" + ids + ")";
+        }
+    }
+
+    /**
+     * Adds an evidence record to every product of the campaign by two INSERT ... SELECT statements.
+     * Evidence ids are taken as one block of the size of the campaign from the id
+     * generator, the id of the record of a product is given by its stored
+     * evidenceIndex, so both statements give a product the same evidence id.
+     */
+    private void writeEvidence(DiscountCampaign c, String description) {
+        Number max = (Number) em.createNativeQuery(
+                "SELECT MAX(evidenceIndex) FROM CampaignProduct WHERE campaignId = ?")
+                .setParameter(1, c.getId())
+                .getSingleResult();
+        if (max == null) {
+            return;
+        }
+        int size = max.intValue();
+        long first = idGeneratorManager.allocate("ProductDescriptionEvidence", size) - size + 1;
+        String evidenceId = "CAST(? AS BIGINT) + cp.evidenceIndex - 1";
+        String products = "CampaignProduct cp WHERE cp.campaignId = ?";
+
+        RegisteredUser user = c.getCreatedBy();
+        // Default column names of the evidence and of the join table of ProductDescription.productDescriptionEvidences
+        em.createNativeQuery("INSERT INTO ProductDescriptionEvidence (ID, CHANGEDESCRIPTION, MODIFICATIONDATE,"
+                + " REGISTEREDUSER_ID) SELECT " + evidenceId + ", CAST(? AS VARCHAR(255)), CAST(? AS TIMESTAMP), "
+                + (user == null ? "NULL" : String.valueOf(user.getId()))
+                + " FROM " + products)
+                .setParameter(1, first)
+                .setParameter(2, description)
+                .setParameter(3, java.sql.Timestamp.valueOf(LocalDateTime.now()))
+                .setParameter(4, c.getId())
+                .executeUpdate();
+        em.createNativeQuery("INSERT INTO ProductDescription_ProductDescriptionEvidence"
+                + " (ProductDescription_ID, productDescriptionEvidences_ID) SELECT cp.productId, " + evidenceId
+                + " FROM " + products)
+                .setParameter(1, first)
+                .setParameter(2, c.getId())
+                .executeUpdate();
+        // Evidence lists of the cached products were changed behind the back of JPA
+        em.getEntityManagerFactory().getCache().evict(ProductDescription.class);
+    }
+
+    private List<Long> productIds(long id) {
+        return em.createQuery("SELECT cp.productId FROM CampaignProduct cp WHERE cp.campaignId = :id", Long.class)
+                .setParameter("id", id)
+                .getResultList();
+    }
+}
@@ -10,6 +10,8 @@ import java.util.List;
 
 import pis.data.Discount;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.persistence.Query;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -23,11 +25,18 @@ public class DiscountManager {
     @PersistenceContext
     private EntityManager em;
 
+    @Inject
+    private ReferenceDataCache referenceDataCache;
+
+    @Inject
+    private Event<ReferenceDataChangedEvent> referenceDataChanged;
+
     /**
      * Returns list of all Languages.
      */
     public List<Discount> findAll() {
-        return em.createNamedQuery("Discount.findAll", Discount.class).getResultList();
+        return referenceDataCache.findAll(Discount.class,
+                () -> em.createNamedQuery("Discount.findAll", Discount.class).getResultList());
     }
 
     /**
@@ -66,7 +75,16 @@ public class DiscountManager {
      */
     @Transactional
     public Discount save(Discount d) {
-        return em.merge(d);
+        Discount saved = em.merge(d);
+        em.flush();
+        // Products store their price after the discount, all products with
+        // the discount are recomputed by one statement
+        em.createQuery("UPDATE ProductDescription p SET p.effectivePrice = p.price * :factor WHERE p.discount.id = :id")
+                .setParameter("factor", (100.0 - saved.getDiscount()) / 100.0)
+                .setParameter("id", saved.getId())
+                .executeUpdate();
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Discount.class, saved.getId()));
+        return saved;
     }
 
     /**
@@ -79,5 +97,6 @@ public class DiscountManager {
     public void delete(Discount d) {
         Discount new_d = em.merge(d);
         em.remove(new_d);
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Discount.class, new_d.getId()));
     }
 }
@@ -0,0 +1,178 @@
+/**
+ * PIS Projekt 2024
+ * ExpiringCache.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import pis.api.dto.CacheStatsDTO;
+
+/**
+ * Thread-safe cache with limited size and time to live of the entries.
+ * When full, the least recently used entry is evicted. Counts hits, misses
+ * and evictions, so the cache can be monitored.
+ */
+public class ExpiringCache<K, V> {
+    private final String name;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    /** Entries in access order, the least recently used first. */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Incremented on invalidation, so values loaded before it are not cached. */
+    private long generation = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param name      Name of the cache shown in the statistics.
+     * @param maxSize   Maximal number of entries.
+     * @param ttlMillis How long an entry is valid after it was loaded.
+     */
+    public ExpiringCache(String name, int maxSize, long ttlMillis) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the cached value, or loads it and caches it if it is missing or expired.
+     * The loader is called outside of the lock, so concurrent misses of one key
+     * may load it more than once. A value loaded while the cache was invalidated
+     * is returned but not cached, as it may be already stale.
+     * 
+     * @param key    Key of the value.
+     * @param loader Loads the value on a miss, null values are not cached.
+     * @return Cached or loaded value.
+     */
+    public V get(K key, Supplier<V> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            V value = getIfPresent(key);
+            if (value != null) {
+                return value;
+            }
+            loadGeneration = generation;
+        }
+        V value = loader.get();
+        synchronized (this) {
+            if (value != null && loadGeneration == generation) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns cached values of the keys, the missing ones are loaded at once.
+     * Same as get(), values loaded while the cache was invalidated are not cached.
+     * 
+     * @param keys   Keys of the values.
+     * @param loader Loads values of the missing keys, keys without value are left out.
+     * @return Key -> value, keys without value are left out.
+     */
+    public Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+        Map<K, V> values = new HashMap<>();
+        Set<K> missing = new LinkedHashSet<>();
+        long loadGeneration;
+        synchronized (this) {
+            for (K key : keys) {
+                V value = getIfPresent(key);
+                if (value != null) {
+                    values.put(key, value);
+                } else {
+                    missing.add(key);
+                }
+            }
+            loadGeneration = generation;
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+        Map<K, V> loaded = loader.apply(missing);
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                loaded.forEach(this::put);
+            }
+        }
+        values.putAll(loaded);
+        return values;
+    }
+
+    /**
+     * Returns the cached value or null if it is missing or expired.
+     */
+    public synchronized V getIfPresent(K key) {
+        Entry<V> e = entries.get(key);
+        if (e != null && e.expiresAt > System.currentTimeMillis()) {
+            hits++;
+            return e.value;
+        }
+        if (e != null) {
+            entries.remove(key);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Caches the value, evicting the least recently used entry when the cache is full.
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    /**
+     * Drops every entry whose value matches the predicate.
+     */
+    public synchronized void invalidateIf(Predicate<V> predicate) {
+        generation++;
+        entries.values().removeIf(e -> predicate.test(e.value));
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Returns current size and hit/miss counts of the cache.
+     */
+    public synchronized CacheStatsDTO stats() {
+        return new CacheStatsDTO(name, entries.size(), maxSize, hits, misses, evictions);
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * PIS Projekt 2024
+ * HotInventory.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.context.control.RequestContextController;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import pis.api.dto.HotItemDTO;
+
+/**
+ * Flash-sale mode: stock of hot products is held in memory.
+ * Every checkout of a hot product competes for the same database row, so for
+ * products marked as hot the stock is kept in striped counters and reserved
+ * without locks. The order stores its sold pieces as HotSale rows in its own
+ * transaction, and a background job decreases the stock by them in batches
+ * (write-behind), so no sold piece is lost when the application stops. The hot
+ * flag is stored too (HotProduct) and the products are hot again after a restart.
+ * Checkouts of hot products are admitted only up to a fixed number at once, the
+ * rest waits shortly or is refused.
+ *
+ * For every hot product it holds that the stock in the database minus the
+ * unwritten HotSale pieces equals the pieces in memory plus the pieces reserved
+ * by running checkouts. The reconciliation checks it against the database.
+ */
+@ApplicationScoped
+public class HotInventory {
+    /** Number of counters the stock of one product is split into. */
+    private static final int STRIPES = 16;
+    /** How often sold pieces are written to the database. */
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    /** Maximal number of checkouts of hot products running at once. */
+    private static final int MAX_CONCURRENT_CHECKOUTS = 64;
+    /** How long a checkout waits to be admitted. */
+    private static final long ADMISSION_TIMEOUT_MILLIS = 2000;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    @Inject
+    private Instance<HotInventoryManager> hotManager;
+
+    @Inject
+    private Instance<RequestContextController> requestContext;
+
+    private final Map<Long, Item> items = new ConcurrentHashMap<>();
+    private final Semaphore admission = new Semaphore(MAX_CONCURRENT_CHECKOUTS, true);
+    /**
+     * Held (shared) by every checkout from its reservation until it finished, and
+     * exclusively while a product becomes hot, so no checkout which decided to
+     * decrease the stock in the database is still running when the stock is read.
+     */
+    private final ReentrantReadWriteLock switching = new ReentrantReadWriteLock();
+    /** Products with inconsistent counters found by the last reconciliation. */
+    private final Map<Long, Long> suspicious = new ConcurrentHashMap<>();
+
+    /**
+     * Stock of one hot product.
+     */
+    private static class Item {
+        private final long productId;
+        private final AtomicLongArray stripes = new AtomicLongArray(STRIPES);
+        /** Pieces taken by checkouts which did not finish yet. */
+        private final LongAdder reserved = new LongAdder();
+        /** Pieces sold but not written to the stock yet (the HotSale rows of the product). */
+        private final AtomicLong pending = new AtomicLong();
+        /** Pieces sold since the product became hot. */
+        private final LongAdder sold = new LongAdder();
+        /** False once the product stops being hot, then it only waits for the pending pieces. */
+        private volatile boolean active = true;
+
+        private Item(long productId) {
+            this.productId = productId;
+        }
+
+        private void put(long amount) {
+            // Split evenly, so checkouts on different stripes do not run out early
+            long part = amount / STRIPES;
+            for (int i = 0; i < STRIPES; i++) {
+                stripes.addAndGet(i, part + (i < amount % STRIPES ? 1 : 0));
+            }
+        }
+
+        private long available() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += stripes.get(i);
+            }
+            return sum;
+        }
+
+        /**
+         * Takes the amount from the stripes, starting at a random one.
+         * 
+         * @return True if there was enough pieces, otherwise nothing is taken.
+         */
+        private boolean take(long amount) {
+            int start = ThreadLocalRandom.current().nextInt(STRIPES);
+            long[] taken = new long[STRIPES];
+            long missing = amount;
+            for (int i = 0; i < STRIPES && missing > 0; i++) {
+                int stripe = (start + i) % STRIPES;
+                while (true) {
+                    long value = stripes.get(stripe);
+                    long part = Math.min(value, missing);
+                    if (part == 0) {
+                        break;
+                    }
+                    if (stripes.compareAndSet(stripe, value, value - part)) {
+                        taken[stripe] += part;
+                        missing -= part;
+                        break;
+                    }
+                }
+            }
+            if (missing == 0) {
+                return true;
+            }
+            for (int i = 0; i < STRIPES; i++) {
+                if (taken[i] > 0) {
+                    stripes.addAndGet(i, taken[i]);
+                }
+            }
+            return false;
+        }
+
+        private long drain() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += stripes.getAndSet(i, 0);
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Pieces of hot products taken by one checkout.
+     * Has to be either committed (the order was saved) or cancelled.
+     */
+    public class Reservation {
+        private final Map<Item, Long> taken = new HashMap<>();
+        private boolean finished = false;
+
+        private Reservation() {
+            switching.readLock().lock();
+        }
+
+        /**
+         * Returns ids of the reserved products, their stock must not be changed in the database by the checkout.
+         */
+        public List<Long> getProductIds() {
+            return taken.keySet().stream().map(i -> i.productId).toList();
+        }
+
+        /**
+         * The order was saved, reserved pieces are sold and will be written to the stock.
+         */
+        public void commit() {
+            for (Map.Entry<Item, Long> e : taken.entrySet()) {
+                Item item = e.getKey();
+                item.pending.addAndGet(e.getValue());
+                item.sold.add(e.getValue());
+                item.reserved.add(-e.getValue());
+            }
+            taken.clear();
+            finish();
+        }
+
+        /**
+         * The order failed, reserved pieces are returned.
+         */
+        public void cancel() {
+            for (Map.Entry<Item, Long> e : taken.entrySet()) {
+                Item item = e.getKey();
+                if (item.active) {
+                    item.put(e.getValue());
+                }
+                item.reserved.add(-e.getValue());
+            }
+            taken.clear();
+            finish();
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                switching.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Makes the stored hot products hot again and starts writing sold pieces to the database.
+     */
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        List<Long> hot = new ArrayList<>();
+        inRequest(() -> hot.addAll(hotManager.get().findHot()));
+        for (Long productId : hot) {
+            enable(productId);
+        }
+        executor.scheduleWithFixedDelay(this::flushAndReconcile, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes everything sold before the application stops.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushAndReconcile();
+    }
+
+    /**
+     * Returns true if the product is hot (its stock is held in memory).
+     */
+    public boolean isHot(long productId) {
+        return items.containsKey(productId);
+    }
+
+    /**
+     * Returns pieces of the hot product which can be bought, null if the product is not hot.
+     */
+    public Long getAvailable(long productId) {
+        Item item = items.get(productId);
+        if (item == null) {
+            return null;
+        }
+        return item.active ? item.available() : 0L;
+    }
+
+    /**
+     * Makes the product hot, its current stock is moved to memory.
+     * Running checkouts are waited for and new ones wait until the stock is read,
+     * so no checkout decreases the stock in the database after it was read.
+     * A product which is being switched back to normal mode is made active again.
+     * 
+     * @param productId Id of the product.
+     * @return False if the product does not exist.
+     */
+    public boolean enable(long productId) {
+        switching.writeLock().lock();
+        try {
+            Item existing = items.get(productId);
+            if (existing != null && existing.active) {
+                return true;
+            }
+            List<HotInventoryManager.HotStock> stock = new ArrayList<>();
+            if (!inRequest(() -> stock.add(hotManager.get().startHot(productId))) || stock.get(0) == null) {
+                return false;
+            }
+            Item item = existing != null ? existing : new Item(productId);
+            // No checkout is running, nothing is reserved
+            item.drain();
+            item.pending.set(stock.get(0).getUnwritten());
+            item.put(Math.max(0, stock.get(0).getQuantity() - stock.get(0).getUnwritten()));
+            item.active = true;
+            items.put(productId, item);
+            return true;
+        } finally {
+            switching.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the product being hot. Its stock is taken from memory at once, the
+     * product then looks sold out until the sold pieces are written to the
+     * database (at most FLUSH_INTERVAL_MILLIS), then it is removed.
+     */
+    public void disable(long productId) {
+        Item item = items.get(productId);
+        if (item != null) {
+            item.active = false;
+            item.drain();
+        }
+        inRequest(() -> hotManager.get().stopHot(productId));
+    }
+
+    /**
+     * Waits until the checkout can run.
+     * 
+     * @return False if too many checkouts are running, the checkout should be refused.
+     */
+    public boolean admit() {
+        try {
+            return admission.tryAcquire(ADMISSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Finishes a checkout admitted by admit().
+     */
+    public void leave() {
+        admission.release();
+    }
+
+    /**
+     * Reserves pieces of the hot products of the order.
+     * 
+     * @param amounts Ordered products and amounts, products that are not hot are skipped.
+     * @return Reservation (empty if no product is hot) or null if some hot product has not enough pieces.
+     */
+    public Reservation reserve(Map<Long, Integer> amounts) {
+        // Waits while a product is becoming hot
+        Reservation reservation = new Reservation();
+        for (Map.Entry<Long, Integer> e : amounts.entrySet()) {
+            Item item = items.get(e.getKey());
+            if (item == null) {
+                continue;
+            }
+            item.reserved.add(e.getValue());
+            if (!item.active || !item.take(e.getValue())) {
+                item.reserved.add(-e.getValue());
+                reservation.cancel();
+                return null;
+            }
+            reservation.taken.put(item, (long) e.getValue());
+        }
+        return reservation;
+    }
+
+    /**
+     * Stock was changed by an employee, the stock in memory follows the database.
+     */
+    public void onProductChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangedEvent event) {
+        Item item = items.get(event.getId());
+        if (item == null || !item.active) {
+            return;
+        }
+        if (event.isDeleted()) {
+            disable(event.getId());
+            return;
+        }
+        // Saved quantity does not contain pieces sold but not written yet
+        long target = event.getProduct().getAvailableQuantity() - item.pending.get() - item.reserved.sum();
+        long difference = target - item.available();
+        if (difference > 0) {
+            item.put(difference);
+        } else if (difference < 0) {
+            item.take(Math.min(-difference, item.available()));
+        }
+    }
+
+    /**
+     * Returns the state of every hot product and whether its counters match the
+     * database: the stock and the unwritten sales committed with the orders.
+     */
+    public List<HotItemDTO> reconcile() {
+        List<HotItemDTO> report = new ArrayList<>();
+        inRequest(() -> {
+            List<Long> ids = new ArrayList<>(items.keySet());
+            Map<Long, Long> stock = hotManager.get().stock(ids);
+            Map<Long, Long> unwritten = hotManager.get().unwritten(ids);
+            for (Long id : ids) {
+                Item item = items.get(id);
+                if (item == null) {
+                    continue;
+                }
+                report.add(new HotItemDTO(id, item.active, item.available(), item.reserved.sum(),
+                        unwritten.getOrDefault(id, 0L), item.sold.sum(), stock.getOrDefault(id, 0L)));
+            }
+        });
+        return report;
+    }
+
+    /**
+     * Writes sold pieces to the stock and checks the counters.
+     * All committed sales are written, also those left from before a restart.
+     */
+    private void flushAndReconcile() {
+        Map<Long, Long> written = new HashMap<>();
+        if (!inRequest(() -> written.putAll(hotManager.get().writeSales()))) {
+            // Written next time
+            return;
+        }
+        written.forEach((id, amount) -> {
+            Item item = items.get(id);
+            if (item != null) {
+                item.pending.addAndGet(-amount);
+            }
+        });
+        items.values().removeIf(i -> !i.active && i.reserved.sum() == 0 && i.pending.get() <= 0);
+
+        // Running checkouts move pieces between the counters, so only a difference
+        // found twice in a row is reported
+        for (HotItemDTO item : reconcile()) {
+            long difference = item.getDifference();
+            Long previous = suspicious.remove(item.getProductId());
+            if (difference == 0) {
+                continue;
+            }
+            if (previous != null && previous == difference) {
+                System.out.println("Hot product " + item.getProductId() + " stock differs from the database by "
+                        + difference);
+            }
+            suspicious.put(item.getProductId(), difference);
+        }
+    }
+
+    /**
+     * Runs the task with an active request context, needed by the request scoped managers.
+     * 
+     * @return False if the task failed.
+     */
+    private boolean inRequest(Runnable task) {
+        RequestContextController controller = requestContext.get();
+        boolean activated = controller.activate();
+        try {
+            task.run();
+            return true;
+        } catch (Exception e) {
+            System.out.println(e);
+            return false;
+        } finally {
+            if (activated) {
+                controller.deactivate();
+            }
+        }
+    }
+}
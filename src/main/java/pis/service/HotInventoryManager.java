@@ -0,0 +1,179 @@
+/**
+ * PIS Projekt 2024
+ * HotInventoryManager.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import pis.data.HotProduct;
+import pis.data.HotSale;
+import pis.data.ProductDescription;
+
+/**
+ * Database part of the flash-sale mode (see HotInventory): the hot flag of the
+ * products and the sold pieces whose stock was not decreased yet.
+ */
+@RequestScoped
+public class HotInventoryManager {
+    /** Number of sale rows deleted by one statement. */
+    private static final int DELETE_CHUNK = 1000;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Inject
+    private Event<StockChangedEvent> stockChanged;
+
+    /**
+     * Stock of a product at the moment it became hot.
+     */
+    public static class HotStock {
+        private final long quantity;
+        private final long unwritten;
+
+        private HotStock(long quantity, long unwritten) {
+            this.quantity = quantity;
+            this.unwritten = unwritten;
+        }
+
+        /** Stock in the database. */
+        public long getQuantity() {
+            return quantity;
+        }
+
+        /** Sold pieces not written to the stock yet. */
+        public long getUnwritten() {
+            return unwritten;
+        }
+    }
+
+    /**
+     * Marks the product as hot and reads its stock.
+     * The product row is locked and read from the database, not from the cache,
+     * and the unwritten sales are read in the same transaction, so writing the
+     * sales at the same time can not move pieces between the two numbers.
+     *
+     * @param productId Id of the product.
+     * @return Stock of the product, null if the product does not exist.
+     */
+    @Transactional
+    public HotStock startHot(long productId) {
+        ProductDescription product = em.find(ProductDescription.class, productId, LockModeType.PESSIMISTIC_WRITE,
+                Map.of("jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS));
+        if (product == null) {
+            return null;
+        }
+        if (em.find(HotProduct.class, productId) == null) {
+            em.persist(new HotProduct(productId));
+        }
+        return new HotStock(product.getAvailableQuantity(),
+                unwritten(List.of(productId)).getOrDefault(productId, 0L));
+    }
+
+    /**
+     * Removes the hot flag of the product, its unwritten sales are still written.
+     */
+    @Transactional
+    public void stopHot(long productId) {
+        HotProduct hot = em.find(HotProduct.class, productId);
+        if (hot != null) {
+            em.remove(hot);
+        }
+    }
+
+    /**
+     * Returns ids of the products marked as hot.
+     */
+    public List<Long> findHot() {
+        return em.createNamedQuery("HotProduct.findAllIds", Long.class).getResultList();
+    }
+
+    /**
+     * Decreases the stock by all committed sales of hot products and deletes them,
+     * both in one transaction.
+     *
+     * @return Product id -> written pieces.
+     */
+    @Transactional
+    public Map<Long, Long> writeSales() {
+        List<HotSale> sales = em.createQuery("SELECT s FROM HotSale s", HotSale.class).getResultList();
+        if (sales.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Long> amounts = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (HotSale sale : sales) {
+            amounts.merge(sale.getProductId(), (long) sale.getQuantity(), Long::sum);
+            ids.add(sale.getId());
+        }
+        for (Map.Entry<Long, Long> e : amounts.entrySet()) {
+            em.createQuery("UPDATE ProductDescription p SET p.availableQuantity = p.availableQuantity - :amount"
+                    + " WHERE p.id = :id")
+                    .setParameter("amount", e.getValue().intValue())
+                    .setParameter("id", e.getKey())
+                    .executeUpdate();
+        }
+        for (int from = 0; from < ids.size(); from += DELETE_CHUNK) {
+            em.createQuery("DELETE FROM HotSale s WHERE s.id IN :ids")
+                    .setParameter("ids", ids.subList(from, Math.min(ids.size(), from + DELETE_CHUNK)))
+                    .executeUpdate();
+        }
+        stockChanged.fire(new StockChangedEvent(amounts.keySet()));
+        return amounts;
+    }
+
+    /**
+     * Returns committed sold pieces of the products whose stock was not decreased yet.
+     *
+     * @param productIds Ids of the products.
+     * @return Product id -> pieces, products without such sales are left out.
+     */
+    public Map<Long, Long> unwritten(Collection<Long> productIds) {
+        Map<Long, Long> amounts = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return amounts;
+        }
+        for (Object[] row : em.createQuery("SELECT s.productId, SUM(s.quantity) FROM HotSale s"
+                + " WHERE s.productId IN :ids GROUP BY s.productId", Object[].class)
+                .setParameter("ids", productIds)
+                .getResultList()) {
+            amounts.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        return amounts;
+    }
+
+    /**
+     * Returns stock of the products read from the database.
+     *
+     * @param productIds Ids of the products.
+     * @return Product id -> stock, products which do not exist are left out.
+     */
+    public Map<Long, Long> stock(Collection<Long> productIds) {
+        Map<Long, Long> stock = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stock;
+        }
+        for (Object[] row : em.createQuery("SELECT p.id, p.availableQuantity FROM ProductDescription p"
+                + " WHERE p.id IN :ids", Object[].class)
+                .setParameter("ids", productIds)
+                .getResultList()) {
+            stock.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        return stock;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * PIS Projekt 2024
+ * IdAllocation.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sequencing.Sequence;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * EclipseLink session customizer setting the id allocation sizes.
+ * Every entity has its own row in the ID_GENERATOR table and takes a block of
+ * ids at once (allocationSize of its TableGenerator), the ids of the block are
+ * then handed out from memory. The block size of an entity can be changed by
+ * the config property pis.ids.allocation.EntityName (e.g. pis.ids.allocation.OrderItem=1000).
+ * Registered in persistence.xml.
+ */
+public class IdAllocation implements SessionCustomizer {
+    public static final String CONFIG_PREFIX = "pis.ids.allocation.";
+
+    @Override
+    public void customize(Session session) {
+        Config config = ConfigProvider.getConfig();
+        for (Sequence sequence : session.getLogin().getSequences().values()) {
+            config.getOptionalValue(CONFIG_PREFIX + sequence.getName(), Integer.class)
+                    .filter(size -> size > 0)
+                    .ifPresent(sequence::setPreallocationSize);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * PIS Projekt 2024
+ * IdGeneratorManager.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.util.List;
+
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.sequencing.TableSequence;
+import org.eclipse.persistence.sessions.server.Server;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+
+/**
+ * Maintenance of the ID_GENERATOR table the entity ids are allocated from (see IdAllocation).
+ */
+@RequestScoped
+public class IdGeneratorManager {
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Moves every generator above the highest id of its entity.
+     * Databases created before the ids were pooled have the ids in the old shared
+     * SEQUENCE table, so their generators would start from ids already in use.
+     * 
+     * @return Number of moved generators.
+     */
+    @Transactional
+    public int synchronize() {
+        Server server = em.getEntityManagerFactory().unwrap(Server.class);
+        int moved = 0;
+        for (ClassDescriptor descriptor : server.getDescriptors().values()) {
+            if (!(descriptor.getSequence() instanceof TableSequence) || descriptor.getAlias() == null) {
+                continue;
+            }
+            String name = descriptor.getSequenceNumberName();
+            Number max = em.createQuery("SELECT MAX(e.id) FROM " + descriptor.getAlias() + " e", Number.class)
+                    .getSingleResult();
+            long highest = max == null ? 0 : max.longValue();
+            if (current(name) == null) {
+                em.createNativeQuery("INSERT INTO ID_GENERATOR (GEN_NAME, GEN_VALUE) VALUES (?, ?)")
+                        .setParameter(1, name)
+                        .setParameter(2, highest)
+                        .executeUpdate();
+                moved++;
+            } else {
+                moved += em.createNativeQuery(
+                        "UPDATE ID_GENERATOR SET GEN_VALUE = ? WHERE GEN_NAME = ? AND GEN_VALUE < ?")
+                        .setParameter(1, highest)
+                        .setParameter(2, name)
+                        .setParameter(3, highest)
+                        .executeUpdate();
+            }
+        }
+        if (moved > 0) {
+            // Blocks taken before the move may contain used ids
+            server.getSequencingControl().initializePreallocated();
+        }
+        return moved;
+    }
+
+    /**
+     * Takes a block of ids in its own transaction, the same way EclipseLink does.
+     * Used by the benchmark, which has its own generator row.
+     * 
+     * @param name Name of the generator (GEN_NAME).
+     * @param size Number of ids in the block.
+     * @return Last id of the block.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public long allocate(String name, int size) {
+        int updated = em.createNativeQuery("UPDATE ID_GENERATOR SET GEN_VALUE = GEN_VALUE + ? WHERE GEN_NAME = ?")
+                .setParameter(1, size)
+                .setParameter(2, name)
+                .executeUpdate();
+        if (updated == 0) {
+            em.createNativeQuery("INSERT INTO ID_GENERATOR (GEN_NAME, GEN_VALUE) VALUES (?, ?)")
+                    .setParameter(1, name)
+                    .setParameter(2, size)
+                    .executeUpdate();
+        }
+        return current(name);
+    }
+
+    /**
+     * Returns the last allocated id of the generator, null if it has no row yet.
+     */
+    private Long current(String name) {
+        List<?> rows = em.createNativeQuery("SELECT GEN_VALUE FROM ID_GENERATOR WHERE GEN_NAME = ?")
+                .setParameter(1, name)
+                .getResultList();
+        return rows.isEmpty() ? null : ((Number) rows.get(0)).longValue();
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * PIS Projekt 2024
+ * IdGenerators.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.context.control.RequestContextController;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import pis.api.dto.IdBenchmarkDTO;
+
+/**
+ * Prepares the id generators at startup and measures the id allocation.
+ */
+@ApplicationScoped
+public class IdGenerators {
+    /** Generator row used only by the benchmark. */
+    private static final String BENCHMARK_GENERATOR = "Benchmark";
+
+    @Inject
+    private Instance<IdGeneratorManager> generatorManager;
+
+    @Inject
+    private Instance<RequestContextController> requestContext;
+
+    /**
+     * Moves the generators above the existing ids before anything is inserted.
+     */
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        RequestContextController controller = requestContext.get();
+        boolean activated = controller.activate();
+        try {
+            int moved = generatorManager.get().synchronize();
+            if (moved > 0) {
+                System.out.println("Moved " + moved + " id generators above the existing ids");
+            }
+        } catch (Exception e) {
+            System.out.println(e);
+        } finally {
+            if (activated) {
+                controller.deactivate();
+            }
+        }
+    }
+
+    /**
+     * Allocates the ids one by one (a transaction per id, as without pooling)
+     * and in blocks (a transaction per block, then from memory), and compares the times.
+     * 
+     * @param count          Number of ids to allocate in each run.
+     * @param allocationSize Size of the blocks of the pooled run.
+     * @return Times of both runs.
+     */
+    public IdBenchmarkDTO benchmark(int count, int allocationSize) {
+        IdGeneratorManager manager = generatorManager.get();
+        // Warm up the statements and the connection pool
+        manager.allocate(BENCHMARK_GENERATOR, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            manager.allocate(BENCHMARK_GENERATOR, 1);
+        }
+        long unpooled = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long next = 0;
+        long last = -1;
+        for (int i = 0; i < count; i++) {
+            if (next > last) {
+                last = manager.allocate(BENCHMARK_GENERATOR, allocationSize);
+                next = last - allocationSize + 1;
+            }
+            next++;
+        }
+        long pooled = System.nanoTime() - start;
+        return new IdBenchmarkDTO(count, allocationSize, unpooled / 1_000_000.0, pooled / 1_000_000.0);
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * PIS Projekt 2024
+ * ImportFormat.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+/**
+ * Formats of the catalog import.
+ */
+public enum ImportFormat {
+    /** Comma separated values with a header row, categories separated by '|'. */
+    CSV,
+    /** One JSON object per line. */
+    NDJSON;
+
+    /**
+     * Returns format of the media type, null if it is not supported.
+     */
+    public static ImportFormat fromMediaType(String mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        String type = mediaType.split(";")[0].trim().toLowerCase();
+        switch (type) {
+            case "text/csv":
+                return CSV;
+            case "application/x-ndjson":
+            case "application/jsonl":
+                return NDJSON;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * PIS Projekt 2024
+ * ImportParser.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+
+/**
+ * Reads the catalog import record by record and parses the records.
+ * Reading (next) is done by one thread, it only splits the input into records,
+ * so the parsing (parse) can run on several threads at once.
+ * 
+ * Both formats have the same fields (names are case-insensitive):
+ * name, description, price, isbn, pages, image, quantity, authorFirstName,
+ * authorLastName, language and categories (separated by '|', or a JSON array).
+ */
+public class ImportParser {
+    private final ImportFormat format;
+    private final BufferedReader reader;
+    /** Lower-cased names of the CSV columns. */
+    private final List<String> columns = new ArrayList<>();
+    private long line = 0;
+
+    /**
+     * One record of the input, not parsed yet.
+     */
+    public static class Record {
+        private final long line;
+        private final String text;
+
+        private Record(long line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+
+        public long getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * @param in     Input, read as UTF-8.
+     * @param format Format of the input, CSV has to start with the header row.
+     * @throws IOException If the input cannot be read or the CSV has no header.
+     */
+    public ImportParser(InputStream in, ImportFormat format) throws IOException {
+        this.format = format;
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        if (format == ImportFormat.CSV) {
+            Record header = next();
+            if (header == null) {
+                throw new IOException("CSV has no header");
+            }
+            for (String column : splitCsv(header.text)) {
+                columns.add(column.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    /**
+     * Returns the next record, null at the end of the input. Blank lines are skipped.
+     */
+    public Record next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            line++;
+            if (text == null) {
+                return null;
+            }
+            if (line == 1 && text.startsWith("\uFEFF")) {
+                text = text.substring(1);
+            }
+        } while (text.isBlank());
+        long start = line;
+        if (format == ImportFormat.CSV) {
+            // A quoted value can contain line breaks, the record ends with an even number of quotes
+            StringBuilder record = null;
+            int quotes = count(text, '"');
+            while (quotes % 2 != 0) {
+                String more = reader.readLine();
+                if (more == null) {
+                    break;
+                }
+                line++;
+                if (record == null) {
+                    record = new StringBuilder(text);
+                }
+                record.append('\n').append(more);
+                quotes += count(more, '"');
+            }
+            if (record != null) {
+                text = record.toString();
+            }
+        }
+        return new Record(start, text);
+    }
+
+    /**
+     * Parses the record, thread safe.
+     * 
+     * @return Parsed row, or a failed row with the reason.
+     */
+    public ImportRow parse(Record record) {
+        try {
+            Map<String, String> values = format == ImportFormat.CSV ? csvValues(record) : jsonValues(record);
+            return toRow(record.line, values);
+        } catch (IllegalArgumentException | JsonException | ClassCastException e) {
+            return ImportRow.failed(record.line, e.getMessage());
+        }
+    }
+
+    private Map<String, String> csvValues(Record record) {
+        List<String> fields = splitCsv(record.text);
+        if (fields.size() > columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " values, found " + fields.size());
+        }
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            values.put(columns.get(i), fields.get(i));
+        }
+        return values;
+    }
+
+    private static Map<String, String> jsonValues(Record record) {
+        JsonObject object;
+        try (JsonReader json = Json.createReader(new StringReader(record.text))) {
+            object = json.readObject();
+        }
+        Map<String, String> values = new HashMap<>();
+        for (Map.Entry<String, JsonValue> e : object.entrySet()) {
+            JsonValue value = e.getValue();
+            String text;
+            switch (value.getValueType()) {
+                case NULL:
+                    continue;
+                case STRING:
+                    text = ((JsonString) value).getString();
+                    break;
+                case ARRAY:
+                    List<String> items = new ArrayList<>();
+                    for (JsonValue item : (JsonArray) value) {
+                        items.add(item instanceof JsonString ? ((JsonString) item).getString() : item.toString());
+                    }
+                    text = String.join("|", items);
+                    break;
+                default:
+                    text = value.toString();
+            }
+            values.put(e.getKey().toLowerCase(Locale.ROOT), text);
+        }
+        return values;
+    }
+
+    private static ImportRow toRow(long line, Map<String, String> values) {
+        ImportRow row = new ImportRow(line);
+        row.setName(required(values, "name"));
+        row.setIsbn(required(values, "isbn"));
+        row.setPrice(number(values, "price", null));
+        row.setPages((int) number(values, "pages", 0.0));
+        row.setQuantity((int) number(values, "quantity", 0.0));
+        row.setDescription(optional(values, "description"));
+        row.setImage(optional(values, "image"));
+        row.setAuthorFirstName(optional(values, "authorfirstname"));
+        row.setAuthorLastName(optional(values, "authorlastname"));
+        row.setLanguage(optional(values, "language"));
+        String categories = optional(values, "categories");
+        if (categories != null) {
+            List<String> names = new ArrayList<>();
+            for (String name : categories.split("\\|")) {
+                if (!name.isBlank()) {
+                    names.add(name.trim());
+                }
+            }
+            row.setCategories(names);
+        }
+        return row;
+    }
+
+    private static String optional(Map<String, String> values, String name) {
+        String value = values.get(name);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static String required(Map<String, String> values, String name) {
+        String value = optional(values, name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Returns non-negative number, the default value if it is missing (required if there is none).
+     */
+    private static double number(Map<String, String> values, String name, Double defaultValue) {
+        String value = defaultValue == null ? required(values, name) : optional(values, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        double number;
+        try {
+            number = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+        if (number < 0 || Double.isNaN(number) || Double.isInfinite(number)) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+        return number;
+    }
+
+    /**
+     * Splits CSV record into values, quoted values can contain commas, line breaks and doubled quotes.
+     */
+    private static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int count(String text, char c) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
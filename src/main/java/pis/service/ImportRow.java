@@ -0,0 +1,143 @@
+/**
+ * PIS Projekt 2024
+ * ImportRow.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.List;
+
+/**
+ * One parsed row of the catalog import, or the reason why it could not be parsed.
+ */
+public class ImportRow {
+    private final long line;
+    private final String error;
+    private String name;
+    private String description;
+    private double price;
+    private String isbn;
+    private int pages;
+    private String image;
+    private int quantity;
+    private String authorFirstName;
+    private String authorLastName;
+    private String language;
+    private List<String> categories = List.of();
+
+    ImportRow(long line) {
+        this(line, null);
+    }
+
+    private ImportRow(long line, String error) {
+        this.line = line;
+        this.error = error;
+    }
+
+    static ImportRow failed(long line, String error) {
+        return new ImportRow(line, error);
+    }
+
+    /**
+     * Returns number of the line the row starts on.
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * Returns why the row could not be parsed, null if it was parsed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    void setDescription(String description) {
+        this.description = description;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    void setPrice(double price) {
+        this.price = price;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    void setPages(int pages) {
+        this.pages = pages;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    void setImage(String image) {
+        this.image = image;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public String getAuthorFirstName() {
+        return authorFirstName;
+    }
+
+    void setAuthorFirstName(String authorFirstName) {
+        this.authorFirstName = authorFirstName;
+    }
+
+    public String getAuthorLastName() {
+        return authorLastName;
+    }
+
+    void setAuthorLastName(String authorLastName) {
+        this.authorLastName = authorLastName;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    void setCategories(List<String> categories) {
+        this.categories = categories;
+    }
+}
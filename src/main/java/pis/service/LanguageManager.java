@@ -7,9 +7,12 @@
 package pis.service;
 
 import java.util.List;
+import java.util.Locale;
 
 import pis.data.Language;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.persistence.Query;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -23,11 +26,18 @@ public class LanguageManager {
     @PersistenceContext
     private EntityManager em;
 
+    @Inject
+    private ReferenceDataCache referenceDataCache;
+
+    @Inject
+    private Event<ReferenceDataChangedEvent> referenceDataChanged;
+
     /**
      * Returns list of all Languages.
      */
     public List<Language> findAll() {
-        return em.createNamedQuery("Language.findAll", Language.class).getResultList();
+        return referenceDataCache.findAll(Language.class,
+                () -> em.createNamedQuery("Language.findAll", Language.class).getResultList());
     }
 
     /**
@@ -49,8 +59,8 @@ public class LanguageManager {
     public Language findLanguage(String language) {
         Language author = null;
         try {
-            Query q = em.createQuery("SELECT l FROM Language l WHERE lower(l.language) = lower( :language )");
-            q.setParameter("language", language);
+            Query q = em.createNamedQuery("Language.findByLanguage");
+            q.setParameter("language", language.toLowerCase(Locale.ROOT));
             return (Language) q.getSingleResult();
         } catch (Exception e) {
             System.out.println(e);
@@ -66,7 +76,9 @@ public class LanguageManager {
      */
     @Transactional
     public Language save(Language l) {
-        return em.merge(l);
+        Language saved = em.merge(l);
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Language.class, saved.getId()));
+        return saved;
     }
 
     /**
@@ -79,5 +91,6 @@ public class LanguageManager {
     public void delete(Language l) {
         Language new_l = em.merge(l);
         em.remove(new_l);
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Language.class, new_l.getId()));
     }
 }
@@ -0,0 +1,24 @@
+/**
+ * PIS Projekt 2024
+ * OrderCreatedEvent.java
+ * @author Filip Brna <xbrnaf00>
+ */
+
+package pis.service;
+
+import pis.data.Order;
+
+/**
+ * CDI event fired after a new order was committed.
+ */
+public class OrderCreatedEvent {
+    private Order order;
+
+    public OrderCreatedEvent(Order order) {
+        this.order = order;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+}
@@ -7,12 +7,15 @@
 package pis.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+import pis.api.dto.OrderPreviewDTO;
 import pis.data.Order;
 import pis.data.OrderStatus;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
@@ -22,6 +25,9 @@ import jakarta.transaction.Transactional;
  */
 @RequestScoped
 public class OrderManager {
+    /** Maximal number of orders returned by findAllPreviews, longer history is read by pages. */
+    private static final int MAX_ALL_PREVIEWS = 1000;
+
     @PersistenceContext
     private EntityManager em;
 
@@ -32,6 +38,66 @@ public class OrderManager {
         return em.createNamedQuery("Order.findAll", Order.class).getResultList();
     }
 
+    /**
+     * Returns previews of the newest Orders (at most MAX_ALL_PREVIEWS), the newest first.
+     * Selected straight into the DTOs, so no Order entities are loaded.
+     */
+    public List<OrderPreviewDTO> findAllPreviews() {
+        return findPreviewPage(null, null, null, null, MAX_ALL_PREVIEWS);
+    }
+
+    /**
+     * Returns one page of order previews, the newest first, using keyset (seek) pagination.
+     * 
+     * @param status Only orders in this status, null for all.
+     * @param from   Only orders created at or after this time, can be null.
+     * @param to     Only orders created at or before this time, can be null.
+     * @param after  Cursor of the previous page, null for the first page.
+     * @param limit  Maximal number of returned orders.
+     * @return List of order previews.
+     */
+    public List<OrderPreviewDTO> findPreviewPage(OrderStatus status, LocalDateTime from, LocalDateTime to,
+            OrderPageCursor after, int limit) {
+        try {
+            List<String> conditions = new ArrayList<>();
+            if (status != null) {
+                conditions.add("o.status = :status");
+            }
+            if (from != null) {
+                conditions.add("o.creationDate >= :from");
+            }
+            if (to != null) {
+                conditions.add("o.creationDate <= :to");
+            }
+            if (after != null) {
+                conditions.add("(o.creationDate < :lastDate OR (o.creationDate = :lastDate AND o.id < :lastId))");
+            }
+            String jpql = "SELECT NEW pis.api.dto.OrderPreviewDTO(o.id, o.status, o.creationDate, o.totalPrice, u.email)"
+                    + " FROM Order o LEFT JOIN o.orderUserInfo u"
+                    + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                    + " ORDER BY o.creationDate DESC, o.id DESC";
+
+            TypedQuery<OrderPreviewDTO> q = em.createQuery(jpql, OrderPreviewDTO.class);
+            if (status != null) {
+                q.setParameter("status", status);
+            }
+            if (from != null) {
+                q.setParameter("from", from);
+            }
+            if (to != null) {
+                q.setParameter("to", to);
+            }
+            if (after != null) {
+                q.setParameter("lastDate", after.getLastCreationDate());
+                q.setParameter("lastId", after.getLastId());
+            }
+            return q.setMaxResults(limit).getResultList();
+        } catch (Exception e) {
+            System.out.println(e);
+            return List.of();
+        }
+    }
+
     /**
      * Returns Order if it exists, otherwise null.
      * 
@@ -86,6 +152,7 @@ public class OrderManager {
             Query q = em.createQuery(
                     "SELECT o FROM Order o WHERE lower(o.orderUserInfo.email) LIKE lower( :email )");
             q.setParameter("email", '%' + email + '%');
+            withPreview(q);
             return (List<Order>) q.getResultList();
         } catch (Exception e) {
             System.out.println(e);
@@ -94,123 +161,88 @@ public class OrderManager {
     }
 
     /**
-     * Find order containing category
-     * @param name of the category
-     * @return Order
+     * Returns Orders made by the registered user.
+     * 
+     * @param userId Id of the user.
+     * @return List of Orders.
      */
-    public Order findByCategory(String name) {
-        Order orders = null;
+    public List<Order> findByUser(long userId) {
         try {
-            Query q = em.createQuery(
-                    "SELECT o FROM Order o JOIN o.orderItems oi JOIN oi.categories c WHERE c.name = :name");
-            q.setParameter("name", name);
-            q.setMaxResults(1);
-            return (Order) q.getSingleResult();
+            TypedQuery<Order> q = em.createQuery(
+                    "SELECT o FROM Order o WHERE o.id IN (SELECT uo.id FROM RegisteredUser u JOIN u.orders uo WHERE u.id = :id)",
+                    Order.class);
+            q.setParameter("id", userId);
+            withPreview(q);
+            return q.getResultList();
         } catch (Exception e) {
             System.out.println(e);
-            return orders;
+            return List.of();
         }
     }
 
     /**
-     * Add Order to db.
+     * Returns Order with everything shown in its detail (items with categories,
+     * modifications with users) loaded in a fixed number of queries.
      * 
-     * @param o Order to add.
-     * @return Returns inserted Order.
-     */
-    @Transactional
-    public Order save(Order o) {
-        return em.merge(o);
-    }
-
-    /*****************************/
-    /** STATISTICS CALCULATIONS **/
-    /*****************************/
-
-    /**
-     * Return the number of order made between dates
-     * 
-     * @param from from Beginning of the range (including)
-     * @param to from End of the range (including)
-     * @return List of pairs of times & order counts
+     * @param id Id of the searched Order.
+     * @return Order with given id or null.
      */
-    @SuppressWarnings("unchecked")
-    public List<Object[]> salesTimeRange(LocalDateTime from, LocalDateTime to) {
-        List<Object[]> results = null;
+    public Order findDetail(long id) {
         try {
-            // FUNCTION -- to convert full dateTime to YYYY-MM-DD, which is good for visualization
-            Query query = em.createQuery("SELECT FUNCTION('DATE', o.creationDate), COUNT(o) FROM Order o WHERE o.creationDate BETWEEN :from AND :to GROUP BY FUNCTION('DATE', o.creationDate)");
-            query.setParameter("from", from);
-            query.setParameter("to", to);
-            return (List<Object[]>) query.getResultList();
+            TypedQuery<Order> q = em.createQuery("SELECT o FROM Order o WHERE o.id = :id", Order.class);
+            q.setParameter("id", id);
+            q.setHint("jakarta.persistence.loadgraph", em.getEntityGraph("Order.detail"));
+            // EclipseLink loads every relation with one query instead of one query per item
+            q.setHint("eclipselink.batch.type", "IN");
+            q.setHint("eclipselink.batch", "o.orderUserInfo");
+            q.setHint("eclipselink.batch", "o.orderItems");
+            q.setHint("eclipselink.batch", "o.orderItems.categories");
+            q.setHint("eclipselink.batch", "o.modifications");
+            q.setHint("eclipselink.batch", "o.modifications.registeredUser");
+            List<Order> orders = q.getResultList();
+            return orders.isEmpty() ? null : orders.get(0);
         } catch (Exception e) {
             System.out.println(e);
-            return results;
+            return null;
         }
     }
 
     /**
-     * Return the number of order per category made between dates
-     * 
-     * @param from from Beginning of the range (including)
-     * @param to from End of the range (including)
-     * @return List of pairs of cateogires & order counts
+     * Loads what is shown in the order previews for all the orders of the query at once.
      */
-    @SuppressWarnings("unchecked")
-    public List<Object[]> categoriesSalesInRange(LocalDateTime from, LocalDateTime to) {
-        List<Object[]> results = null;
-        try {
-            Query query = em.createQuery("SELECT c.name, SUM(oi.quantity) FROM Order o JOIN o.orderItems oi JOIN oi.categories c WHERE o.creationDate BETWEEN :from AND :to GROUP BY c.name");
-            query.setParameter("from", from);
-            query.setParameter("to", to);
-            return (List<Object[]>) query.getResultList();
-        } catch (Exception e) {
-            System.out.println(e);
-            return results;
-        }
+    private void withPreview(Query q) {
+        q.setHint("jakarta.persistence.loadgraph", em.getEntityGraph("Order.preview"));
+        q.setHint("eclipselink.batch.type", "IN");
+        q.setHint("eclipselink.batch", "o.orderUserInfo");
     }
 
     /**
-     * Return the amount of the top 20 items sold
-     * 
-     * @param from from Beginning of the range (including)
-     * @param to from End of the range (including)
-     * @return List of pairs of items & order counts
+     * Find order containing category
+     * @param name of the category
+     * @return Order
      */
-    @SuppressWarnings("unchecked")
-    public List<Object[]> itemSalesInRange(LocalDateTime from, LocalDateTime to) {
-        List<Object[]> results = null;
+    public Order findByCategory(String name) {
+        Order orders = null;
         try {
-            Query query = em.createQuery("SELECT oi.productName, SUM(oi.quantity) FROM Order o JOIN o.orderItems oi WHERE o.creationDate BETWEEN :from AND :to GROUP BY oi.productName");
-            query.setParameter("from", from);
-            query.setParameter("to", to);
-            query.setMaxResults(20); // Limit the results to the top 20 books
-            return (List<Object[]>) query.getResultList();
+            Query q = em.createQuery(
+                    "SELECT o FROM Order o JOIN o.orderItems oi JOIN oi.categories c WHERE c.name = :name");
+            q.setParameter("name", name);
+            q.setMaxResults(1);
+            return (Order) q.getSingleResult();
         } catch (Exception e) {
             System.out.println(e);
-            return results;
+            return orders;
         }
     }
 
     /**
-     * Return the earnings per day in given time range
+     * Add Order to db.
      * 
-     * @param from from Beginning of the range (including)
-     * @param to from End of the range (including)
-     * @return List of pairs of days & corresponding earnings
+     * @param o Order to add.
+     * @return Returns inserted Order.
      */
-    @SuppressWarnings("unchecked")
-    public List<Object[]> earningsInRange(LocalDateTime from, LocalDateTime to) {
-        List<Object[]> results = null;
-        try {
-            Query query = em.createQuery("SELECT FUNCTION('DATE', o.creationDate), SUM(o.totalPrice) FROM Order o WHERE o.creationDate BETWEEN :from AND :to GROUP BY FUNCTION('DATE', o.creationDate)");
-            query.setParameter("from", from);
-            query.setParameter("to", to);
-            return (List<Object[]>) query.getResultList();
-        } catch (Exception e) {
-            System.out.println(e);
-            return results;
-        }
+    @Transactional
+    public Order save(Order o) {
+        return em.merge(o);
     }
-
 }
@@ -0,0 +1,63 @@
+/**
+ * PIS Projekt 2024
+ * OrderPageCursor.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the order listing (keyset pagination), which is sorted from
+ * the newest orders. The cursor remembers creation date and id of the last
+ * returned order, for the client it is an opaque string.
+ */
+public class OrderPageCursor {
+    private LocalDateTime lastCreationDate;
+    private long lastId;
+
+    public OrderPageCursor(LocalDateTime lastCreationDate, long lastId) {
+        this.lastCreationDate = lastCreationDate;
+        this.lastId = lastId;
+    }
+
+    /**
+     * Returns the cursor as opaque string.
+     */
+    public String encode() {
+        String raw = lastCreationDate + "|" + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses cursor created by encode().
+     * 
+     * @param cursor Opaque cursor string.
+     * @return Parsed cursor.
+     * @throws IllegalArgumentException if the cursor is not valid.
+     */
+    public static OrderPageCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = raw.split("\\|");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return new OrderPageCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public LocalDateTime getLastCreationDate() {
+        return lastCreationDate;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+}
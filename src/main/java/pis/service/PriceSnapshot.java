@@ -0,0 +1,83 @@
+/**
+ * PIS Projekt 2024
+ * PriceSnapshot.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+/**
+ * Price and stock of a product at the time it was read, used to quote carts.
+ * Read by a constructor expression, so the products are not loaded as entities.
+ */
+public class PriceSnapshot {
+    private final long id;
+    private final String name;
+    private final String image;
+    private final double price;
+    /** Discount in percent, 0 if the product has none. */
+    private final int discount;
+    private final int availableQuantity;
+    private final Long authorId;
+    private final String authorFirstName;
+    private final String authorLastName;
+
+    public PriceSnapshot(long id, String name, String image, double price, Integer discount, int availableQuantity,
+            Long authorId, String authorFirstName, String authorLastName) {
+        this.id = id;
+        this.name = name;
+        this.image = image;
+        this.price = price;
+        this.discount = discount == null ? 0 : discount;
+        this.availableQuantity = availableQuantity;
+        this.authorId = authorId;
+        this.authorFirstName = authorFirstName;
+        this.authorLastName = authorLastName;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getDiscount() {
+        return discount;
+    }
+
+    /**
+     * Returns the price after the discount, same as ProductDescription.getCurrentPrice().
+     */
+    public double getCurrentPrice() {
+        if (discount == 0) {
+            return price;
+        }
+        return price * ((100.0 - discount) / 100.0);
+    }
+
+    public int getAvailableQuantity() {
+        return availableQuantity;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public String getAuthorFirstName() {
+        return authorFirstName;
+    }
+
+    public String getAuthorLastName() {
+        return authorLastName;
+    }
+}
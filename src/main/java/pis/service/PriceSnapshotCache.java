@@ -0,0 +1,74 @@
+/**
+ * PIS Projekt 2024
+ * PriceSnapshotCache.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import pis.api.dto.CacheStatsDTO;
+import pis.data.BookAuthor;
+import pis.data.Discount;
+
+/**
+ * Cache of prices and stock of products for cart quotes.
+ * Carts are quoted whenever they are shown, so the snapshots are kept for a
+ * few seconds. They are dropped when the product, its stock, its discount or
+ * its author changes, the TTL only covers changes made outside of the application.
+ */
+@ApplicationScoped
+public class PriceSnapshotCache {
+    private static final int MAX_SIZE = 10000;
+    private static final long TTL_MILLIS = 5 * 1000;
+
+    private final ExpiringCache<Long, PriceSnapshot> cache = new ExpiringCache<>("price-snapshot", MAX_SIZE,
+            TTL_MILLIS);
+
+    /**
+     * Returns snapshots of the products, the missing ones are loaded at once.
+     * 
+     * @param ids    Ids of the products.
+     * @param loader Loads snapshots of the missing products from the database.
+     * @return Product id -> snapshot, products which do not exist are left out.
+     */
+    public Map<Long, PriceSnapshot> getAll(Collection<Long> ids, Function<Set<Long>, Map<Long, PriceSnapshot>> loader) {
+        return cache.getAll(ids, loader);
+    }
+
+    public void onProductChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangedEvent event) {
+        cache.invalidate(event.getId());
+    }
+
+    public void onStockChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) StockChangedEvent event) {
+        for (Long id : event.getProductIds()) {
+            cache.invalidate(id);
+        }
+    }
+
+    public void onPricesChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) PricesChangedEvent event) {
+        for (Long id : event.getProductIds()) {
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * Discounts and authors are shared by many products, so everything is dropped.
+     */
+    public void onReferenceDataChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        if (event.getType() == Discount.class || event.getType() == BookAuthor.class) {
+            cache.invalidateAll();
+        }
+    }
+
+    public CacheStatsDTO stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * PIS Projekt 2024
+ * PricesChangedEvent.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.Collection;
+
+/**
+ * CDI event fired when discounts of products were changed in bulk
+ * (without saving the products through ProductDescriptionManager).
+ */
+public class PricesChangedEvent {
+    private Collection<Long> productIds;
+
+    public PricesChangedEvent(Collection<Long> productIds) {
+        this.productIds = productIds;
+    }
+
+    public Collection<Long> getProductIds() {
+        return productIds;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * PIS Projekt 2024
+ * ProductChangedEvent.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import pis.data.ProductDescription;
+
+/**
+ * CDI event fired by ProductDescriptionManager whenever a product is saved
+ * or deleted, so in-memory structures built over the catalog can be updated.
+ */
+public class ProductChangedEvent {
+    private long id;
+    private ProductDescription product;
+
+    public ProductChangedEvent(long id, ProductDescription product) {
+        this.id = id;
+        this.product = product;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the saved product, null if the product was deleted.
+     */
+    public ProductDescription getProduct() {
+        return product;
+    }
+
+    public boolean isDeleted() {
+        return product == null;
+    }
+}
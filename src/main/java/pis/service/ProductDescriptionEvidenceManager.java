@@ -6,10 +6,23 @@
 
 package pis.service;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import pis.data.ProductDescription;
 import pis.data.ProductDescriptionEvidence;
+import pis.data.RegisteredUser;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.Cache;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
 
 /**
@@ -17,10 +30,15 @@ import jakarta.transaction.Transactional;
  */
 @RequestScoped
 public class ProductDescriptionEvidenceManager {
+    /** Number of rows sent to the database in one JDBC batch. */
+    private static final int BATCH_SIZE = 500;
 
     @PersistenceContext
     private EntityManager em;
 
+    @Inject
+    private IdGeneratorManager idGeneratorManager;
+
     public ProductDescriptionEvidence find(long id) {
         return em.find(ProductDescriptionEvidence.class, id);
     }
@@ -29,4 +47,57 @@ public class ProductDescriptionEvidenceManager {
     public ProductDescriptionEvidence save(ProductDescriptionEvidence quantityEvidence) {
         return em.merge(quantityEvidence);
     }
-}
\ No newline at end of file
+
+    /**
+     * Adds the same evidence record to every given product. The rows are inserted
+     * by JDBC batches on the connection of the current transaction, with ids from
+     * one block reserved in the id generator, so there is no merge and no loading
+     * of the evidence lists.
+     * 
+     * @param productIds        Ids of the products.
+     * @param user              User who did the change.
+     * @param changeDescription Description of the change.
+     */
+    @Transactional
+    public void saveAll(List<Long> productIds, RegisteredUser user, String changeDescription) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        long id = idGeneratorManager.allocate("ProductDescriptionEvidence", productIds.size()) - productIds.size() + 1;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Connection connection = em.unwrap(Connection.class);
+        // Default column names of the evidence and of the join table of ProductDescription.productDescriptionEvidences
+        try (PreparedStatement evidence = connection.prepareStatement("INSERT INTO ProductDescriptionEvidence"
+                + " (ID, CHANGEDESCRIPTION, MODIFICATIONDATE, REGISTEREDUSER_ID) VALUES (?, ?, ?, ?)");
+                PreparedStatement link = connection.prepareStatement("INSERT INTO"
+                        + " ProductDescription_ProductDescriptionEvidence"
+                        + " (ProductDescription_ID, productDescriptionEvidences_ID) VALUES (?, ?)")) {
+            for (int i = 0; i < productIds.size(); i++, id++) {
+                evidence.setLong(1, id);
+                evidence.setString(2, changeDescription);
+                evidence.setTimestamp(3, now);
+                if (user == null) {
+                    evidence.setNull(4, Types.BIGINT);
+                } else {
+                    evidence.setLong(4, user.getId());
+                }
+                evidence.addBatch();
+                link.setLong(1, productIds.get(i));
+                link.setLong(2, id);
+                link.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0 || i + 1 == productIds.size()) {
+                    // Evidence first, the join table references it
+                    evidence.executeBatch();
+                    link.executeBatch();
+                }
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        }
+        // Evidence lists of the cached products were changed behind the back of JPA
+        Cache cache = em.getEntityManagerFactory().getCache();
+        for (Long productId : productIds) {
+            cache.evict(ProductDescription.class, productId);
+        }
+    }
+}
@@ -6,16 +6,43 @@
 
 package pis.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import pis.data.ProductDescription;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import jakarta.transaction.Transactional;
+import pis.api.dto.BulkProductUpdateDTO;
+import pis.api.dto.BulkUpdateResultDTO;
 import pis.api.dto.FilterQuery;
+import pis.data.BookAuthor;
 import pis.data.Category;
+import pis.data.Discount;
+import pis.data.Language;
+import pis.data.RegisteredUser;
 
 /**
  * Business logic for working with ProductDescriptions.
@@ -25,11 +52,45 @@ public class ProductDescriptionManager {
     @PersistenceContext
     private EntityManager em;
 
+    @Inject
+    private SearchIndex searchIndex;
+
+    @Inject
+    private SearchResultCache searchResultCache;
+
+    @Inject
+    private TrigramIndex trigramIndex;
+
+    @Inject
+    private Event<ProductChangedEvent> productChanged;
+
+    @Inject
+    private Event<StockChangedEvent> stockChanged;
+
+    @Inject
+    private PriceSnapshotCache priceSnapshotCache;
+
+    @Inject
+    private ProductDescriptionEvidenceManager evidenceManager;
+
+    @Inject
+    private CatalogColumns catalogColumns;
+
+    /** Maximal number of products returned by the search. */
+    private static final int MAX_SEARCH_RESULTS = 1000;
+
+    /** Number of filtered products read by one query. */
+    private static final int FILTER_CHUNK = 1000;
+
+    /** Number of products of a bulk update read, written and flushed together. */
+    private static final int BULK_CHUNK = 500;
+
     /**
      * Returns list of all BookAuthors.
      */
     public List<ProductDescription> findAll() {
-        return em.createNamedQuery("ProductDescription.findAll", ProductDescription.class).getResultList();
+        return withDetail(em.createNamedQuery("ProductDescription.findAll", ProductDescription.class))
+                .getResultList();
     }
 
     /**
@@ -42,6 +103,30 @@ public class ProductDescriptionManager {
         return em.find(ProductDescription.class, id);
     }
 
+    /**
+     * Returns ProductDescription with everything shown in its detail loaded, otherwise null.
+     * 
+     * @param id Id of the searched ProductDescription.
+     * @return ProductDescription with given id.
+     */
+    public ProductDescription findDetail(long id) {
+        return em.find(ProductDescription.class, id,
+                Map.of("jakarta.persistence.loadgraph", em.getEntityGraph("ProductDescription.detail")));
+    }
+
+    /**
+     * Loads the relations shown in the product detail for all the products of the query at once,
+     * so mapping the results to DTOs does not run queries for every product.
+     */
+    private TypedQuery<ProductDescription> withDetail(TypedQuery<ProductDescription> q) {
+        return q.setHint("jakarta.persistence.loadgraph", em.getEntityGraph("ProductDescription.detail"))
+                .setHint("eclipselink.batch.type", "IN")
+                .setHint("eclipselink.batch", "p.author")
+                .setHint("eclipselink.batch", "p.language")
+                .setHint("eclipselink.batch", "p.discount")
+                .setHint("eclipselink.batch", "p.categories");
+    }
+
     /**
      * Returns ProductDescription by name if it exists, otherwise null.
      * 
@@ -162,26 +247,90 @@ public class ProductDescriptionManager {
     }
 
     /**
-     * Returns ProductDescriptions by query if it exists, otherwise null.
+     * Returns ProductDescriptions matching the query, the best matches first.
      * 
      * @param query query of the searched Product.
      *              Can be name, description, ISBN, author first and last name,
      *              category name and description, language.
      * @return List of ProductDescriptions
      */
-    @SuppressWarnings("unchecked")
     public List<ProductDescription> searchProductDescriptions(String query) {
-        try {
-            Query q = em.createQuery(
-                "SELECT p FROM ProductDescription p LEFT JOIN p.author a LEFT JOIN p.categories c WHERE lower(p.name) LIKE lower( :query ) OR p.description LIKE  :query  OR p.ISBN LIKE :query OR lower( a.firstName ) LIKE lower( :query ) OR lower( a.lastName ) LIKE lower( :query ) OR lower(c.name) LIKE lower( :query ) OR c.description LIKE  :query OR lower(p.language.language) LIKE lower( :query)");
-            System.out.println(query);
-            q.setParameter("query", "%" + query + "%");
+        List<Long> ids = searchIds(query);
+        Map<Long, ProductDescription> products = new HashMap<>();
+        for (ProductDescription p : findByIds(ids)) {
+            products.put(p.getId(), p);
+        }
+        // Keep the order of the ranking
+        List<ProductDescription> results = new ArrayList<>();
+        for (Long id : ids) {
+            if (products.containsKey(id)) {
+                results.add(products.get(id));
+            }
+        }
+        return results;
+    }
 
-            return (List<ProductDescription>) q.getResultList();
-        } catch (Exception e) {
-            System.out.println(e);
-            return List.of();
+    /**
+     * Returns ids of the products matching the query, the best matches first.
+     * 
+     * @param query Searched text.
+     * @return List of product ids.
+     */
+    public List<Long> searchIds(String query) {
+        return searchResultCache.search(query, MAX_SEARCH_RESULTS,
+                () -> searchIndex.search(query, MAX_SEARCH_RESULTS));
+    }
+
+    /**
+     * Returns ProductDescriptions with name, ISBN or author name containing the
+     * query, ordered by id.
+     * 
+     * @param query Searched substring, case insensitive.
+     * @return List of ProductDescriptions
+     */
+    public List<ProductDescription> searchProductDescriptionsBySubstring(String query) {
+        List<Long> ids = trigramIndex.search(query, MAX_SEARCH_RESULTS);
+        List<ProductDescription> results = new ArrayList<>(findByIds(ids));
+        results.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        return results;
+    }
+
+    /**
+     * Returns ProductDescriptions with given ids (in no particular order).
+     * 
+     * @param ids Ids of the searched ProductDescriptions.
+     * @return List of ProductDescriptions
+     */
+    public List<ProductDescription> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
+        return withDetail(
+                em.createQuery("SELECT p FROM ProductDescription p WHERE p.id IN :ids", ProductDescription.class))
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * Returns prices and stock of the products, read by one query for all
+     * products missing in PriceSnapshotCache.
+     * 
+     * @param ids Ids of the products.
+     * @return Product id -> snapshot, products which do not exist are left out.
+     */
+    public Map<Long, PriceSnapshot> findPriceSnapshots(Collection<Long> ids) {
+        return priceSnapshotCache.getAll(ids, missing -> {
+            Map<Long, PriceSnapshot> snapshots = new HashMap<>();
+            for (PriceSnapshot snapshot : em.createQuery("SELECT NEW pis.service.PriceSnapshot(p.id, p.name, p.image,"
+                    + " p.price, d.discount, p.availableQuantity, a.id, a.firstName, a.lastName)"
+                    + " FROM ProductDescription p LEFT JOIN p.discount d LEFT JOIN p.author a WHERE p.id IN :ids",
+                    PriceSnapshot.class)
+                    .setParameter("ids", missing)
+                    .getResultList()) {
+                snapshots.put(snapshot.getId(), snapshot);
+            }
+            return snapshots;
+        });
     }
 
     /**
@@ -201,140 +350,160 @@ public class ProductDescriptionManager {
      *              }
      * @return List of ProductDescriptions
      */
-    @SuppressWarnings("unchecked")
     public List<ProductDescription> filterProductDescriptions(FilterQuery query) {
-
-        List<ProductDescription> products = null;
-        String flag = "";
-
-        class FilterQueryData {
-            private List<Long> authorIds;
-            private List<Long> categoryIds;
-            private List<Long> languageIds;
-            private double priceFrom;
-            private double priceTo;
-            private int pagesFrom;
-            private int pagesTo;
-            private int discountFrom;
-            private int discountTo;
-
-            public void print() {
-                System.out.println("Author IDs: " + authorIds);
-                System.out.println("Category IDs: " + categoryIds);
-                System.out.println("Language IDs: " + languageIds);
-                System.out.println("Price From: " + priceFrom);
-                System.out.println("Price To: " + priceTo);
-                System.out.println("Pages From: " + pagesFrom);
-                System.out.println("Pages To: " + pagesTo);
-                System.out.println("Discount From: " + discountFrom);
-                System.out.println("Discount To: " + discountTo);
-
+        try {
+            // Matching ids come from the in-memory columns, only the results are read
+            long[] ids = searchResultCache.filter(query, () -> catalogColumns.filter(query));
+            List<ProductDescription> products = new ArrayList<>(ids.length);
+            for (int from = 0; from < ids.length; from += FILTER_CHUNK) {
+                List<Long> chunk = new ArrayList<>();
+                for (int i = from; i < Math.min(ids.length, from + FILTER_CHUNK); i++) {
+                    chunk.add(ids[i]);
+                }
+                List<ProductDescription> found = new ArrayList<>(findByIds(chunk));
+                found.sort(Comparator.comparingLong(ProductDescription::getId));
+                products.addAll(found);
             }
+            return products;
+        } catch (Exception e) {
+            System.out.println(e);
+            return List.of();
         }
-        FilterQueryData data = new FilterQueryData();
-        data.authorIds = query.getAuthorIds();
-        data.categoryIds = query.getCategoryIds();
-        data.languageIds = query.getLanguageIds();
-
-        if (query.getPriceFrom() == null) {
-            data.priceFrom = 0;
-        } else {
-            data.priceFrom = query.getPriceFrom();
-        }
-        if (query.getPriceTo() == null) {
-            data.priceTo = 999999.99;
-        } else {
-            data.priceTo = query.getPriceTo();
+    }
+
+    /**
+     * Translates every field of the filter query into a predicate, so that the
+     * whole filter is evaluated by the database in a single query.
+     * Missing values are replaced by min/max values, so only the set ones filter.
+     * 
+     * @param cb    Criteria builder of the query.
+     * @param cq    Query the predicates belong to (used for subqueries).
+     * @param p     Root of the ProductDescription.
+     * @param query Filter query.
+     * @return List of predicates which all have to hold.
+     */
+    private List<Predicate> filterPredicates(CriteriaBuilder cb, CriteriaQuery<?> cq, Root<ProductDescription> p,
+            FilterQuery query) {
+        List<Predicate> predicates = new ArrayList<>();
+
+        if (query.getAuthorIds() != null && !query.getAuthorIds().isEmpty()) {
+            predicates.add(p.get("author").get("id").in(query.getAuthorIds()));
         }
-        if (query.getPagesTo() == 0) {
-            data.pagesTo = 1000000;
-        } else {
-            data.pagesTo = query.getPagesTo();
+        if (query.getLanguageIds() != null && !query.getLanguageIds().isEmpty()) {
+            // Implicit inner join, products without language are filtered out
+            predicates.add(p.get("language").get("id").in(query.getLanguageIds()));
         }
-        if (query.getDiscountTo() == 0) {
-            data.discountTo = 100;
-        } else {
-            data.discountTo = query.getDiscountTo();
+        if (query.getCategoryIds() != null && !query.getCategoryIds().isEmpty()) {
+            // EXISTS instead of JOIN, so the products are not multiplied by their categories
+            Subquery<Long> sq = cq.subquery(Long.class);
+            Root<ProductDescription> sp = sq.from(ProductDescription.class);
+            Join<ProductDescription, Category> c = sp.join("categories");
+            sq.select(sp.<Long>get("id")).where(cb.equal(sp.get("id"), p.get("id")), c.get("id").in(query.getCategoryIds()));
+            predicates.add(cb.exists(sq));
         }
 
-        data.pagesFrom = query.getPagesFrom();
-        data.discountFrom = query.getDiscountFrom();
-
-        // data.print(); // TODO remove debug print
-        if (data.authorIds != null) {
-            try {
-                Query q = em.createQuery("SELECT p FROM ProductDescription p JOIN p.author a WHERE a.id IN :authorIds");
-                q.setParameter("authorIds", data.authorIds);
-                products = (List<ProductDescription>) q.getResultList();
-            } catch (Exception e) {
-                System.out.println(e);
-                return products;
-            }
-            flag = "author";
-        } else if (data.categoryIds != null) {
-            try {
-                Query q = em.createQuery(
-                        "SELECT p FROM ProductDescription p JOIN p.categories c WHERE c.id IN :categoryIds");
-                q.setParameter("categoryIds", data.categoryIds);
-                products = (List<ProductDescription>) q.getResultList();
-            } catch (Exception e) {
-                System.out.println(e);
-                return products;
-            }
-            flag = "category";
-        } else if (data.languageIds != null) {
-            try {
-                Query q = em.createQuery("SELECT p FROM ProductDescription p WHERE p.language.id IN :languageIds");
-                q.setParameter("languageIds", data.languageIds);
-                products = (List<ProductDescription>) q.getResultList();
-            } catch (Exception e) {
-                System.out.println(e);
-                return products;
+        double priceFrom = query.getPriceFrom() == null ? 0 : query.getPriceFrom();
+        double priceTo = query.getPriceTo() == null ? 999999.99 : query.getPriceTo();
+        int pagesTo = query.getPagesTo() == 0 ? 1000000 : query.getPagesTo();
+        int discountTo = query.getDiscountTo() == 0 ? 100 : query.getDiscountTo();
+
+        predicates.add(cb.between(p.<Double>get("effectivePrice"), priceFrom, priceTo));
+
+        predicates.add(cb.between(p.<Integer>get("pages"), query.getPagesFrom(), pagesTo));
+
+        // Products without discount are not filtered by the discount range
+        predicates.add(cb.or(cb.isNull(p.get("discount")),
+                cb.between(discountJoin(p).<Integer>get("discount"), query.getDiscountFrom(), discountTo)));
+
+        return predicates;
+    }
+
+    /**
+     * Returns LEFT JOIN of the product discount, reusing it if it was already created.
+     */
+    @SuppressWarnings("unchecked")
+    private Join<ProductDescription, Discount> discountJoin(Root<ProductDescription> p) {
+        for (Join<ProductDescription, ?> join : p.getJoins()) {
+            if (join.getAttribute().getName().equals("discount")) {
+                return (Join<ProductDescription, Discount>) join;
             }
-            flag = "language";
-        } else {
-            products = findAll();
         }
-        // Filter products by author
-        if (products != null && data.authorIds != null && flag != "author") {
-            products.removeIf(p -> {
-                for (Long id : data.authorIds) {
-                    if (p.getAuthor().getId() == id) {
-                        return false;
-                    }
+        return p.join("discount", JoinType.LEFT);
+    }
+
+    /**
+     * Returns one page of the catalog using keyset (seek) pagination.
+     * The page continues right after the cursor, so the database does not have
+     * to skip the previous pages like with OFFSET.
+     * 
+     * @param filter     Filter query, can be null.
+     * @param search     Searched text, can be null.
+     * @param sort       Column to sort by, the id is always used as a tiebreaker.
+     * @param descending If to sort in descending order.
+     * @param after      Cursor of the previous page, null for the first page.
+     * @param limit      Maximal number of returned products.
+     * @return List of ProductDescriptions
+     */
+    public List<ProductDescription> findPage(FilterQuery filter, String search, ProductSort sort, boolean descending,
+            ProductPageCursor after, int limit) {
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<ProductDescription> cq = cb.createQuery(ProductDescription.class);
+            Root<ProductDescription> p = cq.from(ProductDescription.class);
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter != null) {
+                predicates.addAll(filterPredicates(cb, cq, p, filter));
+            }
+            if (search != null) {
+                List<Long> ids = searchIds(search);
+                if (ids.isEmpty()) {
+                    return List.of();
                 }
-                return true;
-            });
-        }
-        // Filter products by category
-        if (products != null && data.categoryIds != null && flag != "category") {
-            products.removeIf(p -> {
-                for (Category c : p.getCategories()) {
-                    if (data.categoryIds.contains(c.getId())) {
-                        return false;
-                    }
+                predicates.add(p.get("id").in(ids));
+            }
+
+            Path<Long> id = p.get("id");
+            if (after != null) {
+                switch (sort) {
+                    case NAME:
+                        predicates.add(seek(cb, p.<String>get("name"), after.getLastValue(), id, after.getLastId(),
+                                descending));
+                        break;
+                    case PRICE:
+                        predicates.add(seek(cb, p.<Double>get("effectivePrice"), after.getPriceValue(), id,
+                                after.getLastId(), descending));
+                        break;
+                    default:
+                        predicates.add(descending ? cb.lessThan(id, after.getLastId())
+                                : cb.greaterThan(id, after.getLastId()));
                 }
-                return true;
-            });
-        }
+            }
 
-        // Filter products by language
-        if (products != null && data.languageIds != null && flag != "language") {
-            products.removeIf(p -> p.getLanguage() == null);
-            products.removeIf(p -> !data.languageIds.contains(p.getLanguage().getId()));
-        }
-        // Filter products by current price, pages and discount
-        if (products != null) {
-            products.removeIf(p -> p.getCurrentPrice() < data.priceFrom || p.getCurrentPrice() > data.priceTo);
-        }
-        if (products != null) {
-            products.removeIf(p -> p.getPages() < data.pagesFrom || p.getPages() > data.pagesTo);
+            List<Order> orderBy = new ArrayList<>();
+            if (sort == ProductSort.NAME) {
+                orderBy.add(descending ? cb.desc(p.get("name")) : cb.asc(p.get("name")));
+            } else if (sort == ProductSort.PRICE) {
+                orderBy.add(descending ? cb.desc(p.get("effectivePrice")) : cb.asc(p.get("effectivePrice")));
+            }
+            orderBy.add(descending ? cb.desc(id) : cb.asc(id));
+
+            cq.select(p).where(predicates.toArray(new Predicate[0])).orderBy(orderBy);
+            return withDetail(em.createQuery(cq)).setMaxResults(limit).getResultList();
+        } catch (Exception e) {
+            System.out.println(e);
+            return List.of();
         }
-        if (products != null) {
-            products.removeIf(p -> p.getDiscount() != null && (p.getDiscount().getDiscount() < data.discountFrom
-                    || p.getDiscount().getDiscount() > data.discountTo));
+    }
+
+    /**
+     * Predicate for rows following (key, id) in the given order.
+     */
+    private <T extends Comparable<? super T>> Predicate seek(CriteriaBuilder cb, Expression<T> key, T value,
+            Path<Long> id, long lastId, boolean descending) {
+        if (descending) {
+            return cb.or(cb.lessThan(key, value), cb.and(cb.equal(key, value), cb.lessThan(id, lastId)));
         }
-        return products;
+        return cb.or(cb.greaterThan(key, value), cb.and(cb.equal(key, value), cb.greaterThan(id, lastId)));
     }
 
     /**
@@ -345,7 +514,169 @@ public class ProductDescriptionManager {
      */
     @Transactional
     public ProductDescription save(ProductDescription d) {
-        return em.merge(d);
+        ProductDescription saved = em.merge(d);
+        // Flush so the new product has its id
+        em.flush();
+        productChanged.fire(new ProductChangedEvent(saved.getId(), saved));
+        return saved;
+    }
+
+    /**
+     * Applies partial updates of many products in one transaction.
+     * Authors, languages and categories referenced by all updates are read up front
+     * by IN queries, products are read, flushed and cleared from the persistence
+     * context in chunks of BULK_CHUNK, so a flush does not check the products of
+     * the previous chunks, and evidence of the changed products is written in JDBC batches.
+     * Unknown authors, languages and categories are ignored (as in the single update),
+     * unknown products are reported.
+     * 
+     * @param updates Updates, applied in the given order.
+     * @param user    User doing the update, written to the evidence.
+     * @return Numbers of updated and unchanged products and ids of missing products.
+     */
+    @Transactional
+    public BulkUpdateResultDTO bulkUpdate(List<BulkProductUpdateDTO> updates, RegisteredUser user) {
+        Set<Long> authorIds = new HashSet<>();
+        Set<Long> languageIds = new HashSet<>();
+        Set<Long> categoryIds = new HashSet<>();
+        for (BulkProductUpdateDTO u : updates) {
+            if (u.getAuthorId() != null) {
+                authorIds.add(u.getAuthorId());
+            }
+            if (u.getLanguageId() != null) {
+                languageIds.add(u.getLanguageId());
+            }
+            if (u.getCategoryIds() != null) {
+                categoryIds.addAll(u.getCategoryIds());
+            }
+        }
+        Map<Long, BookAuthor> authors = findReferences(BookAuthor.class, authorIds);
+        Map<Long, Language> languages = findReferences(Language.class, languageIds);
+        Map<Long, Category> categories = findReferences(Category.class, categoryIds);
+
+        BulkUpdateResultDTO result = new BulkUpdateResultDTO();
+        // A product updated several times is counted once, as updated if any of its updates changed it
+        Set<Long> changedIds = new HashSet<>();
+        Set<Long> unchangedIds = new HashSet<>();
+        for (int from = 0; from < updates.size(); from += BULK_CHUNK) {
+            List<BulkProductUpdateDTO> chunk = updates.subList(from, Math.min(updates.size(), from + BULK_CHUNK));
+            Map<Long, ProductDescription> products = new HashMap<>();
+            for (ProductDescription p : findByIds(chunk.stream().map(BulkProductUpdateDTO::getId).toList())) {
+                products.put(p.getId(), p);
+            }
+            Set<ProductDescription> changedInChunk = new LinkedHashSet<>();
+            for (BulkProductUpdateDTO u : chunk) {
+                ProductDescription p = products.get(u.getId());
+                if (p == null) {
+                    result.getNotFound().add(u.getId());
+                } else if (apply(p, u, authors, languages, categories)) {
+                    changedInChunk.add(p);
+                } else {
+                    unchangedIds.add(p.getId());
+                }
+            }
+            em.flush();
+            evidenceManager.saveAll(changedInChunk.stream().map(ProductDescription::getId).toList(), user,
+                    "Product information was updated.");
+            for (ProductDescription p : changedInChunk) {
+                changedIds.add(p.getId());
+                // A product changed again in a later chunk gets a later event with its final state
+                productChanged.fire(new ProductChangedEvent(p.getId(), p));
+            }
+            em.clear();
+        }
+        unchangedIds.removeAll(changedIds);
+        result.setUpdated(changedIds.size());
+        result.setUnchanged(unchangedIds.size());
+        return result;
+    }
+
+    /**
+     * Applies the sent values to the product.
+     * The maps were read before the persistence context was cleared, so the
+     * references are set as managed instances found by their ids (from the shared
+     * cache after the first chunk), loaded, as the change events read their names.
+     * 
+     * @return True if anything changed.
+     */
+    private boolean apply(ProductDescription p, BulkProductUpdateDTO u, Map<Long, BookAuthor> authors,
+            Map<Long, Language> languages, Map<Long, Category> categories) {
+        boolean changed = false;
+        if (u.getName() != null && !u.getName().equals(p.getName())) {
+            p.setName(u.getName());
+            changed = true;
+        }
+        if (u.getDescription() != null && !u.getDescription().equals(p.getDescription())) {
+            p.setDescription(u.getDescription());
+            changed = true;
+        }
+        if (u.getPrice() != null && u.getPrice() != p.getPrice()) {
+            p.setPrice(u.getPrice());
+            changed = true;
+        }
+        if (u.getISBN() != null && !u.getISBN().equals(p.getISBN())) {
+            p.setISBN(u.getISBN());
+            changed = true;
+        }
+        if (u.getPages() != null && u.getPages() != p.getPages()) {
+            p.setPages(u.getPages());
+            changed = true;
+        }
+        if (u.getImage() != null && !u.getImage().equals(p.getImage())) {
+            p.setImage(u.getImage());
+            changed = true;
+        }
+        BookAuthor author = u.getAuthorId() == null ? null : authors.get(u.getAuthorId());
+        if (author != null && (p.getAuthor() == null || p.getAuthor().getId() != author.getId())) {
+            p.setAuthor(em.find(BookAuthor.class, author.getId()));
+            changed = true;
+        }
+        Language language = u.getLanguageId() == null ? null : languages.get(u.getLanguageId());
+        if (language != null && (p.getLanguage() == null || p.getLanguage().getId() != language.getId())) {
+            p.setLanguage(em.find(Language.class, language.getId()));
+            changed = true;
+        }
+        if (u.getCategoryIds() != null) {
+            Set<Long> wanted = new HashSet<>();
+            for (Long id : u.getCategoryIds()) {
+                if (categories.containsKey(id)) {
+                    wanted.add(id);
+                }
+            }
+            Set<Long> current = new HashSet<>();
+            // Copy, the list is changed in the loop
+            for (Category c : new ArrayList<>(p.getCategories())) {
+                if (!wanted.contains(c.getId())) {
+                    p.removeCategory(c);
+                    changed = true;
+                } else {
+                    current.add(c.getId());
+                }
+            }
+            for (Long id : wanted) {
+                if (current.add(id)) {
+                    p.addCategory(em.find(Category.class, id));
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns entities of the type with given ids by one IN query.
+     */
+    private <T> Map<Long, T> findReferences(Class<T> type, Collection<Long> ids) {
+        Map<Long, T> found = new HashMap<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+        // Entity names are the class names
+        for (Object[] row : em.createQuery("SELECT e.id, e FROM " + type.getSimpleName() + " e WHERE e.id IN :ids",
+                Object[].class).setParameter("ids", ids).getResultList()) {
+            found.put(((Number) row[0]).longValue(), type.cast(row[1]));
+        }
+        return found;
     }
 
     /**
@@ -358,5 +689,6 @@ public class ProductDescriptionManager {
     public void delete(ProductDescription d) {
         ProductDescription new_d = em.merge(d);
         em.remove(new_d);
+        productChanged.fire(new ProductChangedEvent(new_d.getId(), null));
     }
 }
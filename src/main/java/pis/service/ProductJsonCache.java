@@ -0,0 +1,164 @@
+/**
+ * PIS Projekt 2024
+ * ProductJsonCache.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import pis.api.dto.CacheStatsDTO;
+import pis.api.dto.ProductDetailDTO;
+import pis.data.BookAuthor;
+import pis.data.Category;
+import pis.data.Discount;
+import pis.data.Language;
+
+/**
+ * Cache of the serialized product detail, the most requested response of the
+ * storefront. The JSON is kept as UTF-8 bytes together with its gzip variant,
+ * so a product view neither maps nor serializes the product.
+ * An entry is dropped when the product, its stock or price, or its author,
+ * language, discount or one of its categories changes (and after TTL, in case
+ * it was changed outside of the application).
+ */
+@ApplicationScoped
+public class ProductJsonCache {
+    private static final int MAX_SIZE = 5000;
+    private static final long TTL_MILLIS = 10 * 60 * 1000;
+
+    private final ExpiringCache<Long, Entry> cache = new ExpiringCache<>("product-json", MAX_SIZE, TTL_MILLIS);
+    private final Jsonb jsonb = JsonbBuilder.create();
+
+    /**
+     * Serialized product detail and ids of the reference data it contains.
+     */
+    public static class Entry {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final long authorId;
+        private final long languageId;
+        private final long discountId;
+        private final long[] categoryIds;
+
+        private Entry(ProductDetailDTO dto, byte[] json, byte[] gzip) {
+            this.json = json;
+            this.gzip = gzip;
+            this.authorId = dto.getAuthor() == null ? -1 : dto.getAuthor().getId();
+            this.languageId = dto.getLanguage() == null ? -1 : dto.getLanguage().getId();
+            this.discountId = dto.getDiscount() == null ? -1 : dto.getDiscount().getId();
+            this.categoryIds = dto.getCategories() == null ? new long[0]
+                    : dto.getCategories().stream().mapToLong(Category::getId).toArray();
+        }
+
+        /**
+         * Returns the JSON as UTF-8 bytes, must not be modified.
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * Returns the gzip-compressed JSON, must not be modified.
+         */
+        public byte[] getGzip() {
+            return gzip;
+        }
+
+        /**
+         * Tells if the entry contains the reference data, id null means any of the type.
+         */
+        private boolean references(Class<?> type, Long id) {
+            if (type == BookAuthor.class) {
+                return authorId >= 0 && (id == null || id == authorId);
+            }
+            if (type == Language.class) {
+                return languageId >= 0 && (id == null || id == languageId);
+            }
+            if (type == Discount.class) {
+                return discountId >= 0 && (id == null || id == discountId);
+            }
+            if (type == Category.class) {
+                for (long categoryId : categoryIds) {
+                    if (id == null || id == categoryId) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the serialized product detail, loading and serializing it on a miss.
+     *
+     * @param id     Id of the product.
+     * @param loader Loads the product detail, returns null if the product does not exist.
+     * @return Entry with the serialized detail, null if the product does not exist.
+     */
+    public Entry get(long id, Supplier<ProductDetailDTO> loader) {
+        return cache.get(id, () -> {
+            ProductDetailDTO dto = loader.get();
+            return dto == null ? null : serialize(dto);
+        });
+    }
+
+    private Entry serialize(ProductDetailDTO dto) {
+        byte[] json = jsonb.toJson(dto).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream(json.length / 3 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(json);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return new Entry(dto, json, gzip.toByteArray());
+    }
+
+    public void onProductChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangedEvent event) {
+        cache.invalidate(event.getId());
+    }
+
+    public void onStockChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) StockChangedEvent event) {
+        for (Long id : event.getProductIds()) {
+            cache.invalidate(id);
+        }
+    }
+
+    public void onPricesChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) PricesChangedEvent event) {
+        for (Long id : event.getProductIds()) {
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * Drops only the products containing the changed author, language, discount or category.
+     */
+    public void onReferenceDataChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        cache.invalidateIf(e -> e.references(event.getType(), event.getId()));
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            jsonb.close();
+        } catch (Exception e) {
+            System.out.println(e);
+        }
+    }
+
+    public CacheStatsDTO stats() {
+        return cache.stats();
+    }
+}
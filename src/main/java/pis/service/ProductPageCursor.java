@@ -0,0 +1,110 @@
+/**
+ * PIS Projekt 2024
+ * ProductPageCursor.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import pis.data.ProductDescription;
+
+/**
+ * Position in a sorted catalog listing (keyset pagination).
+ * The cursor remembers the sort key and the id of the last returned product,
+ * the next page then continues right after them. For the client it is an
+ * opaque string.
+ */
+public class ProductPageCursor {
+    private ProductSort sort;
+    private boolean descending;
+    private long lastId;
+    private String lastValue;
+
+    public ProductPageCursor(ProductSort sort, boolean descending, long lastId, String lastValue) {
+        this.sort = sort;
+        this.descending = descending;
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    /**
+     * Creates cursor pointing right after the given product.
+     * 
+     * @param sort       Sort of the listing.
+     * @param descending If the listing is sorted in descending order.
+     * @param last       Last product of the current page.
+     * @return Cursor for the next page.
+     */
+    public static ProductPageCursor after(ProductSort sort, boolean descending, ProductDescription last) {
+        String value;
+        switch (sort) {
+            case NAME:
+                value = last.getName();
+                break;
+            case PRICE:
+                // Stored value, so it matches the database exactly
+                value = Double.toString(last.getEffectivePrice());
+                break;
+            default:
+                value = "";
+        }
+        return new ProductPageCursor(sort, descending, last.getId(), value);
+    }
+
+    /**
+     * Returns the cursor as opaque string.
+     */
+    public String encode() {
+        String raw = sort.name() + ":" + (descending ? "d" : "a") + ":" + lastId + ":" + lastValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses cursor created by encode().
+     * 
+     * @param cursor Opaque cursor string.
+     * @return Parsed cursor.
+     * @throws IllegalArgumentException if the cursor is not valid.
+     */
+    public static ProductPageCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        // Value is the last part, so it can contain the separator
+        String[] parts = raw.split(":", 4);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        ProductSort sort = ProductSort.fromString(parts[0]);
+        if (sort == null) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        ProductPageCursor c = new ProductPageCursor(sort, parts[1].equals("d"), Long.parseLong(parts[2]), parts[3]);
+        if (sort == ProductSort.PRICE) {
+            // Validates the value
+            c.getPriceValue();
+        }
+        return c;
+    }
+
+    public ProductSort getSort() {
+        return sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    public double getPriceValue() {
+        return Double.parseDouble(lastValue);
+    }
+}
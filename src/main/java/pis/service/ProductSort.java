@@ -0,0 +1,30 @@
+/**
+ * PIS Projekt 2024
+ * ProductSort.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+/**
+ * Columns the catalog listing can be sorted by. Every sort is made stable
+ * by using the product id as the second sort key.
+ */
+public enum ProductSort {
+    ID, NAME, PRICE;
+
+    /**
+     * Returns sort by its name (case insensitive), otherwise null.
+     * 
+     * @param name Name of the sort, e.g. "price".
+     * @return ProductSort
+     */
+    public static ProductSort fromString(String name) {
+        for (ProductSort sort : values()) {
+            if (sort.name().equalsIgnoreCase(name)) {
+                return sort;
+            }
+        }
+        return null;
+    }
+}
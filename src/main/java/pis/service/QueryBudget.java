@@ -0,0 +1,22 @@
+/**
+ * PIS Projekt 2024
+ * QueryBudget.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximal number of SQL statements an endpoint may run (including authentication).
+ * Checked by QueryBudgetFilter on every request.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface QueryBudget {
+    int value();
+}
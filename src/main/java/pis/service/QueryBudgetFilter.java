@@ -0,0 +1,70 @@
+/**
+ * PIS Projekt 2024
+ * QueryBudgetFilter.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Counts SQL statements of every request and checks them against the QueryBudget of the endpoint.
+ * An exceeded budget is logged. With pis.queryBudget.strict=true the request fails
+ * instead and the count is returned in the X-SQL-Statements header, so tests calling
+ * the API catch N+1 regressions.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100) // Before authentication, its queries count too
+public class QueryBudgetFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    public static final String HEADER = "X-SQL-Statements";
+
+    private static final boolean strict = ConfigProvider.getConfig()
+            .getOptionalValue("pis.queryBudget.strict", Boolean.class).orElse(false);
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        QueryCounter.start();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        int statements = QueryCounter.stop();
+        if (statements < 0) {
+            return;
+        }
+        if (strict) {
+            response.getHeaders().putSingle(HEADER, statements);
+        }
+
+        Method method = resourceInfo.getResourceMethod();
+        QueryBudget budget = method == null ? null : method.getAnnotation(QueryBudget.class);
+        if (budget == null || statements <= budget.value()) {
+            return;
+        }
+        String message = request.getMethod() + " " + request.getUriInfo().getPath() + " ran " + statements
+                + " SQL statements, budget is " + budget.value();
+        System.out.println(message);
+        if (strict) {
+            response.setStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            response.setEntity(message, null, MediaType.TEXT_PLAIN_TYPE);
+        }
+    }
+}
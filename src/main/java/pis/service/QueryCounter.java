@@ -0,0 +1,59 @@
+/**
+ * PIS Projekt 2024
+ * QueryCounter.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+/**
+ * EclipseLink session listener counting SQL statements run by the current thread.
+ * Registered in persistence.xml, counting is started and stopped for every
+ * request by QueryBudgetFilter.
+ */
+public class QueryCounter extends SessionEventAdapter {
+    private static final ThreadLocal<int[]> count = new ThreadLocal<>();
+
+    /**
+     * Starts counting statements of the current thread from zero.
+     */
+    public static void start() {
+        count.set(new int[1]);
+    }
+
+    /**
+     * Stops counting and returns the number of statements since start, -1 if not started.
+     */
+    public static int stop() {
+        int[] c = count.get();
+        count.remove();
+        return c == null ? -1 : c[0];
+    }
+
+    /**
+     * Runs the task without counting its statements, used for loading application-wide
+     * data (e.g. indexes) which is not a cost of the request that happened to trigger it.
+     */
+    public static void uncounted(Runnable task) {
+        int[] c = count.get();
+        count.remove();
+        try {
+            task.run();
+        } finally {
+            if (c != null) {
+                count.set(c);
+            }
+        }
+    }
+
+    @Override
+    public void postExecuteCall(SessionEvent event) {
+        int[] c = count.get();
+        if (c != null) {
+            c[0]++;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * PIS Projekt 2024
+ * ReferenceDataCache.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import pis.api.dto.CacheStatsDTO;
+
+/**
+ * Cache of the lists of categories, languages, authors and discounts.
+ * They are read on every page of the storefront but change rarely, so the
+ * lists are kept in memory and dropped when some of them changes
+ * (and after TTL, in case it was changed outside of the application).
+ */
+@ApplicationScoped
+public class ReferenceDataCache {
+    private static final int MAX_SIZE = 16;
+    private static final long TTL_MILLIS = 10 * 60 * 1000;
+
+    private final ExpiringCache<Class<?>, List<?>> cache = new ExpiringCache<>("reference-data", MAX_SIZE, TTL_MILLIS);
+
+    /**
+     * Returns all entities of the type, loading them on a miss.
+     * 
+     * @param type   Entity class.
+     * @param loader Loads all entities of the type from the database.
+     * @return Unmodifiable list of the entities.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> findAll(Class<T> type, Supplier<List<T>> loader) {
+        return (List<T>) cache.get(type, () -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * Drops the cached list after the change was committed.
+     */
+    public void onReferenceDataChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        cache.invalidate(event.getType());
+    }
+
+    public CacheStatsDTO stats() {
+        return cache.stats();
+    }
+}
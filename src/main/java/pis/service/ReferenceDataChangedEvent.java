@@ -0,0 +1,42 @@
+/**
+ * PIS Projekt 2024
+ * ReferenceDataChangedEvent.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+/**
+ * CDI event fired when a category, language, author or discount was saved or deleted.
+ */
+public class ReferenceDataChangedEvent {
+    private Class<?> type;
+    private Long id;
+
+    /**
+     * @param type Entity class of the changed data, e.g. Category.class.
+     */
+    public ReferenceDataChangedEvent(Class<?> type) {
+        this(type, null);
+    }
+
+    /**
+     * @param type Entity class of the changed data, e.g. Category.class.
+     * @param id   Id of the changed entity, null if several of them changed.
+     */
+    public ReferenceDataChangedEvent(Class<?> type, Long id) {
+        this.type = type;
+        this.id = id;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns id of the changed entity, null if several of them changed.
+     */
+    public Long getId() {
+        return id;
+    }
+}
@@ -6,9 +6,12 @@
 
 package pis.service;
 import java.util.List;
+import java.util.Locale;
 
 import pis.data.RegisteredUser;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
@@ -22,6 +25,9 @@ public class RegisteredUserManager {
     @PersistenceContext
     private EntityManager em;
 
+    @Inject
+    private Event<UserChangedEvent> userChanged;
+
     /**
      * Returns list of all users.
      */
@@ -44,8 +50,8 @@ public class RegisteredUserManager {
     public RegisteredUser findByEmail(String email) {
         RegisteredUser u = null;
         try {
-            Query q = em.createQuery("SELECT u FROM RegisteredUser u WHERE lower(u.email) = lower( :email )");
-            q.setParameter("email", email); // is this safe? seems to be
+            Query q = em.createNamedQuery("RegisteredUser.findByEmail");
+            q.setParameter("email", email.toLowerCase(Locale.ROOT));
             return (RegisteredUser) q.getSingleResult();
         }
         catch(Exception e) {
@@ -147,7 +153,9 @@ public class RegisteredUserManager {
      */
     @Transactional
     public RegisteredUser save(RegisteredUser c) {
-        return em.merge(c);
+        RegisteredUser saved = em.merge(c);
+        userChanged.fire(new UserChangedEvent(saved.getId()));
+        return saved;
     }
 
     /**
@@ -159,5 +167,6 @@ public class RegisteredUserManager {
     public void delete(RegisteredUser c) {
         RegisteredUser new_c = em.merge(c);
         em.remove(new_c);
+        userChanged.fire(new UserChangedEvent(new_c.getId()));
     }
 }
@@ -0,0 +1,276 @@
+/**
+ * PIS Projekt 2024
+ * SchemaMigrations.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import jakarta.annotation.Priority;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.context.control.RequestContextController;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptor;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+
+/**
+ * Upgrades databases created by older versions of the application.
+ * Schema generation only creates missing tables, so columns added to existing
+ * entities are added here and filled from the existing data. Runs before the
+ * other startup tasks, which already read the new columns.
+ */
+@ApplicationScoped
+public class SchemaMigrations {
+    @Resource(lookup = "jdbc/eshop")
+    private DataSource dataSource;
+
+    @PersistenceUnit
+    private EntityManagerFactory emf;
+
+    @Inject
+    private Instance<StatisticsRollupManager> rollupManager;
+
+    @Inject
+    private Instance<RequestContextController> requestContext;
+
+    public void onStartup(
+            @Observes @Priority(Interceptor.Priority.APPLICATION) @Initialized(ApplicationScoped.class) Object init) {
+        // Metamodel is read first, so the schema is already generated
+        emf.getMetamodel();
+        boolean productIds = false;
+        try (Connection connection = dataSource.getConnection()) {
+            migrateLowerCaseColumns(connection);
+            migrateEffectivePrices(connection);
+            productIds = migrateOrderItemProductIds(connection);
+            migrateCampaignEvidenceIndexes(connection);
+            createMissingIndexes(connection);
+        } catch (Exception e) {
+            System.out.println(e);
+        }
+        // Entities read before the migration would keep the old values
+        emf.getCache().evictAll();
+        if (productIds) {
+            rebuildRollups();
+        }
+    }
+
+    /**
+     * Adds the lower-cased copies of the looked up names and fills them.
+     * Without them the lookups by name and the login find nothing.
+     */
+    private void migrateLowerCaseColumns(Connection connection) throws SQLException {
+        addColumn(connection, "BookAuthor", "firstNameLower", "VARCHAR(255)");
+        addColumn(connection, "BookAuthor", "lastNameLower", "VARCHAR(255)");
+        addColumn(connection, "Language", "languageLower", "VARCHAR(255)");
+        addColumn(connection, "RegisteredUser", "emailLower", "VARCHAR(255)");
+        fillLowerCase(connection, "BookAuthor", "firstNameLower", "firstName");
+        fillLowerCase(connection, "BookAuthor", "lastNameLower", "lastName");
+        fillLowerCase(connection, "Language", "languageLower", "language");
+        fillLowerCase(connection, "RegisteredUser", "emailLower", "email");
+    }
+
+    private static void fillLowerCase(Connection connection, String table, String column, String source)
+            throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            int filled = statement.executeUpdate("UPDATE " + table + " SET " + column + " = LOWER(" + source + ")"
+                    + " WHERE " + column + " IS NULL AND " + source + " IS NOT NULL");
+            if (filled > 0) {
+                System.out.println("Filled " + column + " of " + filled + " rows of " + table);
+            }
+        }
+    }
+
+    /**
+     * Adds the stored price after the discount and computes it the same way as
+     * ProductDescription.getCurrentPrice. Products of an old database would hold
+     * 0 and be left out of the price filters and sorted first.
+     */
+    private void migrateEffectivePrices(Connection connection) throws SQLException {
+        addColumn(connection, "ProductDescription", "effectivePrice", "DOUBLE DEFAULT 0");
+        try (Statement statement = connection.createStatement()) {
+            int filled = statement.executeUpdate("UPDATE ProductDescription SET effectivePrice = price"
+                    + " * ((100.0 - COALESCE((SELECT d.discount FROM Discount d"
+                    + " WHERE d.id = ProductDescription.discount_id), 0)) / 100.0)"
+                    + " WHERE (effectivePrice = 0 OR effectivePrice IS NULL) AND price <> 0");
+            if (filled > 0) {
+                System.out.println("Filled effectivePrice of " + filled + " products");
+            }
+        }
+    }
+
+    /**
+     * Fills OrderItem.productId of items created before it existed. Items are
+     * matched to the product of the same name, items of products which no longer
+     * exist get a negative id per name, so their sales are not merged together.
+     *
+     * @return True if some item was changed.
+     */
+    private boolean migrateOrderItemProductIds(Connection connection) throws SQLException {
+        addColumn(connection, "OrderItem", "productId", "BIGINT DEFAULT 0");
+        Map<String, Long> names = new LinkedHashMap<>();
+        boolean unnamed = false;
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT productName, MIN(id) FROM OrderItem"
+                        + " WHERE productId = 0 OR productId IS NULL GROUP BY productName")) {
+            while (rs.next()) {
+                if (rs.getString(1) == null) {
+                    unnamed = true;
+                } else {
+                    names.put(rs.getString(1), -rs.getLong(2));
+                }
+            }
+        }
+        if (names.isEmpty() && !unnamed) {
+            return false;
+        }
+        try (PreparedStatement product = connection.prepareStatement(
+                "SELECT MIN(id) FROM ProductDescription WHERE name = ?");
+                PreparedStatement update = connection.prepareStatement("UPDATE OrderItem SET productId = ?"
+                        + " WHERE (productId = 0 OR productId IS NULL) AND productName = ?")) {
+            for (Map.Entry<String, Long> e : names.entrySet()) {
+                product.setString(1, e.getKey());
+                try (ResultSet rs = product.executeQuery()) {
+                    if (rs.next() && rs.getObject(1) != null) {
+                        e.setValue(rs.getLong(1));
+                    }
+                }
+                update.setLong(1, e.getValue());
+                update.setString(2, e.getKey());
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+        if (unnamed) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("UPDATE OrderItem SET productId = -id WHERE productId = 0 OR productId IS NULL");
+            }
+        }
+        System.out.println("Filled product ids of order items of " + names.size() + " products");
+        return true;
+    }
+
+    /**
+     * Numbers the products of campaigns started before CampaignProduct.evidenceIndex
+     * existed, in the order of their ids, so their end evidence can be written.
+     */
+    private void migrateCampaignEvidenceIndexes(Connection connection) throws SQLException {
+        addColumn(connection, "CampaignProduct", "evidenceIndex", "INT");
+        List<Long> campaigns = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery(
+                        "SELECT DISTINCT campaignId FROM CampaignProduct WHERE evidenceIndex IS NULL")) {
+            while (rs.next()) {
+                campaigns.add(rs.getLong(1));
+            }
+        }
+        if (campaigns.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement products = connection.prepareStatement(
+                "SELECT productId FROM CampaignProduct WHERE campaignId = ? ORDER BY productId");
+                PreparedStatement update = connection.prepareStatement(
+                        "UPDATE CampaignProduct SET evidenceIndex = ? WHERE campaignId = ? AND productId = ?")) {
+            for (Long campaignId : campaigns) {
+                products.setLong(1, campaignId);
+                int index = 0;
+                try (ResultSet rs = products.executeQuery()) {
+                    while (rs.next()) {
+                        update.setInt(1, ++index);
+                        update.setLong(2, campaignId);
+                        update.setLong(3, rs.getLong(1));
+                        update.addBatch();
+                    }
+                }
+                update.executeBatch();
+            }
+        }
+        System.out.println("Numbered products of " + campaigns.size() + " discount campaigns");
+    }
+
+    /**
+     * Creates the indexes declared on the entities (see SchemaVerifier) which the
+     * database does not have, schema generation creates them only with a new table.
+     * An index which can not be created is reported and the others are still created.
+     */
+    private void createMissingIndexes(Connection connection) throws SQLException {
+        for (SchemaVerifier.DeclaredIndex index : SchemaVerifier.declaredIndexes(emf)) {
+            if (SchemaVerifier.exists(connection.getMetaData(), index)) {
+                continue;
+            }
+            try {
+                createIndex(connection, index.getName(), index.getTable(), String.join(", ", index.getColumns()));
+                System.out.println("Created index " + index.getName() + " on " + index.getTable());
+            } catch (SQLException e) {
+                System.out.println(e);
+            }
+        }
+    }
+
+    /**
+     * Rollups built before the product ids were filled count the sales under product 0.
+     */
+    private void rebuildRollups() {
+        RequestContextController controller = requestContext.get();
+        boolean activated = controller.activate();
+        try {
+            rollupManager.get().rebuildAll();
+        } catch (Exception e) {
+            System.out.println(e);
+        } finally {
+            if (activated) {
+                controller.deactivate();
+            }
+        }
+    }
+
+    /**
+     * Adds the column if the table does not have it.
+     *
+     * @return True if the column was added.
+     */
+    private static boolean addColumn(Connection connection, String table, String column, String definition)
+            throws SQLException {
+        if (hasColumn(connection.getMetaData(), table, column)) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+        System.out.println("Added column " + column + " to " + table);
+        return true;
+    }
+
+    private static void createIndex(Connection connection, String name, String table, String columns)
+            throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    private static boolean hasColumn(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        // Unquoted identifiers are stored upper-cased
+        try (ResultSet rs = metaData.getColumns(null, null, table.toUpperCase(Locale.ROOT),
+                column.toUpperCase(Locale.ROOT))) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * PIS Projekt 2024
+ * SchemaVerifier.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.DatabaseRecord;
+import org.eclipse.persistence.sessions.server.Server;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinTable;
+import jakarta.persistence.PersistenceUnit;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.EntityType;
+
+/**
+ * Checks the database schema at startup.
+ * Reports indexes declared on the entities (@Table and @JoinTable) which are
+ * missing in the database -- schema generation creates them only together with
+ * a new table and SchemaMigrations creates the rest, so one left is an index it
+ * could not create -- and, on Derby, the access path of every named query, so a
+ * table scan on a hot lookup is seen in the log.
+ */
+@ApplicationScoped
+public class SchemaVerifier {
+    /** Access to one table in the Derby runtime statistics. */
+    private static final Pattern SCAN = Pattern
+            .compile("(Index|Table|Constraint) Scan ResultSet for (\\S+)(?: using (?:index|constraint) (\\S+))?");
+
+    @Resource(lookup = "jdbc/eshop")
+    private DataSource dataSource;
+
+    @PersistenceUnit
+    private EntityManagerFactory emf;
+
+    /**
+     * Index declared on an entity.
+     */
+    static class DeclaredIndex {
+        private final String table;
+        private final String name;
+        private final List<String> columns;
+
+        private DeclaredIndex(String table, String name, List<String> columns) {
+            this.table = table;
+            this.name = name;
+            this.columns = columns;
+        }
+
+        String getTable() {
+            return table;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        List<String> getColumns() {
+            return columns;
+        }
+    }
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        // Metamodel is read first, so the schema is already generated
+        List<DeclaredIndex> declared = declaredIndexes(emf);
+        try (Connection connection = dataSource.getConnection()) {
+            for (DeclaredIndex index : declared) {
+                if (!exists(connection.getMetaData(), index)) {
+                    System.out.println("Missing index " + index.name + " on " + index.table + index.columns);
+                }
+            }
+            if (connection.getMetaData().getDatabaseProductName().contains("Derby")) {
+                reportPlans(connection);
+            }
+        } catch (Exception e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * Returns indexes declared by @Table and @JoinTable of the entities.
+     */
+    static List<DeclaredIndex> declaredIndexes(EntityManagerFactory emf) {
+        List<DeclaredIndex> indexes = new ArrayList<>();
+        for (EntityType<?> entity : emf.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            Table table = type.getAnnotation(Table.class);
+            if (table != null) {
+                String name = table.name().isEmpty() ? entity.getName() : table.name();
+                addIndexes(indexes, name, table.indexes());
+            }
+            for (Field field : type.getDeclaredFields()) {
+                JoinTable joinTable = field.getAnnotation(JoinTable.class);
+                if (joinTable != null) {
+                    addIndexes(indexes, joinTable.name(), joinTable.indexes());
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static void addIndexes(List<DeclaredIndex> indexes, String table, Index[] declared) {
+        for (Index index : declared) {
+            List<String> columns = Arrays.stream(index.columnList().split(","))
+                    .map(c -> c.trim().split("\\s+")[0])
+                    .toList();
+            indexes.add(new DeclaredIndex(table, index.name(), columns));
+        }
+    }
+
+    /**
+     * Returns true if some index of the table starts with the declared columns (in the same order).
+     */
+    static boolean exists(DatabaseMetaData metaData, DeclaredIndex declared) throws SQLException {
+        // Unquoted identifiers are stored upper-cased
+        Map<String, Map<Integer, String>> indexes = new TreeMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(null, null, declared.table.toUpperCase(Locale.ROOT), false,
+                true)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                if (name != null) {
+                    indexes.computeIfAbsent(name, n -> new TreeMap<>()).put(rs.getInt("ORDINAL_POSITION"),
+                            rs.getString("COLUMN_NAME"));
+                }
+            }
+        }
+        for (Map<Integer, String> columns : indexes.values()) {
+            List<String> names = new ArrayList<>(columns.values());
+            if (names.size() < declared.columns.size()) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < declared.columns.size(); i++) {
+                matches &= names.get(i).equalsIgnoreCase(declared.columns.get(i));
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs every named query with runtime statistics on and reports which
+     * tables it reads by index and which by a table scan.
+     * Parameters are bound to null, Derby chooses the plan when the statement
+     * is compiled, so the values do not matter.
+     */
+    private void reportPlans(Connection connection) throws SQLException {
+        Server server = emf.unwrap(Server.class);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+        }
+        try {
+            for (Map.Entry<String, List<DatabaseQuery>> e : new TreeMap<>(server.getQueries()).entrySet()) {
+                try {
+                    DatabaseQuery query = (DatabaseQuery) e.getValue().get(0).clone();
+                    query.prepareCall(server, new DatabaseRecord());
+                    String sql = query.getSQLString();
+                    if (sql != null) {
+                        System.out.println("Plan of " + e.getKey() + ": " + plan(connection, sql));
+                    }
+                } catch (Exception ex) {
+                    System.out.println("Plan of " + e.getKey() + " not available: " + ex);
+                }
+            }
+        } finally {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(0)");
+            }
+        }
+    }
+
+    private static String plan(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            // The plan does not depend on the number of read rows
+            statement.setMaxRows(1);
+            ParameterMetaData parameters = statement.getParameterMetaData();
+            for (int i = 1; i <= parameters.getParameterCount(); i++) {
+                statement.setNull(i, parameters.getParameterType(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+            }
+        }
+        String statistics;
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()")) {
+            statistics = rs.next() ? rs.getString(1) : "";
+        }
+        List<String> scans = new ArrayList<>();
+        Matcher m = SCAN.matcher(statistics);
+        while (m.find()) {
+            scans.add(m.group(1).equals("Table") ? m.group(2) + " by table scan"
+                    : m.group(2) + " by index " + m.group(3));
+        }
+        return scans.isEmpty() ? "no table access" : String.join(", ", scans);
+    }
+}
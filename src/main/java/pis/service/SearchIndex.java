@@ -0,0 +1,251 @@
+/**
+ * PIS Projekt 2024
+ * SearchIndex.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import pis.data.BookAuthor;
+import pis.data.Category;
+import pis.data.Language;
+import pis.data.ProductDescription;
+
+/**
+ * In-memory inverted index of the catalog used by the search bar.
+ * Indexes name, description, ISBN, author, categories and language of every
+ * product and ranks the results by BM25. Words are normalized by TextNormalizer,
+ * so searching works without diacritics.
+ * The index is built on first use and then updated on every product change.
+ */
+@ApplicationScoped
+public class SearchIndex {
+    /** BM25 term frequency saturation. */
+    private static final double K1 = 1.2;
+    /** BM25 document length normalization. */
+    private static final double B = 0.75;
+    /** Words of these fields count more than words of the description. */
+    private static final int NAME_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    /** Score weight of words only starting with the searched word. */
+    private static final double PREFIX_WEIGHT = 0.5;
+    /** Maximal number of words one searched word can be expanded to. */
+    private static final int MAX_PREFIX_EXPANSION = 50;
+
+    @Inject
+    private CatalogReader catalogReader;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Word -> (product id -> weighted number of occurrences), sorted for prefix search. */
+    private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    /** Product id -> its words, needed to remove the product from the postings. */
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+    /** Product id -> weighted number of its words. */
+    private final Map<Long, Integer> lengths = new HashMap<>();
+    private long totalLength = 0;
+    private volatile boolean loaded = false;
+    /** Renamed authors, categories and languages, their products are indexed again on the next search. */
+    private final Queue<ReferenceDataChangedEvent> renamed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Returns ids of products matching the query, the best matches first.
+     * 
+     * @param query Searched text.
+     * @param limit Maximal number of returned ids.
+     * @return List of product ids.
+     */
+    public List<Long> search(String query, int limit) {
+        ensureLoaded();
+        List<String> words = TextNormalizer.tokenize(query);
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return List.of();
+            }
+            double avgLength = (double) totalLength / documents.size();
+            for (String word : words) {
+                int expanded = 0;
+                // Words starting with the searched one, the word itself is the first of them
+                for (Map.Entry<String, Map<Long, Integer>> e : postings.subMap(word, word + Character.MAX_VALUE)
+                        .entrySet()) {
+                    double weight = e.getKey().equals(word) ? 1.0 : PREFIX_WEIGHT;
+                    score(e.getValue(), weight, avgLength, scores);
+                    if (++expanded >= MAX_PREFIX_EXPANSION) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> {
+            int c = Double.compare(b.getValue(), a.getValue());
+            return c != 0 ? c : Long.compare(a.getKey(), b.getKey());
+        });
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            ids.add(ranked.get(i).getKey());
+        }
+        return ids;
+    }
+
+    /**
+     * Adds BM25 score of one word to the scores of the products containing it.
+     */
+    private void score(Map<Long, Integer> posting, double weight, double avgLength, Map<Long, Double> scores) {
+        int n = documents.size();
+        int df = posting.size();
+        double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+        for (Map.Entry<Long, Integer> e : posting.entrySet()) {
+            int tf = e.getValue();
+            int length = lengths.get(e.getKey());
+            double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+            scores.merge(e.getKey(), weight * idf * norm, Double::sum);
+        }
+    }
+
+    /**
+     * Updates the index after a product was saved or deleted.
+     */
+    public void onProductChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangedEvent event) {
+        Map<String, Integer> words = event.isDeleted() ? null : words(event.getProduct());
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Will be read with the whole catalog
+                return;
+            }
+            remove(event.getId());
+            if (words != null) {
+                add(event.getId(), words);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remembers the renamed author, category or language, its products are read
+     * again on the next search (the database is not read after the commit).
+     * Changes without id only add new entities (catalog import), their products
+     * come with their own ProductChangedEvent.
+     */
+    public void onReferenceDataChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        if (loaded && event.getId() != null && (event.getType() == BookAuthor.class
+                || event.getType() == Category.class || event.getType() == Language.class)) {
+            renamed.add(event);
+        }
+    }
+
+    /**
+     * Builds the index from the database on first use, indexes again products of
+     * the renamed reference data.
+     */
+    private void ensureLoaded() {
+        if (!loaded) {
+            lock.writeLock().lock();
+            try {
+                if (!loaded) {
+                    catalogReader.forEachProduct(p -> add(p.getId(), words(p)));
+                    loaded = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        ReferenceDataChangedEvent event;
+        while ((event = renamed.poll()) != null) {
+            Map<Long, Map<String, Integer>> changed = new HashMap<>();
+            catalogReader.forEachProductReferencing(event.getType(), event.getId(),
+                    p -> changed.put(p.getId(), words(p)));
+            lock.writeLock().lock();
+            try {
+                for (Map.Entry<Long, Map<String, Integer>> e : changed.entrySet()) {
+                    // Products deleted in the meantime stay out
+                    if (documents.containsKey(e.getKey())) {
+                        remove(e.getKey());
+                        add(e.getKey(), e.getValue());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void add(long id, Map<String, Integer> words) {
+        documents.put(id, words);
+        int length = 0;
+        for (Map.Entry<String, Integer> e : words.entrySet()) {
+            postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(id, e.getValue());
+            length += e.getValue();
+        }
+        lengths.put(id, length);
+        totalLength += length;
+    }
+
+    private void remove(long id) {
+        Map<String, Integer> words = documents.remove(id);
+        if (words == null) {
+            return;
+        }
+        for (String word : words.keySet()) {
+            Map<Long, Integer> posting = postings.get(word);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+        totalLength -= lengths.remove(id);
+    }
+
+    /**
+     * Returns weighted words of the product.
+     */
+    private Map<String, Integer> words(ProductDescription p) {
+        Map<String, Integer> words = new HashMap<>();
+        addWords(words, p.getName(), NAME_WEIGHT);
+        addWords(words, p.getDescription(), 1);
+        addWords(words, p.getISBN(), 1);
+        if (p.getISBN() != null) {
+            // Whole ISBN without dashes, so it can be searched as one word
+            addWords(words, p.getISBN().replaceAll("[^0-9Xx]", ""), 1);
+        }
+        if (p.getAuthor() != null) {
+            addWords(words, p.getAuthor().getFirstName(), AUTHOR_WEIGHT);
+            addWords(words, p.getAuthor().getLastName(), AUTHOR_WEIGHT);
+        }
+        if (p.getCategories() != null) {
+            for (Category c : p.getCategories()) {
+                addWords(words, c.getName(), 1);
+                addWords(words, c.getDescription(), 1);
+            }
+        }
+        if (p.getLanguage() != null) {
+            addWords(words, p.getLanguage().getLanguage(), 1);
+        }
+        return words;
+    }
+
+    private void addWords(Map<String, Integer> words, String text, int weight) {
+        for (String word : TextNormalizer.tokenize(text)) {
+            words.merge(word, weight, Integer::sum);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * PIS Projekt 2024
+ * SearchResultCache.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import pis.api.dto.CacheStatsDTO;
+import pis.api.dto.FilterQuery;
+
+/**
+ * Cache of the ids matching search bar queries and filter queries.
+ * The storefront sends the same popular queries over and over, so their results
+ * are kept under a normalized key. Results are valid only for the CatalogVersion
+ * they were computed at, so any change of the catalog makes them stale.
+ * Admission is W-TinyLFU, rare queries do not push out the popular ones.
+ */
+@ApplicationScoped
+public class SearchResultCache {
+    private static final int MAX_SIZE = 2000;
+
+    @Inject
+    private CatalogVersion catalogVersion;
+
+    private final TinyLfuCache<String, Result> cache = new TinyLfuCache<>("search-results", MAX_SIZE);
+
+    private static class Result {
+        private final long version;
+        private final long[] ids;
+
+        private Result(long version, long[] ids) {
+            this.version = version;
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * Returns ids of products matching the search bar query.
+     * 
+     * @param query  Searched text.
+     * @param limit  Maximal number of ids, part of the key.
+     * @param loader Computes the ids on a miss.
+     * @return List of ids in the order of the loader.
+     */
+    public List<Long> search(String query, int limit, Supplier<List<Long>> loader) {
+        // Same words give the same ranking, regardless of case, diacritics and punctuation
+        long[] ids = get("search:" + limit + ":" + String.join(" ", TextNormalizer.tokenize(query)),
+                () -> loader.get().stream().mapToLong(Long::longValue).toArray());
+        return Arrays.stream(ids).boxed().toList();
+    }
+
+    /**
+     * Returns ids of products matching the filter query.
+     * 
+     * @param query  Filter query.
+     * @param loader Computes the ids on a miss.
+     * @return Ids in the order of the loader, must not be modified.
+     */
+    public long[] filter(FilterQuery query, Supplier<long[]> loader) {
+        return get("filter:" + ids(query.getAuthorIds()) + ids(query.getCategoryIds()) + ids(query.getLanguageIds())
+                + query.getPriceFrom() + ":" + query.getPriceTo() + ":" + query.getPagesFrom() + ":"
+                + query.getPagesTo() + ":" + query.getDiscountFrom() + ":" + query.getDiscountTo(), loader);
+    }
+
+    private long[] get(String key, Supplier<long[]> loader) {
+        // Read before loading, a result computed during a change is stale right away
+        long version = catalogVersion.get();
+        return cache.get(key, r -> r.version == catalogVersion.get(), () -> new Result(version, loader.get())).ids;
+    }
+
+    /**
+     * Returns the ids sorted and without duplicates, their order does not change the result.
+     */
+    private static String ids(List<Long> ids) {
+        return (ids == null ? "[]" : new TreeSet<>(ids).toString()) + ":";
+    }
+
+    public CacheStatsDTO stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * PIS Projekt 2024
+ * StatisticsRollup.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.context.control.RequestContextController;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * Keeps the statistics rollups up to date.
+ * Every created order is added to the rollups right away, and every night the
+ * previous day is recomputed from the orders, which fixes anything the
+ * incremental updates missed (failed update, order changed directly in the DB).
+ */
+@ApplicationScoped
+public class StatisticsRollup {
+    /** Hour of the day when the previous day is recomputed. */
+    private static final int COMPACTION_HOUR = 3;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    @Inject
+    private Instance<StatisticsRollupManager> rollupManager;
+
+    @Inject
+    private Instance<RequestContextController> requestContext;
+
+    /**
+     * Fills the rollups if they are empty and schedules the nightly compaction.
+     */
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        inRequest(() -> {
+            if (rollupManager.get().isEmpty()) {
+                rollupManager.get().rebuildAll();
+            }
+        });
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(COMPACTION_HOUR, 0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        executor.scheduleAtFixedRate(this::compact, Duration.between(now, next).toMinutes(),
+                TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    /**
+     * Adds the created order to the rollups.
+     * Two orders from the same day can both try to create the row of the day,
+     * so the update is retried once when it fails.
+     */
+    public void onOrderCreated(@Observes OrderCreatedEvent event) {
+        try {
+            rollupManager.get().recordOrder(event.getOrder());
+        } catch (Exception e) {
+            try {
+                rollupManager.get().recordOrder(event.getOrder());
+            } catch (Exception retry) {
+                // Nightly compaction fixes the day
+                System.out.println(retry);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the rollups of the previous day.
+     */
+    private void compact() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        inRequest(() -> rollupManager.get().rebuild(yesterday, yesterday));
+    }
+
+    /**
+     * Runs the task with an active request context, needed by the request scoped managers.
+     */
+    private void inRequest(Runnable task) {
+        RequestContextController controller = requestContext.get();
+        boolean activated = controller.activate();
+        try {
+            task.run();
+        } catch (Exception e) {
+            System.out.println(e);
+        } finally {
+            if (activated) {
+                controller.deactivate();
+            }
+        }
+    }
+}
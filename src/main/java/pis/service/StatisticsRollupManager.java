@@ -0,0 +1,276 @@
+/**
+ * PIS Projekt 2024
+ * StatisticsRollupManager.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.transaction.Transactional;
+import pis.data.Category;
+import pis.data.DailyCategorySales;
+import pis.data.DailyProductSales;
+import pis.data.DailySales;
+import pis.data.Order;
+import pis.data.OrderItem;
+
+/**
+ * Business logic for the pre-aggregated statistics (rollups).
+ * Every day has one row with number of orders and earnings and one row per
+ * sold product and category. The statistics then read one row per day
+ * instead of grouping all the orders in the range.
+ */
+@RequestScoped
+public class StatisticsRollupManager {
+    /** More sold pieces first, lower product id first on a tie. */
+    private static final Comparator<Object[]> ITEM_SALES_ORDER = Comparator
+            .<Object[]>comparingLong(row -> ((Number) row[2]).longValue())
+            .thenComparing(Comparator.<Object[]>comparingLong(row -> ((Number) row[0]).longValue()).reversed());
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Adds the order to the rollups of the day it was created.
+     * 
+     * @param order Committed order.
+     */
+    @Transactional
+    public void recordOrder(Order order) {
+        LocalDate day = order.getCreationDate().toLocalDate();
+        int updated = em.createQuery(
+                "UPDATE DailySales s SET s.orderCount = s.orderCount + 1, s.income = s.income + :income WHERE s.salesDate = :day")
+                .setParameter("income", order.getTotalPrice())
+                .setParameter("day", day)
+                .executeUpdate();
+        if (updated == 0) {
+            em.persist(new DailySales(day, 1, order.getTotalPrice()));
+        }
+
+        Map<Long, Long> products = new HashMap<>();
+        Map<Long, String> productNames = new HashMap<>();
+        Map<String, Long> categories = new HashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            products.merge(item.getProductId(), (long) item.getQuantity(), Long::sum);
+            productNames.put(item.getProductId(), item.getName());
+            if (item.getCategories() != null) {
+                for (Category c : item.getCategories()) {
+                    categories.merge(c.getName(), (long) item.getQuantity(), Long::sum);
+                }
+            }
+        }
+        for (Map.Entry<Long, Long> e : products.entrySet()) {
+            updated = em.createQuery(
+                    "UPDATE DailyProductSales s SET s.quantity = s.quantity + :quantity, s.productName = :name WHERE s.salesDate = :day AND s.productId = :id")
+                    .setParameter("quantity", e.getValue())
+                    .setParameter("name", productNames.get(e.getKey()))
+                    .setParameter("day", day)
+                    .setParameter("id", e.getKey())
+                    .executeUpdate();
+            if (updated == 0) {
+                em.persist(new DailyProductSales(day, e.getKey(), productNames.get(e.getKey()), e.getValue()));
+            }
+        }
+        for (Map.Entry<String, Long> e : categories.entrySet()) {
+            updated = em.createQuery(
+                    "UPDATE DailyCategorySales s SET s.quantity = s.quantity + :quantity WHERE s.salesDate = :day AND s.categoryName = :name")
+                    .setParameter("quantity", e.getValue())
+                    .setParameter("day", day)
+                    .setParameter("name", e.getKey())
+                    .executeUpdate();
+            if (updated == 0) {
+                em.persist(new DailyCategorySales(day, e.getKey(), e.getValue()));
+            }
+        }
+        // Conflicting insert of a concurrent order fails here, so the caller can retry
+        em.flush();
+    }
+
+    /**
+     * Recomputes the rollups of the days in the range from the orders (compaction).
+     * 
+     * @param from First day of the range (including).
+     * @param to   Last day of the range (including).
+     */
+    @Transactional
+    public void rebuild(LocalDate from, LocalDate to) {
+        for (String entity : List.of("DailySales", "DailyProductSales", "DailyCategorySales")) {
+            em.createQuery("DELETE FROM " + entity + " s WHERE s.salesDate BETWEEN :from AND :to")
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .executeUpdate();
+        }
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+
+        for (Object[] row : rangeQuery(
+                "SELECT FUNCTION('DATE', o.creationDate), COUNT(o), SUM(o.totalPrice) FROM Order o WHERE o.creationDate >= :start AND o.creationDate < :end GROUP BY FUNCTION('DATE', o.creationDate)",
+                start, end)) {
+            em.persist(new DailySales(((Date) row[0]).toLocalDate(), ((Number) row[1]).longValue(),
+                    ((Number) row[2]).doubleValue()));
+        }
+        for (Object[] row : rangeQuery(
+                "SELECT FUNCTION('DATE', o.creationDate), oi.productId, MAX(oi.productName), SUM(oi.quantity) FROM Order o JOIN o.orderItems oi WHERE o.creationDate >= :start AND o.creationDate < :end GROUP BY FUNCTION('DATE', o.creationDate), oi.productId",
+                start, end)) {
+            em.persist(new DailyProductSales(((Date) row[0]).toLocalDate(), ((Number) row[1]).longValue(),
+                    (String) row[2], ((Number) row[3]).longValue()));
+        }
+        for (Object[] row : rangeQuery(
+                "SELECT FUNCTION('DATE', o.creationDate), c.name, SUM(oi.quantity) FROM Order o JOIN o.orderItems oi JOIN oi.categories c WHERE o.creationDate >= :start AND o.creationDate < :end GROUP BY FUNCTION('DATE', o.creationDate), c.name",
+                start, end)) {
+            em.persist(new DailyCategorySales(((Date) row[0]).toLocalDate(), (String) row[1],
+                    ((Number) row[2]).longValue()));
+        }
+    }
+
+    /**
+     * Recomputes the rollups of all days with some order.
+     */
+    @Transactional
+    public void rebuildAll() {
+        Object[] range = (Object[]) em
+                .createQuery("SELECT MIN(o.creationDate), MAX(o.creationDate) FROM Order o")
+                .getSingleResult();
+        if (range[0] == null) {
+            return;
+        }
+        rebuild(((LocalDateTime) range[0]).toLocalDate(), ((LocalDateTime) range[1]).toLocalDate());
+    }
+
+    /**
+     * Returns true if no rollups exist yet.
+     */
+    public boolean isEmpty() {
+        return em.createQuery("SELECT COUNT(s) FROM DailySales s", Long.class).getSingleResult() == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> rangeQuery(String jpql, LocalDateTime start, LocalDateTime end) {
+        Query query = em.createQuery(jpql);
+        query.setParameter("start", start);
+        query.setParameter("end", end);
+        return (List<Object[]>) query.getResultList();
+    }
+
+    /*****************************/
+    /** STATISTICS CALCULATIONS **/
+    /*****************************/
+
+    /**
+     * Return the number of order made between days
+     * 
+     * @param from Beginning of the range (including)
+     * @param to End of the range (including)
+     * @return List of pairs of days & order counts
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> salesTimeRange(LocalDate from, LocalDate to) {
+        List<Object[]> results = null;
+        try {
+            Query query = em.createQuery("SELECT s.salesDate, s.orderCount FROM DailySales s WHERE s.salesDate BETWEEN :from AND :to ORDER BY s.salesDate");
+            query.setParameter("from", from);
+            query.setParameter("to", to);
+            return (List<Object[]>) query.getResultList();
+        } catch (Exception e) {
+            System.out.println(e);
+            return results;
+        }
+    }
+
+    /**
+     * Return the number of sold pieces per category between days
+     * 
+     * @param from Beginning of the range (including)
+     * @param to End of the range (including)
+     * @return List of pairs of categories & sold pieces
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> categoriesSalesInRange(LocalDate from, LocalDate to) {
+        List<Object[]> results = null;
+        try {
+            Query query = em.createQuery("SELECT s.categoryName, SUM(s.quantity) FROM DailyCategorySales s WHERE s.salesDate BETWEEN :from AND :to GROUP BY s.categoryName");
+            query.setParameter("from", from);
+            query.setParameter("to", to);
+            return (List<Object[]>) query.getResultList();
+        } catch (Exception e) {
+            System.out.println(e);
+            return results;
+        }
+    }
+
+    /**
+     * Return the most sold products between days, the most sold first
+     * 
+     * @param from Beginning of the range (including)
+     * @param to End of the range (including)
+     * @param limit Number of products to return
+     * @return List of triples of product ids, names & sold pieces
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> itemSalesInRange(LocalDate from, LocalDate to, int limit) {
+        try {
+            Query query = em.createQuery("SELECT s.productId, MAX(s.productName), SUM(s.quantity) AS total FROM DailyProductSales s WHERE s.salesDate BETWEEN :from AND :to GROUP BY s.productId ORDER BY total DESC, s.productId");
+            query.setParameter("from", from);
+            query.setParameter("to", to);
+            query.setMaxResults(limit);
+            return (List<Object[]>) query.getResultList();
+        } catch (Exception e) {
+            System.out.println(e);
+            return topItemSales(from, to, limit);
+        }
+    }
+
+    /**
+     * Fallback of itemSalesInRange for when the database can not sort by the aggregate.
+     * Streams the unsorted groups and keeps only the top ones.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object[]> topItemSales(LocalDate from, LocalDate to, int limit) {
+        List<Object[]> results = null;
+        try {
+            Query query = em.createQuery("SELECT s.productId, MAX(s.productName), SUM(s.quantity) FROM DailyProductSales s WHERE s.salesDate BETWEEN :from AND :to GROUP BY s.productId");
+            query.setParameter("from", from);
+            query.setParameter("to", to);
+            TopN<Object[]> top = new TopN<>(limit, ITEM_SALES_ORDER);
+            ((Stream<Object[]>) query.getResultStream()).forEach(top::offer);
+            return top.toList();
+        } catch (Exception e) {
+            System.out.println(e);
+            return results;
+        }
+    }
+
+    /**
+     * Return the earnings per day in given range
+     * 
+     * @param from Beginning of the range (including)
+     * @param to End of the range (including)
+     * @return List of pairs of days & corresponding earnings
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> earningsInRange(LocalDate from, LocalDate to) {
+        List<Object[]> results = null;
+        try {
+            Query query = em.createQuery("SELECT s.salesDate, s.income FROM DailySales s WHERE s.salesDate BETWEEN :from AND :to ORDER BY s.salesDate");
+            query.setParameter("from", from);
+            query.setParameter("to", to);
+            return (List<Object[]>) query.getResultList();
+        } catch (Exception e) {
+            System.out.println(e);
+            return results;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * PIS Projekt 2024
+ * StockChangedEvent.java
+ * @author Lukas Petr <xpetrl06>
+ */
+
+package pis.service;
+
+import java.util.Collection;
+
+/**
+ * CDI event fired when available quantities of products were changed in bulk
+ * (without saving the products through ProductDescriptionManager).
+ */
+public class StockChangedEvent {
+    private Collection<Long> productIds;
+
+    public StockChangedEvent(Collection<Long> productIds) {
+        this.productIds = productIds;
+    }
+
+    public Collection<Long> getProductIds() {
+        return productIds;
+    }
+}
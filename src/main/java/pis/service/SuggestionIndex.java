@@ -0,0 +1,443 @@
+/**
+ * PIS Projekt 2024
+ * SuggestionIndex.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import pis.api.dto.SuggestionDTO;
+import pis.data.BookAuthor;
+import pis.data.Category;
+import pis.data.OrderItem;
+import pis.data.ProductDescription;
+
+/**
+ * Type-ahead completions of book names, author names and category names.
+ * The texts are stored in a compressed prefix tree (radix tree), every node
+ * keeps the best MAX_SUGGESTIONS entries of its subtree ordered by sales,
+ * so a lookup only walks the typed prefix and never touches the database.
+ * Every text is also reachable from the start of each of its words, so
+ * "potter" completes "Harry Potter".
+ */
+@ApplicationScoped
+public class SuggestionIndex {
+    /** Number of best entries kept in every node. */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Inject
+    private CatalogReader catalogReader;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+
+    private final Map<Long, Entry> books = new HashMap<>();
+    private final Map<Long, Entry> authors = new HashMap<>();
+    private final Map<Long, Entry> categories = new HashMap<>();
+    /** Sold pieces of every product. */
+    private final Map<Long, Long> productSales = new HashMap<>();
+    /** Author and categories of every product, needed to update them when the product changes. */
+    private final Map<Long, Long> productAuthor = new HashMap<>();
+    private final Map<Long, List<Long>> productCategories = new HashMap<>();
+    /** Number of products of every author and category, they are suggested only while they have some. */
+    private final Map<Long, Integer> authorProducts = new HashMap<>();
+    private final Map<Long, Integer> categoryProducts = new HashMap<>();
+    private volatile boolean loaded = false;
+    /** Renamed authors and categories, their products are added again on the next lookup. */
+    private final Queue<ReferenceDataChangedEvent> renamed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Suggested text with its weight (number of sold pieces).
+     */
+    private static class Entry {
+        private final String type;
+        private final long id;
+        private String text;
+        private long weight;
+
+        Entry(String type, long id, String text) {
+            this.type = type;
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Node of the radix tree, label is the part of the key on the edge from the parent.
+     */
+    private static class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>();
+        /** Entries whose key ends in this node. */
+        private final List<Entry> terminals = new ArrayList<>(1);
+        /** Best entries of the whole subtree. */
+        private List<Entry> top = List.of();
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Returns the best completions of the typed prefix.
+     * 
+     * @param prefix Typed text.
+     * @param limit  Maximal number of completions, at most MAX_SUGGESTIONS.
+     * @return List of suggestions, the most sold first.
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        ensureLoaded();
+        String key = key(prefix);
+        List<SuggestionDTO> suggestions = new ArrayList<>();
+        if (key.isEmpty()) {
+            return suggestions;
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    return suggestions;
+                }
+                int length = Math.min(child.label.length(), key.length() - i);
+                if (!key.regionMatches(i, child.label, 0, length)) {
+                    return suggestions;
+                }
+                i += length;
+                node = child;
+            }
+            for (Entry e : node.top) {
+                if (suggestions.size() >= limit) {
+                    break;
+                }
+                suggestions.add(new SuggestionDTO(e.text, e.type, e.id));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Updates books, authors and categories after a product was saved or deleted.
+     */
+    public void onProductChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Will be read with the whole catalog
+                return;
+            }
+            removeProduct(event.getId());
+            if (!event.isDeleted()) {
+                addProduct(event.getProduct());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the sold books, their authors and categories up in the suggestions.
+     */
+    public void onOrderCreated(@Observes OrderCreatedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            for (OrderItem item : event.getOrder().getOrderItems()) {
+                long id = item.getProductId();
+                long sold = item.getQuantity();
+                productSales.merge(id, sold, Long::sum);
+                if (!books.containsKey(id)) {
+                    continue;
+                }
+                addWeight(books, "book", id, null, sold);
+                Long authorId = productAuthor.get(id);
+                if (authorId != null) {
+                    addWeight(authors, "author", authorId, null, sold);
+                }
+                for (Long categoryId : productCategories.get(id)) {
+                    addWeight(categories, "category", categoryId, null, sold);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remembers the renamed author or category, its products are read again on
+     * the next lookup (the database is not read after the commit).
+     * Changes without id only add new entities (catalog import), their products
+     * come with their own ProductChangedEvent.
+     */
+    public void onReferenceDataChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        if (loaded && event.getId() != null
+                && (event.getType() == BookAuthor.class || event.getType() == Category.class)) {
+            renamed.add(event);
+        }
+    }
+
+    /**
+     * Builds the tree from the database on first use, adds again products of
+     * the renamed authors and categories.
+     */
+    private void ensureLoaded() {
+        load();
+        ReferenceDataChangedEvent event;
+        while ((event = renamed.poll()) != null) {
+            List<ProductDescription> changed = new ArrayList<>();
+            catalogReader.forEachProductReferencing(event.getType(), event.getId(), changed::add);
+            lock.writeLock().lock();
+            try {
+                for (ProductDescription p : changed) {
+                    // Products deleted in the meantime stay out
+                    if (books.containsKey(p.getId())) {
+                        removeProduct(p.getId());
+                        addProduct(p);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            for (Object[] row : em.createQuery(
+                    "SELECT s.productId, SUM(s.quantity) FROM DailyProductSales s GROUP BY s.productId",
+                    Object[].class).getResultList()) {
+                productSales.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+            }
+            catalogReader.forEachProduct(p -> {
+                addProduct(p);
+            });
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addProduct(ProductDescription p) {
+        long sales = productSales.getOrDefault(p.getId(), 0L);
+        Entry book = new Entry("book", p.getId(), p.getName());
+        book.weight = sales;
+        books.put(p.getId(), book);
+        insert(book);
+
+        if (p.getAuthor() != null) {
+            long authorId = p.getAuthor().getId();
+            String name = p.getAuthor().getFirstName() + " " + p.getAuthor().getLastName();
+            productAuthor.put(p.getId(), authorId);
+            authorProducts.merge(authorId, 1, Integer::sum);
+            addWeight(authors, "author", authorId, name, sales);
+        }
+        List<Long> categoryIds = new ArrayList<>();
+        if (p.getCategories() != null) {
+            for (Category c : p.getCategories()) {
+                categoryIds.add(c.getId());
+                categoryProducts.merge(c.getId(), 1, Integer::sum);
+                addWeight(categories, "category", c.getId(), c.getName(), sales);
+            }
+        }
+        productCategories.put(p.getId(), categoryIds);
+    }
+
+    private void removeProduct(long id) {
+        Entry book = books.remove(id);
+        if (book == null) {
+            return;
+        }
+        delete(book);
+        long sales = productSales.getOrDefault(id, 0L);
+
+        Long authorId = productAuthor.remove(id);
+        if (authorId != null) {
+            if (authorProducts.merge(authorId, -1, Integer::sum) == 0) {
+                authorProducts.remove(authorId);
+                delete(authors.remove(authorId));
+            } else {
+                addWeight(authors, "author", authorId, null, -sales);
+            }
+        }
+        for (Long categoryId : productCategories.remove(id)) {
+            if (categoryProducts.merge(categoryId, -1, Integer::sum) == 0) {
+                categoryProducts.remove(categoryId);
+                delete(categories.remove(categoryId));
+            } else {
+                addWeight(categories, "category", categoryId, null, -sales);
+            }
+        }
+    }
+
+    /**
+     * Adds sales to the entry (creating it if needed), renames it if the text changed.
+     */
+    private void addWeight(Map<Long, Entry> entries, String type, long id, String text, long sales) {
+        Entry e = entries.get(id);
+        if (e == null) {
+            e = new Entry(type, id, text);
+            e.weight = sales;
+            entries.put(id, e);
+            insert(e);
+            return;
+        }
+        if (sales == 0 && (text == null || text.equals(e.text))) {
+            return;
+        }
+        // Entries are ordered by weight in the nodes, so they are removed before the change
+        delete(e);
+        e.weight += sales;
+        if (text != null) {
+            e.text = text;
+        }
+        insert(e);
+    }
+
+    private void insert(Entry e) {
+        for (String key : keys(e.text)) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    child = new Node(key.substring(i));
+                    node.children.put(child.label.charAt(0), child);
+                    i = key.length();
+                } else {
+                    int common = commonPrefix(child.label, key, i);
+                    if (common < child.label.length()) {
+                        // Split the edge
+                        Node middle = new Node(child.label.substring(0, common));
+                        child.label = child.label.substring(common);
+                        middle.children.put(child.label.charAt(0), child);
+                        middle.top = child.top;
+                        node.children.put(middle.label.charAt(0), middle);
+                        child = middle;
+                    }
+                    i += common;
+                }
+                path.add(child);
+                node = child;
+            }
+            node.terminals.add(e);
+            for (int j = path.size() - 1; j >= 0; j--) {
+                recompute(path.get(j));
+            }
+        }
+    }
+
+    private void delete(Entry e) {
+        for (String key : keys(e.text)) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                node = node.children.get(key.charAt(i));
+                if (node == null || !key.startsWith(node.label, i)) {
+                    break;
+                }
+                path.add(node);
+                i += node.label.length();
+            }
+            if (node == null || i != key.length()) {
+                continue;
+            }
+            node.terminals.remove(e);
+            for (int j = path.size() - 1; j > 0; j--) {
+                Node n = path.get(j);
+                Node parent = path.get(j - 1);
+                if (n.terminals.isEmpty() && n.children.isEmpty()) {
+                    parent.children.remove(n.label.charAt(0));
+                } else if (n.terminals.isEmpty() && n.children.size() == 1) {
+                    // Merge the node with its only child
+                    Node only = n.children.values().iterator().next();
+                    only.label = n.label + only.label;
+                    parent.children.put(only.label.charAt(0), only);
+                } else {
+                    recompute(n);
+                }
+            }
+            recompute(root);
+        }
+    }
+
+    /**
+     * Recomputes best entries of the node from its own entries and the best entries of its children.
+     */
+    private void recompute(Node node) {
+        Set<Entry> candidates = new LinkedHashSet<>(node.terminals);
+        for (Node child : node.children.values()) {
+            candidates.addAll(child.top);
+        }
+        List<Entry> sorted = new ArrayList<>(candidates);
+        sorted.sort((a, b) -> {
+            int c = Long.compare(b.weight, a.weight);
+            return c != 0 ? c : a.text.compareTo(b.text);
+        });
+        node.top = sorted.size() > MAX_SUGGESTIONS ? List.copyOf(sorted.subList(0, MAX_SUGGESTIONS))
+                : List.copyOf(sorted);
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int i = 0;
+        while (i < label.length() && offset + i < key.length() && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns normalized key of the text: words without diacritics separated by one space.
+     */
+    private static String key(String text) {
+        return String.join(" ", TextNormalizer.tokenize(text));
+    }
+
+    /**
+     * Returns keys the text can be found by, one starting at each of its words.
+     */
+    private static Set<String> keys(String text) {
+        List<String> words = TextNormalizer.tokenize(Objects.toString(text, ""));
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < words.size(); i++) {
+            keys.add(String.join(" ", words.subList(i, words.size())));
+        }
+        return keys;
+    }
+}
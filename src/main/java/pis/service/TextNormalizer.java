@@ -0,0 +1,56 @@
+/**
+ * PIS Projekt 2024
+ * TextNormalizer.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalization of texts for the in-memory catalog indexes.
+ * Texts are lower-cased and diacritics are removed, so "Čapek" and "capek"
+ * are the same word.
+ */
+public final class TextNormalizer {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Returns lower-cased text without diacritics.
+     * 
+     * @param text Text to normalize, can be null.
+     * @return Normalized text, empty string for null.
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits the text into normalized words.
+     * 
+     * @param text Text to split, can be null.
+     * @return List of words in the order they appear in the text.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
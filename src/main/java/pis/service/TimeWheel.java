@@ -0,0 +1,84 @@
+/**
+ * PIS Projekt 2024
+ * TimeWheel.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed time wheel: tasks are put into slots by their due tick (modulo the
+ * number of slots), so scheduling is O(1) and every tick only looks at one
+ * slot. Tasks due more than one turn ahead stay in their slot until their
+ * turn comes. The precision is one tick.
+ */
+public class TimeWheel<T> {
+    private final long tickMillis;
+    private final List<List<Slot<T>>> slots = new ArrayList<>();
+    /** Next tick to be processed, in ticks since the epoch. */
+    private long currentTick;
+
+    private static class Slot<T> {
+        private final long dueTick;
+        private final T task;
+
+        private Slot(long dueTick, T task) {
+            this.dueTick = dueTick;
+            this.task = task;
+        }
+    }
+
+    /**
+     * @param tickMillis Length of one tick.
+     * @param size       Number of slots (one turn of the wheel).
+     * @param nowMillis  Current time.
+     */
+    public TimeWheel(long tickMillis, int size, long nowMillis) {
+        this.tickMillis = tickMillis;
+        for (int i = 0; i < size; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedules the task, tasks already due are run by the next advance.
+     * 
+     * @param task      Task to schedule.
+     * @param dueMillis Time (epoch millis) when the task is due.
+     */
+    public synchronized void schedule(T task, long dueMillis) {
+        // Rounded up, so the task is never run early
+        long dueTick = Math.max((dueMillis + tickMillis - 1) / tickMillis, currentTick);
+        slots.get((int) (dueTick % slots.size())).add(new Slot<>(dueTick, task));
+    }
+
+    /**
+     * Moves the wheel to the current time and returns the tasks which became due.
+     * 
+     * @param nowMillis Current time.
+     * @return Due tasks.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        // After a long pause every slot is looked at once, not every missed tick
+        long last = Math.min(targetTick, currentTick + slots.size() - 1);
+        for (long tick = currentTick; tick <= last; tick++) {
+            Iterator<Slot<T>> it = slots.get((int) (tick % slots.size())).iterator();
+            while (it.hasNext()) {
+                Slot<T> slot = it.next();
+                if (slot.dueTick <= targetTick) {
+                    due.add(slot.task);
+                    it.remove();
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick + 1);
+        return due;
+    }
+}
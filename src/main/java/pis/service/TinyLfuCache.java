@@ -0,0 +1,178 @@
+/**
+ * PIS Projekt 2024
+ * TinyLfuCache.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import pis.api.dto.CacheStatsDTO;
+
+/**
+ * Thread-safe cache with limited size and W-TinyLFU admission.
+ * New entries go to a small LRU window. An entry leaving the window replaces
+ * the least recently used entry of the main part only if it was requested more
+ * often, so one-off keys do not push out the popular ones. Request frequencies
+ * are estimated by a count-min sketch, which is halved periodically, so the
+ * popularity of old keys fades away.
+ */
+public class TinyLfuCache<K, V> {
+    /** Part of the entries kept in the window. */
+    private static final double WINDOW_RATIO = 0.01;
+
+    private final String name;
+    private final int maxSize;
+    private final int windowSize;
+    private final int mainSize;
+
+    /** Entries in access order, the least recently used first. */
+    private final LinkedHashMap<K, V> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Count-min sketch with four rows of counters saturating at 15.
+     */
+    private static class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+        private final byte[][] counters;
+        private final int mask;
+        /** Number of increments after which all counters are halved. */
+        private final int sampleSize;
+        private int increments = 0;
+
+        private FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, maxSize * 2 - 1)) * 2;
+            counters = new byte[ROWS][width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(16, maxSize);
+        }
+
+        private void increment(Object key) {
+            int hash = key.hashCode();
+            for (int row = 0; row < ROWS; row++) {
+                int i = index(hash, row);
+                if (counters[row][i] < MAX_COUNT) {
+                    counters[row][i]++;
+                }
+            }
+            if (++increments >= sampleSize) {
+                for (byte[] row : counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                increments /= 2;
+            }
+        }
+
+        private int frequency(Object key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                frequency = Math.min(frequency, counters[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+
+    /**
+     * @param name    Name of the cache shown in the statistics.
+     * @param maxSize Maximal number of entries.
+     */
+    public TinyLfuCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.windowSize = Math.max(1, (int) (maxSize * WINDOW_RATIO));
+        this.mainSize = Math.max(1, maxSize - windowSize);
+        this.sketch = new FrequencySketch(maxSize);
+    }
+
+    /**
+     * Returns the cached value, or loads it and caches it if it is missing or
+     * no longer valid. The loader is called outside of the lock, so concurrent
+     * misses of one key may load it more than once.
+     *
+     * @param key    Key of the value.
+     * @param valid  Tells if the cached value can still be used.
+     * @param loader Loads the value on a miss, null values are not cached.
+     * @return Cached or loaded value.
+     */
+    public V get(K key, Predicate<V> valid, Supplier<V> loader) {
+        synchronized (this) {
+            sketch.increment(key);
+            V value = window.get(key);
+            if (value == null) {
+                value = main.get(key);
+            }
+            if (value != null && valid.test(value)) {
+                hits++;
+                return value;
+            }
+            misses++;
+        }
+        V value = loader.get();
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Caches the value. A new key enters the window, the entry pushed out of the
+     * window is admitted to the main part if it is more frequent than the entry it
+     * would evict.
+     */
+    public synchronized void put(K key, V value) {
+        if (main.containsKey(key)) {
+            main.put(key, value);
+            return;
+        }
+        window.put(key, value);
+        if (window.size() <= windowSize) {
+            return;
+        }
+        Iterator<Map.Entry<K, V>> it = window.entrySet().iterator();
+        Map.Entry<K, V> candidate = it.next();
+        it.remove();
+        if (main.size() < mainSize) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        K victim = main.keySet().iterator().next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+            main.remove(victim);
+            main.put(candidate.getKey(), candidate.getValue());
+        }
+        evictions++;
+    }
+
+    public synchronized void invalidateAll() {
+        window.clear();
+        main.clear();
+    }
+
+    /**
+     * Returns current size and hit/miss counts of the cache.
+     */
+    public synchronized CacheStatsDTO stats() {
+        return new CacheStatsDTO(name, window.size() + main.size(), maxSize, hits, misses, evictions);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * PIS Projekt 2024
+ * TokenCache.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import pis.api.dto.CacheStatsDTO;
+import pis.data.RegisteredUser;
+
+/**
+ * Verifies JWTs and remembers the users they belong to.
+ * A verified token is cached by its digest until it expires (at most TTL),
+ * so repeated requests with the same token skip the signature check and
+ * the user lookup. Entries of a user are dropped when the user changes.
+ */
+@ApplicationScoped
+public class TokenCache {
+    private static final int MAX_SIZE = 10000;
+    private static final long TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final Key key = Keys.hmacShaKeyFor("12345789101112131415161718192021222324252627282930".getBytes()); // very stupid but w/e
+    /** Parser is immutable and thread-safe, so it is built only once. */
+    private static final JwtParser parser = Jwts.parserBuilder().setSigningKey(key).build();
+
+    @Inject
+    private RegisteredUserManager userManager;
+
+    private final ExpiringCache<String, UserSnapshot> cache = new ExpiringCache<>("tokens", MAX_SIZE, TTL_MILLIS);
+
+    /**
+     * Returns the user the token belongs to.
+     * 
+     * @param token JWT from the authorization header.
+     * @return Snapshot of the user or null if the user does not exist.
+     * @throws io.jsonwebtoken.JwtException If the token is invalid or expired.
+     */
+    public UserSnapshot authenticate(String token) {
+        String digest = digest(token);
+        UserSnapshot cached = cache.getIfPresent(digest);
+        if (cached != null) {
+            if (cached.getExpiresAt() > System.currentTimeMillis()) {
+                return cached;
+            }
+            // Expired token, parsing it below throws
+            cache.invalidate(digest);
+        }
+        return cache.get(digest, () -> {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            RegisteredUser u = userManager.findByEmail(claims.getSubject());
+            if (u == null) {
+                return null;
+            }
+            long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+            return new UserSnapshot(u, expiresAt);
+        });
+    }
+
+    /**
+     * Drops the cached tokens of the user after the change was committed (e.g. new role).
+     */
+    public void onUserChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) UserChangedEvent event) {
+        cache.invalidateIf(u -> u.getId() == event.getId());
+    }
+
+    public CacheStatsDTO stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Tokens are not kept in memory, only their SHA-256.
+     */
+    private static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
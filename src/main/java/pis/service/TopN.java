@@ -0,0 +1,54 @@
+/**
+ * PIS Projekt 2024
+ * TopN.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the N greatest of the offered values.
+ * Backed by a min-heap of size N, so any number of values can be offered
+ * in constant memory.
+ */
+public class TopN<T> {
+    private final int n;
+    private final Comparator<? super T> comparator;
+    /** The smallest kept value is on top, so it can be replaced by a greater one. */
+    private final PriorityQueue<T> heap;
+
+    public TopN(int n, Comparator<? super T> comparator) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("N must be positive");
+        }
+        this.n = n;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(n, comparator);
+    }
+
+    /**
+     * Offers the value, it is kept only if it is among the N greatest so far.
+     */
+    public void offer(T value) {
+        if (heap.size() < n) {
+            heap.add(value);
+        } else if (comparator.compare(value, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(value);
+        }
+    }
+
+    /**
+     * Returns the kept values, the greatest first.
+     */
+    public List<T> toList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(comparator.reversed());
+        return result;
+    }
+}
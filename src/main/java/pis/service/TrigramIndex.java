@@ -0,0 +1,230 @@
+/**
+ * PIS Projekt 2024
+ * TrigramIndex.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import pis.data.BookAuthor;
+import pis.data.ProductDescription;
+
+/**
+ * In-memory trigram index of name, ISBN and author names used by the storage
+ * search. Unlike SearchIndex it matches any substring of these fields, the same
+ * as the case insensitive LIKE '%query%' did, so fragments of ISBNs and titles
+ * are found too.
+ * Candidates are the products containing every trigram of the query, they are
+ * verified against the stored texts. The index is built on first use and then
+ * updated on every product change and author rename.
+ */
+@ApplicationScoped
+public class TrigramIndex {
+    /** Separates the fields in the stored text, so a match can not span two fields. */
+    private static final char FIELD_SEPARATOR = '\n';
+
+    @Inject
+    private CatalogReader catalogReader;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Trigram -> ids of products containing it. */
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    /** Product id -> lower-cased indexed fields joined by FIELD_SEPARATOR. */
+    private final Map<Long, String> texts = new HashMap<>();
+    private volatile boolean loaded = false;
+    /** Renamed authors whose products were not indexed again yet. */
+    private final Queue<ReferenceDataChangedEvent> renamed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Returns ids of products with name, ISBN or author name containing the query.
+     *
+     * @param query Searched substring, case insensitive.
+     * @param limit Maximal number of returned ids.
+     * @return List of product ids, ordered by id.
+     */
+    public List<Long> search(String query, int limit) {
+        ensureLoaded();
+        String needle = normalize(query);
+        if (needle.isEmpty() || needle.indexOf(FIELD_SEPARATOR) >= 0) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Long id : candidates(needle)) {
+                if (texts.get(id).contains(needle)) {
+                    ids.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(ids);
+        return ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+    }
+
+    /**
+     * Returns products which can contain the needle, the caller holds the read lock.
+     * Postings are intersected from the shortest one, so the work is bounded by
+     * the number of products containing the rarest trigram of the needle.
+     */
+    private Set<Long> candidates(String needle) {
+        if (needle.length() < 3) {
+            // No whole trigram to look up, every product has to be verified
+            return texts.keySet();
+        }
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String trigram : trigrams(needle)) {
+            Set<Long> posting = postings.get(trigram);
+            if (posting == null) {
+                return Set.of();
+            }
+            lists.add(posting);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Set<Long> result = new HashSet<>();
+        outer: for (Long id : lists.get(0)) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(id)) {
+                    continue outer;
+                }
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * Updates the index after a product was saved or deleted.
+     */
+    public void onProductChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangedEvent event) {
+        String text = event.isDeleted() ? null : text(event.getProduct());
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Will be read with the whole catalog
+                return;
+            }
+            remove(event.getId());
+            if (text != null) {
+                add(event.getId(), text);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remembers the renamed author, its products are read again on the next search.
+     * Changes without id only add new authors (catalog import).
+     */
+    public void onReferenceDataChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        if (loaded && event.getId() != null && event.getType() == BookAuthor.class) {
+            renamed.add(event);
+        }
+    }
+
+    /**
+     * Builds the index from the database on first use, indexes again products of
+     * the renamed authors.
+     */
+    private void ensureLoaded() {
+        if (!loaded) {
+            lock.writeLock().lock();
+            try {
+                if (!loaded) {
+                    catalogReader.forEachProduct(p -> add(p.getId(), text(p)));
+                    loaded = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        ReferenceDataChangedEvent event;
+        while ((event = renamed.poll()) != null) {
+            Map<Long, String> changed = new HashMap<>();
+            catalogReader.forEachProductReferencing(event.getType(), event.getId(),
+                    p -> changed.put(p.getId(), text(p)));
+            lock.writeLock().lock();
+            try {
+                for (Map.Entry<Long, String> e : changed.entrySet()) {
+                    // Products deleted in the meantime stay out
+                    if (texts.containsKey(e.getKey())) {
+                        remove(e.getKey());
+                        add(e.getKey(), e.getValue());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void add(long id, String text) {
+        texts.put(id, text);
+        for (String trigram : trigrams(text)) {
+            postings.computeIfAbsent(trigram, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private void remove(long id) {
+        String text = texts.remove(id);
+        if (text == null) {
+            return;
+        }
+        for (String trigram : trigrams(text)) {
+            Set<Long> posting = postings.get(trigram);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    /**
+     * Returns distinct trigrams of the text, trigrams spanning two fields are left out.
+     */
+    private static Set<String> trigrams(String text) {
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            String trigram = text.substring(i, i + 3);
+            if (trigram.indexOf(FIELD_SEPARATOR) < 0) {
+                trigrams.add(trigram);
+            }
+        }
+        return trigrams;
+    }
+
+    /**
+     * Returns the indexed fields of the product.
+     */
+    private static String text(ProductDescription p) {
+        StringBuilder text = new StringBuilder(normalize(p.getName()));
+        text.append(FIELD_SEPARATOR).append(normalize(p.getISBN()));
+        if (p.getAuthor() != null) {
+            text.append(FIELD_SEPARATOR).append(normalize(p.getAuthor().getFirstName()));
+            text.append(FIELD_SEPARATOR).append(normalize(p.getAuthor().getLastName()));
+        }
+        return text.toString();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
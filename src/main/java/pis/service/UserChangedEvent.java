@@ -0,0 +1,22 @@
+/**
+ * PIS Projekt 2024
+ * UserChangedEvent.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.service;
+
+/**
+ * CDI event fired when a registered user was saved or deleted.
+ */
+public class UserChangedEvent {
+    private long id;
+
+    public UserChangedEvent(long id) {
+        this.id = id;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
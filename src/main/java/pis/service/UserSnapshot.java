@@ -0,0 +1,43 @@
+/**
+ * PIS Projekt 2024
+ * UserSnapshot.java
+ * @author Vojtech Fiala <xfiala61>
+ */
+
+package pis.service;
+
+import pis.data.RegisteredUser;
+
+/**
+ * Immutable copy of the fields of an authenticated user needed to authorize requests.
+ */
+public class UserSnapshot {
+    private final long id;
+    private final String email;
+    private final String role;
+    /** Expiration of the token the user was authenticated with (epoch millis). */
+    private final long expiresAt;
+
+    public UserSnapshot(RegisteredUser u, long expiresAt) {
+        this.id = u.getId();
+        this.email = u.getEmail();
+        this.role = u.getRole();
+        this.expiresAt = expiresAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * PIS Projekt 2024
+ * CatalogImportCli.java
+ * @author Tomas Ondrusek <xondru18>
+ */
+
+package pis.tools;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Command line catalog import, streams the file to the import endpoint of a
+ * running server and prints the progress every few seconds.
+ * 
+ * Usage: java -cp target/classes pis.tools.CatalogImportCli catalog.csv|catalog.ndjson [http://localhost:9089/api]
+ * 
+ * The admin is logged in with the PIS_EMAIL and PIS_PASSWORD environment variables,
+ * or PIS_TOKEN can hold a token.
+ */
+public class CatalogImportCli {
+    private static final long PROGRESS_MILLIS = 5000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: CatalogImportCli <catalog.csv|catalog.ndjson> [api url]");
+            System.exit(2);
+        }
+        Path file = Path.of(args[0]);
+        String api = args.length > 1 ? args[1] : "http://localhost:9089/api";
+        String name = file.getFileName().toString().toLowerCase();
+        String contentType = name.endsWith(".csv") ? "text/csv" : "application/x-ndjson";
+        if (!Files.isReadable(file)) {
+            System.err.println("Cannot read " + file);
+            System.exit(2);
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        String token = System.getenv("PIS_TOKEN");
+        if (token == null) {
+            token = login(client, api, System.getenv("PIS_EMAIL"), System.getenv("PIS_PASSWORD"));
+        }
+        String authorization = "Bearer " + token;
+
+        // The file is streamed, it is never read into memory
+        HttpRequest request = HttpRequest.newBuilder(URI.create(api + "/productdescription/import"))
+                .header("Content-Type", contentType)
+                .header("Authorization", authorization)
+                .POST(HttpRequest.BodyPublishers.ofFile(file))
+                .build();
+        Thread progress = new Thread(() -> printProgress(client, api, authorization));
+        progress.setDaemon(true);
+        progress.start();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        progress.interrupt();
+        System.out.println(response.body());
+        System.exit(response.statusCode() == 200 ? 0 : 1);
+    }
+
+    private static String login(HttpClient client, String api, String email, String password)
+            throws IOException, InterruptedException {
+        if (email == null || password == null) {
+            System.err.println("Set PIS_TOKEN, or PIS_EMAIL and PIS_PASSWORD");
+            System.exit(2);
+        }
+        String body = "{\"email\":\"" + escape(email) + "\",\"password\":\"" + escape(password) + "\"}";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(api + "/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            System.err.println("Login failed: " + response.body());
+            System.exit(1);
+        }
+        // Token is followed by the role of the user
+        return response.body().split(";")[0];
+    }
+
+    private static void printProgress(HttpClient client, String api, String authorization) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(api + "/productdescription/import"))
+                .header("Authorization", authorization)
+                .GET()
+                .build();
+        try {
+            while (true) {
+                Thread.sleep(PROGRESS_MILLIS);
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    System.err.println(response.body());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(e);
+        } catch (InterruptedException e) {
+            // Import finished
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}